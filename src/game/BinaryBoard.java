@@ -0,0 +1,375 @@
+package game;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import org.json.JSONTokener;
+
+/** A BinaryBoard is a board in compact, versioned binary form: a string table
+ * followed by fixed-width int arrays. It holds exactly what a board's JSON holds
+ * (seed, score coefficients, nodes, edges, trucks and parcels) and nothing per-game,
+ * so it can be turned into a Board with {@code new Board(game, binaryBoard)}.
+ * <br><br>
+ * Layout (all values big-endian):
+ * <br> int magic, int version, long seed, int[5] score coefficients
+ * <br> int stringCount, then per string: int byteLength, UTF-8 bytes
+ * <br> int nodeCount, int depot, int[nodeCount] x, int[nodeCount] y
+ * <br> int edgeCount, int[edgeCount] first exit, int[edgeCount] second exit, int[edgeCount] length
+ * <br> int truckCount, int[truckCount] name, int[truckCount] color
+ * <br> int parcelCount, int[parcelCount] start, int[parcelCount] destination, int[parcelCount] color
+ * <br><br>
+ * Node i is named string i; truck names are string indexes; exits, starts and
+ * destinations are node indexes; colors are RGB ints. Files are read through a
+ * memory-mapped FileChannel, so reading a board is a bulk copy of its arrays.
+ * <br><br>
+ * Method main converts map files between the JSON and binary formats.
+ */
+public final class BinaryBoard {
+
+	/** The extension of binary map files. */
+	public static final String EXTENSION = ".sgb";
+
+	/** First int of every binary board ("SGBB"). */
+	private static final int MAGIC = 0x53474242;
+
+	/** Version of the format written by this class. */
+	private static final int VERSION = 1;
+
+	/** Number of score coefficients: wait, pickup, dropoff, payoff, on-color multiplier. */
+	static final int SCORE_COEFFICIENTS = 5;
+
+	final long seed;
+	final int[] scoreCoeff;
+	final String[] strings;		//Node names (index = node index), then truck names
+	final int depot;			//Index of the truck depot, -1 if none
+	final int[] nodeX;
+	final int[] nodeY;
+	final int[] edgeFirst;
+	final int[] edgeSecond;
+	final int[] edgeLength;
+	final int[] truckName;		//Index into strings
+	final int[] truckColor;
+	final int[] parcelStart;
+	final int[] parcelDestination;
+	final int[] parcelColor;
+
+	/** Constructor: a binary board with the given contents. Arrays are not copied. */
+	private BinaryBoard(long seed, int[] scoreCoeff, String[] strings, int depot,
+			int[] nodeX, int[] nodeY, int[] edgeFirst, int[] edgeSecond, int[] edgeLength,
+			int[] truckName, int[] truckColor,
+			int[] parcelStart, int[] parcelDestination, int[] parcelColor) {
+		this.seed = seed;
+		this.scoreCoeff = scoreCoeff;
+		this.strings = strings;
+		this.depot = depot;
+		this.nodeX = nodeX;
+		this.nodeY = nodeY;
+		this.edgeFirst = edgeFirst;
+		this.edgeSecond = edgeSecond;
+		this.edgeLength = edgeLength;
+		this.truckName = truckName;
+		this.truckColor = truckColor;
+		this.parcelStart = parcelStart;
+		this.parcelDestination = parcelDestination;
+		this.parcelColor = parcelColor;
+	}
+
+	/** The elements of a board, numbered as in a BinaryBoard of it: element i of
+	 * each array is node, edge, truck or parcel i of the BinaryBoard. */
+	static final class Elements {
+		final Node[] nodes;
+		final Edge[] edges;
+		final Truck[] trucks;
+		final Parcel[] parcels;
+
+		/** Constructor: the given elements, in order. Arrays are not copied. */
+		Elements(Node[] nodes, Edge[] edges, Truck[] trucks, Parcel[] parcels) {
+			this.nodes = nodes;
+			this.edges = edges;
+			this.trucks = trucks;
+			this.parcels = parcels;
+		}
+
+		/** Constructor: the elements of b, numbered as fromBoard(b) numbers them:
+		 * in the iteration order of b's nodes, edges, trucks and (undelivered) parcels. */
+		Elements(Board b) {
+			nodes = b.getNodes().toArray(new Node[b.getNodesSize()]);
+			edges = b.getEdges().toArray(new Edge[b.getEdgesSize()]);
+			trucks = b.getTrucks().toArray(new Truck[b.getTrucks().size()]);
+			Set<Parcel> ps = b.getParcels();
+			synchronized(ps) {
+				parcels = ps.toArray(new Parcel[ps.size()]);
+			}
+		}
+	}
+
+	/** Return a BinaryBoard of the initial contents of b: its nodes, edges, trucks
+	 * and (undelivered) parcels. Nodes are numbered in the iteration order of
+	 * b.getNodes(), trucks in the order of b.getTrucks().
+	 * Call only while b's game is not running. */
+	public static BinaryBoard fromBoard(Board b) {
+		return fromBoard(b, new Elements(b));
+	}
+
+	/** Return a BinaryBoard of board b, whose elements are el, numbered as in el.
+	 * Call only while b's game is not running. */
+	static BinaryBoard fromBoard(Board b, Elements el) {
+		HashMap<Node, Integer> index = new HashMap<Node, Integer>();
+		ArrayList<String> strings = new ArrayList<String>();
+		int n = el.nodes.length;
+		int[] nodeX = new int[n];
+		int[] nodeY = new int[n];
+		int depot = -1;
+		for (Node node : el.nodes) {
+			int i = strings.size();
+			index.put(node, i);
+			strings.add(node.name);
+			nodeX[i] = node.x;
+			nodeY[i] = node.y;
+			if (node == b.getTruckDepot()) depot = i;
+		}
+
+		int m = el.edges.length;
+		int[] edgeFirst = new int[m];
+		int[] edgeSecond = new int[m];
+		int[] edgeLength = new int[m];
+		for (int i = 0; i < m; i++) {
+			Edge e = el.edges[i];
+			edgeFirst[i] = index.get(e.getFirstExit());
+			edgeSecond[i] = index.get(e.getSecondExit());
+			edgeLength[i] = e.length;
+		}
+
+		int t = el.trucks.length;
+		int[] truckName = new int[t];
+		int[] truckColor = new int[t];
+		for (int i = 0; i < t; i++) {
+			truckName[i] = strings.size();
+			strings.add(el.trucks[i].getTruckName());
+			truckColor[i] = el.trucks[i].getColor().getRGB();
+		}
+
+		int p = el.parcels.length;
+		int[] parcelStart = new int[p];
+		int[] parcelDestination = new int[p];
+		int[] parcelColor = new int[p];
+		for (int i = 0; i < p; i++) {
+			Parcel parcel = el.parcels[i];
+			parcelStart[i] = index.get(parcel.getLocation());
+			parcelDestination[i] = index.get(parcel.destination);
+			parcelColor[i] = parcel.getColor().getRGB();
+		}
+
+		int[] scoreCoeff = {b.getWaitCost(), b.getPickupCost(), b.getDropoffCost(),
+				b.getPayoff(), b.getOnColorMultiplier()};
+		return new BinaryBoard(b.seed, scoreCoeff, strings.toArray(new String[strings.size()]),
+				depot, nodeX, nodeY, edgeFirst, edgeSecond, edgeLength, truckName, truckColor,
+				parcelStart, parcelDestination, parcelColor);
+	}
+
+	/** Read and return the binary board in file f, through a memory-mapped channel.
+	 * @throws IOException - if f can't be read or is not a binary board. */
+	public static BinaryBoard read(File f) throws IOException {
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			return decode(buf);
+		}
+	}
+
+	/** Read and return the binary board starting at buf's position,
+	 * leaving buf's position just after it. Every count is checked against what
+	 * is left of buf before anything is allocated for it, and every index
+	 * against the count of what it indexes, so corrupt data is reported here
+	 * rather than when the board is built or played.
+	 * @throws IOException - if buf does not hold a well-formed binary board. */
+	public static BinaryBoard decode(ByteBuffer buf) throws IOException {
+		try {
+			if (buf.getInt() != MAGIC)
+				throw new IOException("Not a binary board");
+			int version = buf.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported binary board version " + version);
+
+			long seed = buf.getLong();
+			int[] scoreCoeff = getInts(buf, SCORE_COEFFICIENTS);
+
+			String[] strings = new String[getCount(buf, 4, "strings")];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[getCount(buf, 1, "bytes of string " + i)];
+				buf.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			int n = getCount(buf, 4 * 2, "nodes");
+			if (n > strings.length)
+				throw new IOException(n + " nodes but only " + strings.length + " strings to name them");
+			int depot = buf.getInt();
+			if (depot < -1 || depot >= n)
+				throw new IOException("Truck depot " + depot + " is not a node");
+			int[] nodeX = getInts(buf, n);
+			int[] nodeY = getInts(buf, n);
+
+			int m = getCount(buf, 4 * 3, "edges");
+			int[] edgeFirst = getInts(buf, m);
+			int[] edgeSecond = getInts(buf, m);
+			int[] edgeLength = getInts(buf, m);
+			checkRange(edgeFirst, 0, n, "Edge exit");
+			checkRange(edgeSecond, 0, n, "Edge exit");
+			checkRange(edgeLength, 1, Integer.MAX_VALUE, "Edge length");
+			HashSet<Long> pairs = new HashSet<Long>();
+			for (int i = 0; i < m; i++) {
+				if (edgeFirst[i] == edgeSecond[i])
+					throw new IOException("Edge " + i + " connects node " + edgeFirst[i] + " to itself");
+				long lo = Math.min(edgeFirst[i], edgeSecond[i]);
+				long hi = Math.max(edgeFirst[i], edgeSecond[i]);
+				if (!pairs.add(lo << 32 | hi))
+					throw new IOException("Edge " + i + " connects nodes " + lo + " and " + hi + " again");
+			}
+
+			int t = getCount(buf, 4 * 2, "trucks");
+			if (t > 0 && depot == -1)
+				throw new IOException("Trucks but no truck depot to start them at");
+			int[] truckName = getInts(buf, t);
+			int[] truckColor = getInts(buf, t);
+			checkRange(truckName, 0, strings.length, "Truck name");
+
+			int p = getCount(buf, 4 * 3, "parcels");
+			int[] parcelStart = getInts(buf, p);
+			int[] parcelDestination = getInts(buf, p);
+			int[] parcelColor = getInts(buf, p);
+			checkRange(parcelStart, 0, n, "Parcel start");
+			checkRange(parcelDestination, 0, n, "Parcel destination");
+			for (int i = 0; i < p; i++) {
+				if (parcelStart[i] == parcelDestination[i])
+					throw new IOException("Parcel " + i + " starts at its destination");
+			}
+
+			return new BinaryBoard(seed, scoreCoeff, strings, depot, nodeX, nodeY,
+					edgeFirst, edgeSecond, edgeLength, truckName, truckColor,
+					parcelStart, parcelDestination, parcelColor);
+		} catch (RuntimeException e) {
+			//Buffer underflow, negative array size, ... - the data is corrupt
+			throw new IOException("Malformed binary board: " + e, e);
+		}
+	}
+
+	/** Read a count of things (what) of size bytes each from buf and return it.
+	 * @throws IOException - if it is negative or more than the rest of buf holds. */
+	private static int getCount(ByteBuffer buf, int size, String what) throws IOException {
+		int count = buf.getInt();
+		if (count < 0 || count > buf.remaining() / size)
+			throw new IOException("Bad number of " + what + ": " + count);
+		return count;
+	}
+
+	/** Check that every element of a, a list of what, is in lo..hi-1.
+	 * @throws IOException - if one isn't. */
+	private static void checkRange(int[] a, int lo, int hi, String what) throws IOException {
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] < lo || a[i] >= hi)
+				throw new IOException(what + " " + i + " is " + a[i] + ", not in " + lo + ".." + (hi - 1));
+		}
+	}
+
+	/** Read n ints from buf in bulk and return them, advancing buf past them. */
+	private static int[] getInts(ByteBuffer buf, int n) {
+		int[] a = new int[n];
+		IntBuffer ints = buf.asIntBuffer();
+		ints.get(a);
+		buf.position(buf.position() + n * 4);
+		return a;
+	}
+
+	/** Write this board to file f.
+	 * @throws IOException - if the file writing goes bad. */
+	public void write(File f) throws IOException {
+		ByteBuffer buf = encode();
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buf.hasRemaining()) {
+				ch.write(buf);
+			}
+		}
+	}
+
+	/** Return a new buffer holding this board in binary form, ready to be read. */
+	public ByteBuffer encode() {
+		byte[][] stringBytes = new byte[strings.length][];
+		int size = 4 * 2 + 8 + 4 * SCORE_COEFFICIENTS + 4;
+		for (int i = 0; i < strings.length; i++) {
+			stringBytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+			size += 4 + stringBytes[i].length;
+		}
+		size += 4 * (2 + nodeX.length * 2)
+				+ 4 * (1 + edgeLength.length * 3)
+				+ 4 * (1 + truckName.length * 2)
+				+ 4 * (1 + parcelStart.length * 3);
+
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		buf.putLong(seed);
+		putInts(buf, scoreCoeff);
+
+		buf.putInt(strings.length);
+		for (byte[] bytes : stringBytes) {
+			buf.putInt(bytes.length);
+			buf.put(bytes);
+		}
+
+		buf.putInt(nodeX.length);
+		buf.putInt(depot);
+		putInts(buf, nodeX);
+		putInts(buf, nodeY);
+
+		buf.putInt(edgeLength.length);
+		putInts(buf, edgeFirst);
+		putInts(buf, edgeSecond);
+		putInts(buf, edgeLength);
+
+		buf.putInt(truckName.length);
+		putInts(buf, truckName);
+		putInts(buf, truckColor);
+
+		buf.putInt(parcelStart.length);
+		putInts(buf, parcelStart);
+		putInts(buf, parcelDestination);
+		putInts(buf, parcelColor);
+
+		buf.flip();
+		return buf;
+	}
+
+	/** Write a to buf in bulk, advancing buf past it. */
+	private static void putInts(ByteBuffer buf, int[] a) {
+		buf.asIntBuffer().put(a);
+		buf.position(buf.position() + a.length * 4);
+	}
+
+	/** Convert map files between formats. Arguments are pairs {@code <in> <out>}:
+	 * a binary input (ending in EXTENSION) is written as a JSON map, any other input
+	 * is read as a JSON map and written in binary form. */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0 || args.length % 2 != 0) {
+			System.err.println("Usage: BinaryBoard <in> <out> [<in> <out> ...]");
+			return;
+		}
+		for (int i = 0; i < args.length; i += 2) {
+			File in = new File(args[i]);
+			File out = new File(args[i + 1]);
+			if (in.getName().endsWith(EXTENSION)) {
+				new Board(null, read(in)).writeJSON(out);
+			} else {
+				try (Reader r = new BufferedReader(new FileReader(in))) {
+					fromBoard(new Board(null, new JSONTokener(r))).write(out);
+				}
+			}
+		}
+	}
+}
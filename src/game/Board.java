@@ -6,6 +6,8 @@ import java.awt.Color;
 import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.*;
 
@@ -32,18 +34,35 @@ public final class Board implements JSONString {
     /** Name of city where truck start --the truckDepot.*/
     protected static final String TRUCK_DEPOT_NAME = "Truck Depot";
 
-    private HashSet<Edge> edges;    //All edges in this board
+    private HashSet<Edge> edges;    //All edges in this board, in order of creation
 
     protected int minLength;			//Min length among all edges
     protected int maxLength;			//Max length among all edges
 
-    private HashSet<Node> nodes;    //All nodes in this board
+    private HashSet<Node> nodes;    //All nodes in this board, in order of creation
+
+    private int nextNodeId;         //Id of the next node created (see Node.id)
+    private int nextEdgeId;         //Id of the next edge created (see Edge.id)
 
     private ArrayList<Truck> trucks; //The trucks in this board
     private List<Truck> finishedTrucks; //The trucks that have terminated themselves 
     //because they are at the Depot and there are no more parcels
     protected final int initialParcelCount;	//Starting number of parcels
     private Set<Parcel> parcels; //The parcels in this board - ones that have not been delivered yet
+    private PublishingSet parcelView; //The set parcels wraps, which can be read without locking
+
+    /** The elements of this board in the order of the BinaryBoard it was built
+     * from (null if it was not built from one). */
+    private BinaryBoard.Elements binaryElements;
+
+    /** The immutable part of this board (null until built; see getTopology()).
+     * topologyNodes[i] and topologyEdges[i] are its node and edge i. */
+    private volatile BoardTopology topology;
+    private Node[] topologyNodes;
+    private Edge[] topologyEdges;
+
+    /** Parcel and truck counts by state, replaced at each state transition. */
+    private final AtomicReference<GameStats> stats = new AtomicReference<GameStats>();
 
     /** The game for this board. */
     public final Game game;
@@ -58,94 +77,298 @@ public final class Board implements JSONString {
 
     private int onColorMultiplier; // Point multiplier of on-color delivery
 
-    /** Initialize the board from the given serialized version of the board for g */
-    protected Board(Game g, JSONObject obj) {
+    /** Initialize the board from the given serialized version of the board for g.
+     * The entries of obj are read in order, as Board(Game, JSONTokener) reads them,
+     * without serializing obj again.
+     * @throws JSONException - if obj is not a well-formed board. */
+    protected Board(Game g, JSONObject obj) throws JSONException {
         game = g;
 
         initCollections();
 
-        //Read seed if possible; otherwise use -1.
-        if (obj.has(SEED_TOKEN)) {
-            seed = obj.getLong(SEED_TOKEN);
-        } else {
-            seed = -1;
-        }
-        //Read score coefficients
-        JSONArray scoreJSON = obj.getJSONArray(Board.SCORE_TOKEN);
-        waitCost = scoreJSON.getInt(0);
-        pickupCost = scoreJSON.getInt(1);
-        dropoffCost = scoreJSON.getInt(2);
-        payoff = scoreJSON.getInt(3);
-        onColorMultiplier = scoreJSON.getInt(4);
-
-        //Read in all nodes of board - read all nodes before reading any edges
+        BoardReader reader = new BoardReader();
         for (String key : obj.keySet()) {
-            if (key.startsWith(Board.NODE_TOKEN)) {
-                JSONObject nodeJSON = obj.getJSONObject(key);
-                Node n = new Node(this, nodeJSON.getString(BoardElement.NAME_TOKEN), null);
-                Circle c = n.getCircle();
-                c.setX1(nodeJSON.getInt(BoardElement.X_TOKEN));
-                c.setY1(nodeJSON.getInt(BoardElement.Y_TOKEN));
-                n.x = c.getX1();
-                n.y = c.getY1();
-                getNodes().add(n);
-                if (n.name.equals(Board.TRUCK_DEPOT_NAME))
-                    setTruckDepot(n);
-            }
+            reader.read(key, obj.get(key));
         }
+        seed = reader.finish();
 
         //Scale the locations of the nodes based on the gui size
         scaleComponents();
+        updateMinMaxLength();
 
-        //Read in all edges of board. Precondition - all nodes already read in
-        for (String key : obj.keySet()) {
-            if (key.startsWith(Board.EDGE_TOKEN)) {
-                JSONObject edgeJSON = obj.getJSONObject(key);
-                JSONArray exitArr = edgeJSON.getJSONArray(BoardElement.LOCATION_TOKEN);
+        initialParcelCount = parcels.size();
+        stats.set(GameStats.initial(initialParcelCount, trucks.size()));
+    }
 
-                int length = edgeJSON.getInt(BoardElement.LENGTH_TOKEN);
-                Node firstExit = getNode((String)exitArr.get(0));
-                Node secondExit = getNode((String)exitArr.get(1));
+    /** Initialize the board for g by reading a serialized board from x in a single pass.
+     * Only one element (node, edge, truck, parcel) is held in parsed form at a time.
+     * Node names are resolved through a hash index; edges and parcels whose nodes have
+     * not been read yet, and trucks read before the truck depot, are deferred until the
+     * end of the board. Nodes and edges are kept in the order they are read, and
+     * trucks in the order they were serialized in (truck-0, truck-1, ...), so a
+     * board read back from its JSON has the same element order as the original
+     * (see writeJSON(Writer)).
+     * @throws JSONException - if x is not a well-formed board. */
+    protected Board(Game g, JSONTokener x) throws JSONException {
+        game = g;
 
-                Edge e = new Edge(this, firstExit, secondExit, length);
-                getEdges().add(e);
-                firstExit.addExit(e);
-                secondExit.addExit(e);
-            }
+        initCollections();
+
+        BoardReader reader = new BoardReader();
+        if (x.nextClean() != '{')
+            throw x.syntaxError("A board must begin with '{'");
+        char c = x.nextClean();
+        while (c != '}') {
+            if (c == 0)
+                throw x.syntaxError("A board must end with '}'");
+            x.back();
+            String key = x.nextValue().toString();
+            if (x.nextClean() != ':')
+                throw x.syntaxError("Expected a ':' after a key");
+
+            reader.read(key, x.nextValue());
+
+            //Pairs are separated by ','
+            c = x.nextClean();
+            if (c == ',')
+                c = x.nextClean();
+            else if (c != '}')
+                throw x.syntaxError("Expected a ',' or '}'");
         }
-        //board reading finished.
+        seed = reader.finish();
 
-        //Read in the trucks and parcels - precondition - all nodes already read
-        for (String key : obj.keySet()) {
-            if (key.startsWith(TRUCK_TOKEN)) {
-                JSONObject truck = obj.getJSONObject(key);
-                Color c = new Color(truck.getInt(BoardElement.COLOR_TOKEN));
-                String name = truck.getString(BoardElement.NAME_TOKEN);
-                Truck t = new Truck(game, name, c, getTruckDepot());
-                trucks.add(t);
-            } else if ( key.startsWith(PARCEL_TOKEN)) {
-                JSONObject parcel = obj.getJSONObject(key);
-                Color c = new Color(parcel.getInt(BoardElement.COLOR_TOKEN));
-                Node start = getNode(parcel.getString(BoardElement.LOCATION_TOKEN));
-                Node dest = getNode(parcel.getString(BoardElement.DESTINATION_TOKEN));
+        //Scale the locations of the nodes based on the gui size
+        scaleComponents();
+        updateMinMaxLength();
 
-                Parcel p = new Parcel(this, start, dest, c);
-                parcels.add(p);
-                start.addParcel(p);
-            }
+        initialParcelCount = parcels.size();
+        stats.set(GameStats.initial(initialParcelCount, trucks.size()));
+    }
+
+    /** Initialize the board for g from the binary board b.
+     * Nodes, edges, trucks and parcels are created in the order of b's arrays. */
+    protected Board(Game g, BinaryBoard b) {
+        this(g, BoardTopology.of(b));
+    }
+
+    /** Initialize the board for g from topology t, which it shares with every
+     * other board built from t, with t's initial trucks and parcels.
+     * Nodes, edges, trucks and parcels are created in the order of t's arrays. */
+    protected Board(Game g, BoardTopology t) {
+        BinaryBoard b = t.board;
+        game = g;
+        seed = b.seed;
+
+        initCollections();
+
+        waitCost = b.scoreCoeff[0];
+        pickupCost = b.scoreCoeff[1];
+        dropoffCost = b.scoreCoeff[2];
+        payoff = b.scoreCoeff[3];
+        onColorMultiplier = b.scoreCoeff[4];
+
+        Node[] nodeArr = new Node[b.nodeX.length];
+        Edge[] edgeArr = new Edge[b.edgeLength.length];
+        Truck[] truckArr = new Truck[b.truckName.length];
+        Parcel[] parcelArr = new Parcel[b.parcelStart.length];
+        for (int i = 0; i < nodeArr.length; i++) {
+            Node n = new Node(this, b.strings[i], null);
+            Circle circle = n.getCircle();
+            circle.setX1(b.nodeX[i]);
+            circle.setY1(b.nodeY[i]);
+            n.x = b.nodeX[i];
+            n.y = b.nodeY[i];
+            nodeArr[i] = n;
+            getNodes().add(n);
+        }
+        if (b.depot != -1)
+            setTruckDepot(nodeArr[b.depot]);
+
+        for (int i = 0; i < b.edgeLength.length; i++) {
+            Node firstExit = nodeArr[b.edgeFirst[i]];
+            Node secondExit = nodeArr[b.edgeSecond[i]];
+            Edge e = new Edge(this, firstExit, secondExit, b.edgeLength[i]);
+            edgeArr[i] = e;
+            getEdges().add(e);
+            firstExit.addExit(e);
+            secondExit.addExit(e);
+        }
+
+        for (int i = 0; i < b.truckName.length; i++) {
+            truckArr[i] = new Truck(game, b.strings[b.truckName[i]], new Color(b.truckColor[i]),
+                    getTruckDepot());
+            trucks.add(truckArr[i]);
+        }
+
+        for (int i = 0; i < b.parcelStart.length; i++) {
+            Node start = nodeArr[b.parcelStart[i]];
+            Parcel p = new Parcel(this, start, nodeArr[b.parcelDestination[i]],
+                    new Color(b.parcelColor[i]));
+            parcelArr[i] = p;
+            parcels.add(p);
+            start.addParcel(p);
         }
+        binaryElements = new BinaryBoard.Elements(nodeArr, edgeArr, truckArr, parcelArr);
+        topology = t;
+        topologyNodes = nodeArr;
+        topologyEdges = edgeArr;
+        for (Node n : nodeArr) {
+            n.getAdjacency();
+        }
+
+        //Scale the locations of the nodes based on the gui size
+        scaleComponents();
         updateMinMaxLength();
 
         initialParcelCount = parcels.size();
+        stats.set(GameStats.initial(initialParcelCount, trucks.size()));
+    }
+
+    /** The state of reading a serialized board, one entry (key and value) at a
+     * time: the index of the nodes read so far, and the entries waiting on
+     * entries not read yet. */
+    private final class BoardReader {
+        private long seedRead = -1; //Seed if one is read, otherwise -1
+        private final HashMap<String, Node> nodeIndex = new HashMap<String, Node>();
+        private final ArrayList<JSONObject> pendingEdges = new ArrayList<JSONObject>();
+        private final ArrayList<JSONObject> pendingParcels = new ArrayList<JSONObject>();
+        //Trucks keyed truck-<number>, by number; trucks with any other key, in the order read
+        private final TreeMap<Integer, JSONObject> numberedTrucks = new TreeMap<Integer, JSONObject>();
+        private final ArrayList<JSONObject> otherTrucks = new ArrayList<JSONObject>();
+
+        /** Read the entry of the board with key key and value value.
+         * @throws JSONException - if value is not what key calls for. */
+        private void read(String key, Object value) throws JSONException {
+            if (key.equals(SEED_TOKEN)) {
+                if (!(value instanceof Number))
+                    throw new JSONException("The seed " + value + " is not a number");
+                seedRead = ((Number)value).longValue();
+            } else if (key.equals(SCORE_TOKEN)) {
+                //Read score coefficients
+                if (!(value instanceof JSONArray))
+                    throw new JSONException("The score coefficients " + value + " are not an array");
+                JSONArray scoreJSON = (JSONArray)value;
+                waitCost = scoreJSON.getInt(0);
+                pickupCost = scoreJSON.getInt(1);
+                dropoffCost = scoreJSON.getInt(2);
+                payoff = scoreJSON.getInt(3);
+                onColorMultiplier = scoreJSON.getInt(4);
+            } else if (key.startsWith(NODE_TOKEN)) {
+                JSONObject nodeJSON = object(key, value);
+                Node n = new Node(Board.this, nodeJSON.getString(BoardElement.NAME_TOKEN), null);
+                Circle circle = n.getCircle();
+                circle.setX1(nodeJSON.getInt(BoardElement.X_TOKEN));
+                circle.setY1(nodeJSON.getInt(BoardElement.Y_TOKEN));
+                n.x = circle.getX1();
+                n.y = circle.getY1();
+                getNodes().add(n);
+                nodeIndex.put(n.name, n);
+                if (n.name.equals(Board.TRUCK_DEPOT_NAME))
+                    setTruckDepot(n);
+            } else if (key.startsWith(EDGE_TOKEN)) {
+                JSONObject edgeJSON = object(key, value);
+                if (!readEdge(edgeJSON, nodeIndex))
+                    pendingEdges.add(edgeJSON);
+            } else if (key.startsWith(TRUCK_TOKEN)) {
+                JSONObject truckJSON = object(key, value);
+                int number = truckNumber(key);
+                if (number < 0 || numberedTrucks.containsKey(number))
+                    otherTrucks.add(truckJSON);
+                else
+                    numberedTrucks.put(number, truckJSON);
+            } else if (key.startsWith(PARCEL_TOKEN)) {
+                JSONObject parcelJSON = object(key, value);
+                if (!readParcel(parcelJSON, nodeIndex))
+                    pendingParcels.add(parcelJSON);
+            }
+            //Unknown key - skip its value
+        }
+
+        /** Return value, the value of key, as a JSONObject.
+         * @throws JSONException - if it is not one. */
+        private JSONObject object(String key, Object value) throws JSONException {
+            if (!(value instanceof JSONObject))
+                throw new JSONException("The value of " + key + " is not an object");
+            return (JSONObject)value;
+        }
+
+        /** Return the number n of truck key truck-n, or -1 if the rest of the key
+         * is not a (non-negative int) number. */
+        private int truckNumber(String key) {
+            String suffix = key.substring(TRUCK_TOKEN.length());
+            if (suffix.isEmpty() || suffix.length() > 9)
+                return -1;
+            for (int i = 0; i < suffix.length(); i++) {
+                if (!Character.isDigit(suffix.charAt(i)))
+                    return -1;
+            }
+            return Integer.parseInt(suffix);
+        }
+
+        /** Create everything that was waiting on entries read later: edges and
+         * parcels, then the trucks, by number and then in the order read.
+         * Return the seed read (-1 if none was).
+         * @throws JSONException - if an edge or parcel is on a node not on the board. */
+        private long finish() throws JSONException {
+            for (JSONObject edgeJSON : pendingEdges) {
+                if (!readEdge(edgeJSON, nodeIndex))
+                    throw new JSONException("Edge " + edgeJSON + " connects a node not on the board");
+            }
+            for (JSONObject parcelJSON : pendingParcels) {
+                if (!readParcel(parcelJSON, nodeIndex))
+                    throw new JSONException("Parcel " + parcelJSON + " is on a node not on the board");
+            }
+            ArrayList<JSONObject> truckJSONs = new ArrayList<JSONObject>(numberedTrucks.values());
+            truckJSONs.addAll(otherTrucks);
+            for (JSONObject truck : truckJSONs) {
+                Color color = new Color(truck.getInt(BoardElement.COLOR_TOKEN));
+                String name = truck.getString(BoardElement.NAME_TOKEN);
+                trucks.add(new Truck(game, name, color, getTruckDepot()));
+            }
+            return seedRead;
+        }
+    }
+
+    /** Create the edge serialized in edgeJSON and add it to this board, looking its
+     * exits up in nodeIndex (node name -> node). Return false (and create nothing)
+     * if either exit is not in nodeIndex yet. */
+    private boolean readEdge(JSONObject edgeJSON, HashMap<String, Node> nodeIndex) {
+        JSONArray exitArr = edgeJSON.getJSONArray(BoardElement.LOCATION_TOKEN);
+        Node firstExit = nodeIndex.get(exitArr.getString(0));
+        Node secondExit = nodeIndex.get(exitArr.getString(1));
+        if (firstExit == null || secondExit == null)
+            return false;
+
+        Edge e = new Edge(this, firstExit, secondExit, edgeJSON.getInt(BoardElement.LENGTH_TOKEN));
+        getEdges().add(e);
+        firstExit.addExit(e);
+        secondExit.addExit(e);
+        return true;
+    }
+
+    /** Create the parcel serialized in parcelJSON and add it to this board, looking
+     * its start and destination up in nodeIndex (node name -> node). Return false
+     * (and create nothing) if either node is not in nodeIndex yet. */
+    private boolean readParcel(JSONObject parcelJSON, HashMap<String, Node> nodeIndex) {
+        Node start = nodeIndex.get(parcelJSON.getString(BoardElement.LOCATION_TOKEN));
+        Node dest = nodeIndex.get(parcelJSON.getString(BoardElement.DESTINATION_TOKEN));
+        if (start == null || dest == null)
+            return false;
+
+        Parcel p = new Parcel(this, start, dest, new Color(parcelJSON.getInt(BoardElement.COLOR_TOKEN)));
+        parcels.add(p);
+        start.addParcel(p);
+        return true;
     }
 
     /** Initialize collections -- call during construction, not otherwise. */
     private void initCollections() {
         trucks = new ArrayList<Truck>();
         finishedTrucks = Collections.synchronizedList(new ArrayList<Truck>());
-        parcels = Collections.synchronizedSet(new HashSet<Parcel>());
-        nodes = new HashSet<Node>();
-        edges = new HashSet<Edge>();
+        parcelView = new PublishingSet();
+        parcels = Collections.synchronizedSet(parcelView);
+        nodes = new LinkedHashSet<Node>();
+        edges = new LinkedHashSet<Edge>();
     }
 
     /** Return a random node in this board */
@@ -165,6 +388,16 @@ public final class Board implements JSONString {
         return nodes;
     }
 
+    /** Return the next node id of this board (see Node.id). */
+    int newNodeId() {
+        return nextNodeId++;
+    }
+
+    /** Return the next edge id of this board (see Edge.id). */
+    int newEdgeId() {
+        return nextEdgeId++;
+    }
+
     /** Return the number of Nodes in this board */
     public int getNodesSize() {
         return nodes.size();
@@ -243,6 +476,26 @@ public final class Board implements JSONString {
         if (finishedTrucks.containsAll(trucks)) game.finish();
     }
 
+    /** Return true iff t has terminated itself (see addTruckToFinished). */
+    boolean isTruckFinished(Truck t) {
+        return finishedTrucks.contains(t);
+    }
+
+    /** Put t in the list of finished trucks iff finished, without ending the
+     * game. Used to restore a Snapshot. */
+    void setTruckFinished(Truck t, boolean finished) {
+        if (!finished)
+            finishedTrucks.remove(t);
+        else if (!finishedTrucks.contains(t))
+            finishedTrucks.add(t);
+    }
+
+    /** Replace the parcel and truck counts of this board by s. Used to restore
+     * a Snapshot. */
+    void setStats(GameStats s) {
+        stats.set(s);
+    }
+
     /** Return the parcels in this board that have not yet been delivered. */
     public Set<Parcel> getParcels() {
 //    	synchronized(parcels){
@@ -251,6 +504,83 @@ public final class Board implements JSONString {
     	return parcels;
     }
 
+    /** Return the parcels in this board that have not yet been delivered, as of
+     * some moment during this call. Takes no lock, so a thread that must never
+     * wait for the game's threads (e.g. the gui's, see RenderSnapshot) can call it.
+     * Do not modify the array. */
+    Parcel[] getParcelView() {
+        return parcelView.view();
+    }
+
+    /** A set of parcels whose elements can be read as an array without locking
+     * the set. Adding and removing an element take expected O(1) time: they only
+     * mark the array stale. view() rebuilds the array, in O(size), only when it
+     * is stale, so the gui pays for at most one copy per frame, however many
+     * parcels were delivered in between. */
+    private static final class PublishingSet extends AbstractSet<Parcel> {
+        /** The elements. Concurrent, so view() can copy it while trucks change it. */
+        private final Set<Parcel> elements = ConcurrentHashMap.newKeySet();
+
+        private volatile Parcel[] view = new Parcel[0]; //The elements, as of the last view()
+        private volatile boolean stale; //True if the elements may have changed since view was built
+
+        /** Return the elements of this set. An element added or removed before
+         * this call began is reflected in the result. */
+        Parcel[] view() {
+            if (stale) {
+                stale = false;
+                view = elements.toArray(new Parcel[0]);
+            }
+            return view;
+        }
+
+        @Override
+        public boolean add(Parcel p) {
+            boolean changed = elements.add(p);
+            if (changed) stale = true;
+            return changed;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            boolean changed = elements.remove(o);
+            if (changed) stale = true;
+            return changed;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return elements.contains(o);
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
+        }
+
+        @Override
+        public Iterator<Parcel> iterator() {
+            final Iterator<Parcel> it = elements.iterator();
+            return new Iterator<Parcel>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Parcel next() {
+                    return it.next();
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                    stale = true;
+                }
+            };
+        }
+    }
+
     /** Called by Trucks to drop off parcels at nodes. 
      * @param p - The Parcel to deliver. Must be currently held by Truck t.
      * @param n - The Node to deliver the parcel to. Must be Parcel p's final destination.
@@ -274,7 +604,103 @@ public final class Board implements JSONString {
 
         parcels.remove(p);
         n.removeParcel(p);
-        if (game.getGUI() != null) game.getGUI().removeParcel(p);
+        parcelMoved(p, t, GameStats.PARCEL_HELD, GameStats.PARCEL_DELIVERED);
+    }
+
+    /** Return the elements of this board in the order of the BinaryBoard it was
+     * built from (null if it was not built from one). */
+    BinaryBoard.Elements getBinaryElements() {
+        return binaryElements;
+    }
+
+    /** Return the immutable part of this board: its nodes, edges and score
+     * coefficients in index form. A board built from a topology (e.g. the board of
+     * a game created from a map file) shares it; for any other board it is built
+     * the first time it is asked for, in O(size of the board). */
+    public BoardTopology getTopology() {
+        BoardTopology t = topology;
+        if (t != null)
+            return t;
+        synchronized(this) {
+            if (topology == null) {
+                BinaryBoard.Elements el = new BinaryBoard.Elements(this);
+                for (int i = 0; i < el.nodes.length; i++) {
+                    if (el.nodes[i].id != i)
+                        throw new IllegalStateException("Nodes of " + this + " were added or removed");
+                }
+                for (int i = 0; i < el.edges.length; i++) {
+                    if (el.edges[i].id != i)
+                        throw new IllegalStateException("Edges of " + this + " were added or removed");
+                }
+                topologyNodes = el.nodes;
+                topologyEdges = el.edges;
+                for (Node n : el.nodes) {
+                    n.getAdjacency();
+                }
+                topology = BoardTopology.of(BinaryBoard.fromBoard(this, el));
+            }
+            return topology;
+        }
+    }
+
+    /** Return node i of this board's topology. */
+    public Node getNode(int i) {
+        getTopology();
+        return topologyNodes[i];
+    }
+
+    /** Return edge i of this board's topology. */
+    public Edge getEdge(int i) {
+        getTopology();
+        return topologyEdges[i];
+    }
+
+    /** Return the index of node n, a node of this board, in its topology:
+     * its id (see Node.getId). */
+    public int indexOf(Node n) {
+        return n.id;
+    }
+
+    /** Return the index of edge e, an edge of this board, in its topology:
+     * its id (see Edge.getId). */
+    public int indexOf(Edge e) {
+        return e.id;
+    }
+
+    /** Return the current parcel and truck counts of this board, in O(1). */
+    public GameStats getStats() {
+        return stats.get();
+    }
+
+    /** Record that parcel p went from GameStats state from to state to,
+     * picked up, dropped off or delivered by truck t. */
+    void parcelMoved(Parcel p, Truck t, int from, int to) {
+        GameStats s;
+        do {
+            s = stats.get();
+        } while (!stats.compareAndSet(s, s.withParcelMoved(from, to)));
+        if (game == null)
+            return;
+        game.stateChanged(p);
+        if (to == GameStats.PARCEL_DELIVERED) {
+            game.progressed();
+            game.getMetrics().parcelDelivered(game.getFrames());
+        }
+        ReplayRecorder r = game.getRecorder();
+        if (r != null) r.parcelMoved(p, t, to);
+    }
+
+    /** Record that truck t went from GameStats state from to state to.
+     * Do nothing if from == to. */
+    void truckMoved(Truck t, int from, int to) {
+        if (from == to)
+            return;
+        GameStats s;
+        do {
+            s = stats.get();
+        } while (!stats.compareAndSet(s, s.withTruckMoved(from, to)));
+        ReplayRecorder r = game == null ? null : game.getRecorder();
+        if (r != null) r.truckMoved(t, to);
     }
 
     /** Return the set of Edges in this board. 
@@ -424,33 +850,81 @@ public final class Board implements JSONString {
      * > Trucks
      * > Parcels */
     @Override
-    public String toJSONString() {		
-        String s = "{\n" + Main.addQuotes(SEED_TOKEN) + ":" + seed +",\n";
-        s += Main.addQuotes(SCORE_TOKEN) + ":[" + waitCost + "," 
-                + pickupCost + "," + dropoffCost + "," + payoff + "," + onColorMultiplier + "],";
+    public String toJSONString() {
+        StringWriter w = new StringWriter();
+        try {
+            writeJSON(w);
+        } catch (IOException e) {
+            //A StringWriter never throws
+            throw new RuntimeException(e);
+        }
+        return w.toString();
+    }
+
+    /** Write the serialized board (exactly the text of toJSONString()) to file f,
+     * streaming it through a buffered writer rather than building it in memory.
+     * @throws IOException - if the file writing goes bad. */
+    public void writeJSON(File f) throws IOException {
+        try (Writer w = java.nio.file.Files.newBufferedWriter(f.toPath(),
+                java.nio.charset.StandardCharsets.UTF_8)) {
+            writeJSON(w);
+        }
+    }
+
+    /** Write the serialized board (exactly the text of toJSONString()) to w,
+     * one element at a time. w is not flushed or closed.
+     * <br><br>
+     * Nodes, edges and trucks are written in this board's order, which for a
+     * board read from JSON is the order of the file, and numbered from 0. So a
+     * board written and read back writes them again in the same order; parcels
+     * are written in no particular order. A map file written by hand or by older
+     * versions of this class may come back with its elements in a different
+     * order and numbering: the same board as equivalent JSON, not the same bytes.
+     * @throws IOException - if w throws. */
+    public void writeJSON(Writer w) throws IOException {
+        w.write("{\n");
+        w.write(Main.addQuotes(SEED_TOKEN));
+        w.write(":" + seed + ",\n");
+        w.write(Main.addQuotes(SCORE_TOKEN));
+        w.write(":[" + waitCost + "," + pickupCost + "," + dropoffCost + ","
+                + payoff + "," + onColorMultiplier + "],");
         int i = 0;
         for (Node n : nodes) {
-            s += "\n" + Main.addQuotes(NODE_TOKEN + i) + ":" + n.toJSONString() + ",";
+            writeElement(w, NODE_TOKEN, i, n);
+            w.write(',');
             i++;
         }
         i = 0;
         for (Edge e : edges) {
-            s += "\n" + Main.addQuotes(EDGE_TOKEN + i) + ":" + e.toJSONString() +",";
+            writeElement(w, EDGE_TOKEN, i, e);
+            w.write(',');
             i++;
         }
         i = 0;
         for (Truck t : trucks) {
-            s += "\n" + Main.addQuotes(TRUCK_TOKEN + i) + ":" + t.toJSONString() + ",";
+            writeElement(w, TRUCK_TOKEN, i, t);
+            w.write(',');
             i++;
         }
-        i = 0;
-        for (Parcel p : parcels) {
-            s += "\n" + Main.addQuotes(PARCEL_TOKEN + i) + ":" + p.toJSONString();
-            if (i < parcels.size() - 1)
-                s += ",";
-            i++;
-        }	
-        return s + "\n}";
+        synchronized(parcels) {
+            i = 0;
+            for (Parcel p : parcels) {
+                writeElement(w, PARCEL_TOKEN, i, p);
+                if (i < parcels.size() - 1)
+                    w.write(',');
+                i++;
+            }
+        }
+        w.write("\n}");
+    }
+
+    /** Write the pair "\n" "token+i":elm to w. */
+    private static void writeElement(Writer w, String token, int i, JSONString elm)
+            throws IOException {
+        w.write('\n');
+        w.write(Main.addQuotes(token + i));
+        w.write(':');
+        w.write(elm.toJSONString());
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -485,6 +959,7 @@ public final class Board implements JSONString {
         scaleComponents();
         updateMinMaxLength();
         initialParcelCount = parcels.size();
+        stats.set(GameStats.initial(initialParcelCount, trucks.size()));
     }
 
     /** Library for random board generation.
@@ -492,6 +967,13 @@ public final class Board implements JSONString {
      * 
      * Node placement and Edge connections are done using the Delaunay Triangulation Method:
      * http://en.wikipedia.org/wiki/Delaunay_triangulation 
+     * <br><br>
+     * The board is laid out as Sites and Roads, which hash and compare by name
+     * the way Nodes and Edges did when this generator was written. So the hash
+     * sets iterated here always iterate in the same order, and a seed always
+     * gives the same board, whatever Node.hashCode and Edge.hashCode are. Once
+     * the layout is done, the board's nodes and edges are created in the
+     * iteration order of those sets, each with its final id.
      * @author eperdew, MPatashnik
      */
     private static class BoardGeneration{
@@ -530,10 +1012,20 @@ public final class Board implements JSONString {
         private static final int ON_COLOR_MULTIPLIER_MIN = 2;
         private static final int ON_COLOR_MULTIPLIER_MAX = 4;
 
+        private final Random r;     //The randomer used for all random decisions
+        private final HashSet<Site> sites = new HashSet<Site>(); //The nodes laid out so far
+        private final HashSet<Road> roads = new HashSet<Road>(); //The edges laid out so far
+
+        /** Constructor: a generation using r for all random decisions. */
+        private BoardGeneration(Random r) {
+            this.r = r;
+        }
+
         /** Generate a full set of random elements for b, using r for all random decisions.
          * @param b - a blank board to put stuff on.
          * @param r - a randomer to use for all random decisions. */
         private static void gen(Board b, Random r) {
+            BoardGeneration g = new BoardGeneration(r);
             final int numCities = r.nextInt(MAX_NODES - MIN_NODES + 1) + MIN_NODES;
             b.waitCost = -1
                     * (r.nextInt(WAIT_COST_MAX - WAIT_COST_MIN + 1) + WAIT_COST_MIN);
@@ -547,7 +1039,8 @@ public final class Board implements JSONString {
                     + ON_COLOR_MULTIPLIER_MIN;
 
             ArrayList<String> cities = cityNames();
-            //Create nodes and add to board
+            Site depot = null;
+            //Lay out nodes. A city whose name is taken is left out
             for (int i = 0; i < numCities; i++) {
                 String name;
                 if (i == 0) {
@@ -555,8 +1048,8 @@ public final class Board implements JSONString {
                 } else{
                     name = cities.remove(r.nextInt(cities.size()));
                 }
-                Node n = new Node(b, name, null);
-                Circle c = n.getCircle();
+                Site n = new Site(name);
+                Circle c = n.circle;
                 c.setX1(-Circle.DEFAULT_DIAMETER); 
                 c.setY1(-Circle.DEFAULT_DIAMETER);
                 int rt = 0;
@@ -568,8 +1061,8 @@ public final class Board implements JSONString {
                     c.setY1(r.nextInt(HEIGHT + 1) + BUFFER);
                     if (rt <= NUM_RETRIES){
                         //Check other existing nodes. If too close, re-randomize this node's location
-                        for (Node n2 : b.getNodes()) {
-                            if (n2.getCircle().getDistance(c) < Circle.BUFFER_RADUIS) {
+                        for (Site n2 : g.sites) {
+                            if (n2.circle.getDistance(c) < Circle.BUFFER_RADUIS) {
                                 c.setX1(-Circle.DEFAULT_DIAMETER);
                                 c.setY1(-Circle.DEFAULT_DIAMETER);
                                 break;
@@ -577,48 +1070,175 @@ public final class Board implements JSONString {
                         }
                     }
                 }
-                n.x = n.getCircle().getX1();
-                n.y = n.getCircle().getY1();
-                b.getNodes().add(n);
+                g.sites.add(n);
                 if (n.name.equals(Board.TRUCK_DEPOT_NAME)) {
-                    b.setTruckDepot(n);
+                    depot = n;
                 }
             }
 
-            //Add trucks
+            //Choose truck colors
             final int numb_trucks = r.nextInt(MAX_TRUCKS - MIN_TRUCKS + 1) + MIN_TRUCKS;
+            Color[] truckColors = new Color[numb_trucks];
             for (int i = 0; i < numb_trucks; i++) {
-                Truck t = new Truck(b.game, "TRUCK-" + (i+1), 
-                        Score.colorArr()[r.nextInt(Score.colorArr().length)], b.getTruckDepot());
-                b.trucks.add(t);
+                truckColors[i] = Score.colorArr()[r.nextInt(Score.colorArr().length)];
             }
 
-            //Add parcels
+            //Choose parcels
             final int numb_parcels = r.nextInt(MAX_PARCELS - MIN_PARCELS + 1) + MIN_PARCELS;
+            Site[] parcelStarts = new Site[numb_parcels];
+            Site[] parcelDests = new Site[numb_parcels];
+            Color[] parcelColors = new Color[numb_parcels];
             for (int i = 0; i < numb_parcels; i++) {
-                Node start = randomElement(b.getNodes(), r);
-                Node dest = start;
+                Site start = randomElement(g.sites, r);
+                Site dest = start;
                 while(dest == start) {
-                    dest = randomElement(b.getNodes(), r);
+                    dest = randomElement(g.sites, r);
+                }
+                parcelStarts[i] = start;
+                parcelDests[i] = dest;
+                parcelColors[i] = Score.colorArr()[r.nextInt(Score.colorArr().length)];
+            }
+
+            g.spiderwebEdges();
+
+            //Create nodes and edges, in the order of the sets they were laid out in
+            for (Site s : g.sites) {
+                Node n = new Node(b, s.name, null);
+                n.getCircle().setX1(s.circle.getX1());
+                n.getCircle().setY1(s.circle.getY1());
+                n.x = s.circle.getX1();
+                n.y = s.circle.getY1();
+                b.getNodes().add(n);
+                s.node = n;
+            }
+            b.setTruckDepot(depot.node);
+            for (Road e : g.roads) {
+                e.edge = new Edge(b, e.first.node, e.second.node, e.length);
+                b.getEdges().add(e.edge);
+            }
+            for (Site s : g.sites) {
+                for (Road e : s.exits) {
+                    s.node.addExit(e.edge);
                 }
-                Color c = Score.colorArr()[r.nextInt(Score.colorArr().length)];
-                Parcel p = new Parcel(b, start, dest, c);
+            }
+
+            //Add trucks
+            for (int i = 0; i < numb_trucks; i++) {
+                b.trucks.add(new Truck(b.game, "TRUCK-" + (i+1), truckColors[i], b.getTruckDepot()));
+            }
+
+            //Add parcels
+            for (int i = 0; i < numb_parcels; i++) {
+                Parcel p = new Parcel(b, parcelStarts[i].node, parcelDests[i].node, parcelColors[i]);
                 b.parcels.add(p);
-                start.addParcel(p);
+                parcelStarts[i].node.addParcel(p);
+            }
+        }
+
+        /** A node being laid out. Like a Node when this generator was written, it
+         * hashes to the hash code of its name and equals any site with the same
+         * name, so a set of sites keeps only the first site with a given name. */
+        private static final class Site {
+            final String name;
+            final Circle circle = new Circle(null, 0, 0, Circle.DEFAULT_DIAMETER);
+            final HashSet<Road> exits = new HashSet<Road>(); //Roads leaving this site
+            Node node; //The node created for this site (null until it is)
+
+            /** Constructor: a site named name, with no roads. */
+            Site(String name) {
+                this.name = name;
+            }
+
+            /** Return false if other is this site. Otherwise, return true iff a
+             * road of exits leads to other. */
+            boolean isConnectedTo(Site other) {
+                if (other.equals(this))
+                    return false;
+                for (Road e : exits) {
+                    if (e.isExit(other))
+                        return true;
+                }
+                return false;
             }
 
-            spiderwebEdges(b, r);
+            /** Return the road of exits that leads to other (null if none does). */
+            Road getConnect(Site other) {
+                for (Road e : exits) {
+                    if (e.getOther(this).equals(other))
+                        return e;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof Site && name.equals(((Site)o).name);
+            }
+
+            @Override
+            public int hashCode() {
+                return name.hashCode();
+            }
+        }
+
+        /** An edge being laid out. Like an Edge when this generator was written, it
+         * hashes to the sum of the hash codes of its exits and equals any road with
+         * the same exits, in either order, so a set of roads keeps only the first
+         * road between two sites. */
+        private static final class Road {
+            final Site first;
+            final Site second;
+            final int length;
+            final Line line;
+            Edge edge; //The edge created for this road (null until it is)
+
+            /** Constructor: a road of length length from first to second. */
+            Road(Site first, Site second, int length) {
+                this.first = first;
+                this.second = second;
+                this.length = length;
+                line = new Line(first.circle, second.circle, null);
+            }
+
+            /** Return true iff s is an exit of this road. */
+            boolean isExit(Site s) {
+                return first.equals(s) || second.equals(s);
+            }
+
+            /** Return the exit of this road that is not s (null if s is neither). */
+            Site getOther(Site s) {
+                if (first.equals(s))
+                    return second;
+                if (second.equals(s))
+                    return first;
+                return null;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Road))
+                    return false;
+                Road e = (Road)o;
+                return (first.equals(e.second) && second.equals(e.first)) ||
+                       (first.equals(e.first) && second.equals(e.second));
+            }
+
+            @Override
+            public int hashCode() {
+                return first.hashCode() + second.hashCode();
+            }
         }
 
-        /** Create an edge with a random length that connects n1 and n2
-         * and add to the correct collections. Return the created edge.
+        /** Lay out a road with a random length that connects n1 and n2
+         * and add it to the correct collections. Return the road.
+         * If n1 and n2 are already connected, the sets keep the road they have.
          */
-        private static Edge addEdge(Board b, Random r, Node n1, Node n2) {
+        private Road addEdge(Site n1, Site n2) {
             int length = r.nextInt(MAX_EDGE_LENGTH - MIN_EDGE_LENGTH + 1) + MIN_EDGE_LENGTH;
-            Edge e = new Edge(b, n1, n2, length);
-            b.getEdges().add(e);
-            n1.addExit(e);
-            n2.addExit(e);
+            Road e = new Road(n1, n2, length);
+            roads.add(e);
+            n1.exits.add(e);
+            n2.exits.add(e);
             return e;
         }
 
@@ -628,16 +1248,16 @@ public final class Board implements JSONString {
         /** Create a spiderweb of edges by creating concentric hulls,
          * then connecting between the hulls.
          * Create a connected, planar graph. */
-        private static void spiderwebEdges(Board b, Random r) {
-            HashSet<Node> nodes = new HashSet<Node>();
-            nodes.addAll(b.getNodes());
-            ArrayList<HashSet<Node>> hulls = new ArrayList<HashSet<Node>>();
+        private void spiderwebEdges() {
+            HashSet<Site> nodes = new HashSet<Site>();
+            nodes.addAll(sites);
+            ArrayList<HashSet<Site>> hulls = new ArrayList<HashSet<Site>>();
 
             //Create hulls, add edges
             while (! nodes.isEmpty()) {
-                HashSet<Node> nds = addGiftWrapEdges(b, r, nodes);
+                HashSet<Site> nds = addGiftWrapEdges(nodes);
                 hulls.add(nds);
-                for (Node n : nds) {
+                for (Site n : nds) {
                     nodes.remove(n);
                 }
             }
@@ -648,18 +1268,18 @@ public final class Board implements JSONString {
             //closest on the surrounding hull
             //Guarantee that the map is connected after this step
             for (int i = 0; i < hulls.size() - 1; i++) {
-                for (Node n : hulls.get(i+1)) {
-                    Node c = Collections.min(hulls.get(i), new DistanceComparator(n));
-                    if (! lineCrosses(b, n, c)) {
-                        addEdge(b, r, n, c);
+                for (Site n : hulls.get(i+1)) {
+                    Site c = Collections.min(hulls.get(i), new DistanceComparator(n));
+                    if (! lineCrosses(n, c)) {
+                        addEdge(n, c);
                     }
                 }
             }
 
             //Create a hashmap of node -> hull the node is in within hulls.
-            HashMap<Node, Integer> hullMap = new HashMap<Node, Integer>();
+            HashMap<Site, Integer> hullMap = new HashMap<Site, Integer>();
             for (int i = 0; i < hulls.size(); i++) {
-                for (Node n : hulls.get(i)) {
+                for (Site n : hulls.get(i)) {
                     hullMap.put(n,i);
                 }
             }
@@ -667,18 +1287,18 @@ public final class Board implements JSONString {
 
             //If the innermost hull has size 1 or 2, add edges to guarantee that every node
             //has degree at least 2
-            HashSet<Node> lastHull = hulls.get(hulls.size() - 1);
+            HashSet<Site> lastHull = hulls.get(hulls.size() - 1);
             if (lastHull.size() < 3) {
-                HashSet<Node> penultimateHull = hulls.get(hulls.size() - 2); //Exists. Just cause.
+                HashSet<Site> penultimateHull = hulls.get(hulls.size() - 2); //Exists. Just cause.
                 int e = 1;
                 if (lastHull.size() == 1) e = 2;
-                for (Node n : lastHull) {
-                    if (n.getExitsSize() < 2) {
+                for (Site n : lastHull) {
+                    if (n.exits.size() < 2) {
                         int i = 0;
                         while (i < e) {
-                            Node n2 = randomElement(penultimateHull, r);
-                            if (! lineCrosses(b, n, n2) && ! n.isConnectedTo(n2)) {
-                                addEdge(b, r, n, n2);
+                            Site n2 = randomElement(penultimateHull, r);
+                            if (! lineCrosses(n, n2) && ! n.isConnectedTo(n2)) {
+                                addEdge(n, n2);
                                 i++;
                             }
                         }
@@ -688,25 +1308,25 @@ public final class Board implements JSONString {
 
             int iterations = 0;
 
-            while (b.getEdges().size() < b.getNodes().size() * AVERAGE_DEGREE &&
+            while (roads.size() < sites.size() * AVERAGE_DEGREE &&
                     iterations < MAX_EDGE_ITERATIONS) {
                 //Get random node
-                Node n = randomElement(b.getNodes(), r);
+                Site n = randomElement(sites, r);
                 int hull = hullMap.get(n);
                 //Try to connect to a node on the hull beyond this one.
                 if (hull < maxHull) {
-                    for (Node c : hulls.get(hull + 1)) {
-                        if (! lineCrosses(b, n,c) && ! n.isConnectedTo(c)) {
-                            addEdge(b, r,n,c);
+                    for (Site c : hulls.get(hull + 1)) {
+                        if (! lineCrosses(n,c) && ! n.isConnectedTo(c)) {
+                            addEdge(n,c);
                             break;
                         }
                     }
                 }
                 //Try to connect to a node on the hull outside this one
                 if (hull > 0) {
-                    for (Node c : hulls.get(hull - 1)) {
-                        if (! lineCrosses(b, n,c) && ! n.isConnectedTo(c)) {
-                            addEdge(b, r,n,c);
+                    for (Site c : hulls.get(hull - 1)) {
+                        if (! lineCrosses(n,c) && ! n.isConnectedTo(c)) {
+                            addEdge(n,c);
                             break;
                         }
                     }
@@ -715,14 +1335,14 @@ public final class Board implements JSONString {
             }
 
             //Fix triangulation such that it's cleaner.
-            delunayTriangulate(b, r);
+            delunayTriangulate();
         }
 
         /** Gift-wrap the nodes - create a concentric set of edges that surrounds
          * set nodes, with random edge lengths.
          * Return a set of nodes that is the nodes involved in the gift-wrapping. */
-        private static HashSet<Node> addGiftWrapEdges(Board b, Random r, HashSet<Node> nodes) {
-            HashSet<Node> addedNodes = new HashSet<Node>();
+        private HashSet<Site> addGiftWrapEdges(HashSet<Site> nodes) {
+            HashSet<Site> addedNodes = new HashSet<Site>();
             //Base case - 0 or 1 node. Nothing to do.
             if (nodes.size() <= 1) {
                 addedNodes.add(nodes.iterator().next());
@@ -731,28 +1351,28 @@ public final class Board implements JSONString {
 
             //Base case - 2 nodes. Add the one edge connecting them and return.
             if (nodes.size() == 2) {
-                Iterator<Node> n = nodes.iterator();
-                Node n1 = n.next();
-                Node n2 = n.next();
-                addEdge(b, r, n1, n2);
+                Iterator<Site> n = nodes.iterator();
+                Site n1 = n.next();
+                Site n2 = n.next();
+                addEdge(n1, n2);
                 addedNodes.add(n1);
                 addedNodes.add(n2);
                 return addedNodes;
             }
 
             //Non base case - do actual gift wrapping alg
-            Node first = Collections.min(nodes, xComp);
-            Node lastHull = first;
-            Node endpoint = null;
+            Site first = Collections.min(nodes, xComp);
+            Site lastHull = first;
+            Site endpoint = null;
             do {
-                for (Node n : nodes) {
+                for (Site n : nodes) {
                     if (endpoint == null || n != lastHull && isLeftOfLine(lastHull, endpoint, n) 
                             && ! lastHull.isConnectedTo(n)) {
                         endpoint = n;
                     }
                 }
 
-                addEdge(b, r, lastHull, endpoint);
+                addEdge(lastHull, endpoint);
                 addedNodes.add(lastHull);
 
                 lastHull = endpoint;
@@ -763,9 +1383,9 @@ public final class Board implements JSONString {
 
         /** Return true iff e2 is left of the line start -> e1.
          * Helper for giftwrapping method */
-        private static boolean isLeftOfLine(Node start, Node e1, Node e2) {
-            Vector a = start.getCircle().getVectorTo(e1.getCircle());
-            Vector b = start.getCircle().getVectorTo(e2.getCircle());
+        private static boolean isLeftOfLine(Site start, Site e1, Site e2) {
+            Vector a = start.circle.getVectorTo(e1.circle);
+            Vector b = start.circle.getVectorTo(e2.circle);
             return Vector.cross(a, b) <= 0;
         }
 
@@ -773,10 +1393,10 @@ public final class Board implements JSONString {
          * two given nodes crosses an existing edge.
          * Helper for gift-wrapping and spider-webbing methods.
          */
-        private static boolean lineCrosses(Board b, Node n1, Node n2) {
-            Line l = new Line(n1.getCircle(), n2.getCircle(), null);
-            for (Edge e : b.getEdges()) {
-                if (l.intersects(e.getLine()))
+        private boolean lineCrosses(Site n1, Site n2) {
+            Line l = new Line(n1.circle, n2.circle, null);
+            for (Road e : roads) {
+                if (l.intersects(e.line))
                     return true;
             }
             return false;
@@ -784,23 +1404,23 @@ public final class Board implements JSONString {
 
         /** Fix (psuedo) triangulation via the delunay method.
          * Alter the current edge set so that triangles are less skinny. */
-        private static void delunayTriangulate(Board b, Random r) {
+        private void delunayTriangulate() {
 
             //Amount of radians that angle sum necessitates switch
             final double FLIP_CONDITION = Math.PI; 
 
             //Edge that should be removed, mapped to its new exits
-            HashMap<Edge, Node[]> needsFlip = new HashMap<Edge, Node[]>(); 
+            HashMap<Road, Site[]> needsFlip = new HashMap<Road, Site[]>(); 
 
-            for (Node n1 : b.getNodes()) {
-                for (Edge e2 : n1.getTrueExits()) {
-                    Node n2 = e2.getOther(n1);
+            for (Site n1 : sites) {
+                for (Road e2 : n1.exits) {
+                    Site n2 = e2.getOther(n1);
                     if (n2 != n1) {
-                        for (Edge e3 : n1.getTrueExits()) {
-                            Node n3 = e3.getOther(n1);
+                        for (Road e3 : n1.exits) {
+                            Site n3 = e3.getOther(n1);
                             if (n3 != n2 && n3 != n1) {
-                                for (Edge e4 : n1.getTrueExits()) {
-                                    Node n4 = e4.getOther(n1);
+                                for (Road e4 : n1.exits) {
+                                    Site n4 = e4.getOther(n1);
                                     if (n4 != n3 && n4 != n2 && n4 != n1) {
                                         //Check all triangulated quads - n1 connected to n2,
                                         // n3, n4; n2 and n3 each connected to n4.
@@ -809,12 +1429,12 @@ public final class Board implements JSONString {
                                         if (n2.isConnectedTo(n4) && n3.isConnectedTo(n4)) {
                                             //This is a pair of adjacent triangles. 
                                             //Check angles to see if flip should be made
-                                            Edge e24 = n2.getConnect(n4);
-                                            Edge e34 = n3.getConnect(n4);
-                                            if (e2.getLine().radAngle(e24.getLine())
-                                                    + e3.getLine().radAngle(e34.getLine()) > FLIP_CONDITION) {
+                                            Road e24 = n2.getConnect(n4);
+                                            Road e34 = n3.getConnect(n4);
+                                            if (e2.line.radAngle(e24.line)
+                                                    + e3.line.radAngle(e34.line) > FLIP_CONDITION) {
                                                 //Store the dividing edge as needing a flip
-                                                Node[] newExits = {n2, n3};
+                                                Site[] newExits = {n2, n3};
                                                 needsFlip.put(e4, newExits);
                                             }
                                         }
@@ -826,49 +1446,49 @@ public final class Board implements JSONString {
                 }
             }
 
-            for (Entry<Edge, Node[]> e : needsFlip.entrySet()) {
+            for (Entry<Road, Site[]> e : needsFlip.entrySet()) {
                 //Remove old edge
-                b.getEdges().remove(e.getKey());
+                roads.remove(e.getKey());
 
-                Node oldFirst = e.getKey().getFirstExit();
-                Node oldSecond = e.getKey().getSecondExit();
+                Site oldFirst = e.getKey().first;
+                Site oldSecond = e.getKey().second;
 
-                oldFirst.removeExit(e.getKey());
-                oldSecond.removeExit(e.getKey());
+                oldFirst.exits.remove(e.getKey());
+                oldSecond.exits.remove(e.getKey());
 
-                Node newFirst = e.getValue()[0];
-                Node newSecond = e.getValue()[1];
+                Site newFirst = e.getValue()[0];
+                Site newSecond = e.getValue()[1];
 
                 //Add new edge if it doesn't cross an existing edge
-                if (! lineCrosses(b, newFirst, newSecond)) {
-                    addEdge(b, r, newFirst, newSecond);
+                if (! lineCrosses(newFirst, newSecond)) {
+                    addEdge(newFirst, newSecond);
                 }
                 else { //Otherwise, put old edge back
-                    addEdge(b, r, oldFirst, oldSecond);
+                    addEdge(oldFirst, oldSecond);
                 }  
             }
         }
 
-        /** Allows for sorting of Collections of Nodes by their gui distance to
+        /** Allows for sorting of Collections of Sites by their gui distance to
          * each of the nodes in collection n.
          * The node that is closest in the collection to the given node is the one that counts.
          * @author MPatashnik
          *
          */
-        private static class DistanceComparator implements Comparator<Node> {
+        private static class DistanceComparator implements Comparator<Site> {
             /** The node to which distance is compared */
-            protected final Node node;
+            protected final Site node;
 
             @Override
-            public int compare(Node n1, Node n2) {
-                double d = node.getCircle().getDistance(n1.getCircle()) - 
-                           node.getCircle().getDistance(n2.getCircle());
+            public int compare(Site n1, Site n2) {
+                double d = node.circle.getDistance(n1.circle) - 
+                           node.circle.getDistance(n2.circle);
                 if (d < 0) return -1;
                 if (d > 0) return 1;
                 return 0;
             }
 
-            DistanceComparator(Node node) {
+            DistanceComparator(Site node) {
                 this.node = node;
             }
         }
@@ -877,12 +1497,12 @@ public final class Board implements JSONString {
          * No real need to instantiate another one. */
         private final static XComparator xComp = new XComparator();
 
-        /** Allows for sorting a Collection of Nodes by the x coordinate.
+        /** Allows for sorting a Collection of Sites by the x coordinate.
          * No need to instantiate beyond the xcomparator instantiated above. */
-        private static class XComparator implements Comparator<Node>{
+        private static class XComparator implements Comparator<Site>{
             @Override
-            public int compare(Node n1, Node n2) {
-                return n1.getCircle().getX1() - n2.getCircle().getX1();
+            public int compare(Site n1, Site n2) {
+                return n1.circle.getX1() - n2.circle.getX1();
             }
         }
 
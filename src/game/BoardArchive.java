@@ -0,0 +1,139 @@
+package game;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/** A BoardArchive is a collection of pre-generated random boards, keyed by the
+ * seed they were generated from. Each board is kept as a BinaryBoard holding
+ * exactly what Board.toJSONString() would serialize, so a Game built from an
+ * archived board is the same as a Game built from the seed - without paying for
+ * generation or for parsing JSON.
+ * <br><br>
+ * On disk an archive is a binary file, read through a memory-mapped channel:
+ * <br> int magic, int version, int count,
+ * <br> then count times: long seed, int length, length bytes of binary board.
+ * <br><br>
+ * Archives are written by BoardGenerator and read by GameRunner.
+ */
+public final class BoardArchive {
+
+	/** The archive GameRunner looks for when running seeds. */
+	public static final String DEFAULT_ARCHIVE = Game.MAP_DIRECTORY + "boards.archive";
+
+	/** First int of every archive file ("SGBA"). */
+	private static final int MAGIC = 0x53474241;
+
+	/** Version of the archive format written by this class.
+	 * Version 1 archives (gzipped JSON) are no longer read; regenerate them.
+	 * Version 2 and 3 archives may hold boards that don't match their seeds
+	 * (generation briefly depended on the hash codes of nodes and edges);
+	 * they are rejected too. */
+	private static final int VERSION = 4;
+
+	private final Map<Long, BinaryBoard> boards; //seed -> board
+
+	/** Constructor: an archive containing the boards in boards. */
+	private BoardArchive(Map<Long, BinaryBoard> boards) {
+		this.boards = boards;
+	}
+
+	/** Return the archive at DEFAULT_ARCHIVE, or null if there is no such
+	 * file or it can't be read. */
+	public static BoardArchive readDefault() {
+		File f = new File(DEFAULT_ARCHIVE);
+		if (!f.exists())
+			return null;
+		try {
+			return read(f);
+		} catch (IOException e) {
+			System.err.println("Couldn't read board archive " + f + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/** Read and return the archive stored in file f.
+	 * @throws IOException - if f can't be read or is not a board archive. */
+	public static BoardArchive read(File f) throws IOException {
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			try {
+				if (buf.getInt() != MAGIC)
+					throw new IOException(f + " is not a board archive");
+				int version = buf.getInt();
+				if (version != VERSION)
+					throw new IOException("Unsupported board archive version " + version);
+
+				int count = buf.getInt();
+				HashMap<Long, BinaryBoard> boards = new HashMap<Long, BinaryBoard>(count * 2);
+				for (int i = 0; i < count; i++) {
+					long seed = buf.getLong();
+					int length = buf.getInt();
+					int end = buf.position() + length;
+					boards.put(seed, BinaryBoard.decode(buf));
+					if (buf.position() != end)
+						throw new IOException("Board for seed " + seed + " has the wrong length");
+				}
+				return new BoardArchive(boards);
+			} catch (RuntimeException e) {
+				throw new IOException(f + " is truncated or corrupt: " + e, e);
+			}
+		}
+	}
+
+	/** Write boards (seed -> board) to file f as an archive,
+	 * in the iteration order of boards.
+	 * @throws IOException - if the file writing goes bad. */
+	public static void write(File f, Map<Long, BinaryBoard> boards) throws IOException {
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(4 * 3);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(boards.size());
+			header.flip();
+			writeFully(ch, header);
+
+			ByteBuffer entry = ByteBuffer.allocate(8 + 4);
+			for (Map.Entry<Long, BinaryBoard> e : boards.entrySet()) {
+				ByteBuffer board = e.getValue().encode();
+				entry.clear();
+				entry.putLong(e.getKey());
+				entry.putInt(board.remaining());
+				entry.flip();
+				writeFully(ch, entry);
+				writeFully(ch, board);
+			}
+		}
+	}
+
+	/** Write all remaining bytes of buf to ch. */
+	private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			ch.write(buf);
+		}
+	}
+
+	/** Return true iff this archive has a board for seed. */
+	public boolean contains(long seed) {
+		return boards.containsKey(seed);
+	}
+
+	/** Return the board for seed (null if this archive doesn't have one). */
+	public BinaryBoard getBoard(long seed) {
+		return boards.get(seed);
+	}
+
+	/** Return a copy of the boards in this archive, sorted by seed. */
+	public TreeMap<Long, BinaryBoard> getBoards() {
+		return new TreeMap<Long, BinaryBoard>(boards);
+	}
+
+	/** Return the number of boards in this archive. */
+	public int size() {
+		return boards.size();
+	}
+}
@@ -0,0 +1,108 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Command-line tool that generates random boards ahead of time, so that
+ * board generation isn't paid for inside timed runs.
+ * <br><br>
+ * Boards for the seeds firstSeed .. firstSeed + count - 1 are generated in parallel
+ * on a fork-join pool. They are either merged into a BoardArchive (default) or
+ * written as individual map files in Game.MAP_DIRECTORY.
+ * <br><br>
+ * Usage: <br>
+ * {@code BoardGenerator <firstSeed> <count>} - add the boards to BoardArchive.DEFAULT_ARCHIVE <br>
+ * {@code BoardGenerator <firstSeed> <count> -a <archiveFile>} - add the boards to archiveFile <br>
+ * {@code BoardGenerator <firstSeed> <count> -d} - write each board to MAP_DIRECTORY/Seed[seed].txt
+ */
+public class BoardGenerator {
+
+	/** Number of seeds below which a task generates its boards itself
+	 * instead of splitting further. */
+	private static final int SEQUENTIAL_THRESHOLD = 4;
+
+	/** Prefix of the file name of a map written by this generator. */
+	public static final String SEED_MAP_PREFIX = "Seed";
+
+	/** Prevent instantiation of BoardGenerator. */
+	private BoardGenerator() {}
+
+	/** Generate boards as described in the class comment. */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BoardGenerator <firstSeed> <count> [-d | -a <archiveFile>]");
+			return;
+		}
+		long firstSeed = Long.parseLong(args[0]);
+		int count = Integer.parseInt(args[1]);
+		boolean toDirectory = args.length > 2 && args[2].equals("-d");
+		File archive = new File(BoardArchive.DEFAULT_ARCHIVE);
+		if (args.length > 3 && args[2].equals("-a"))
+			archive = new File(args[3]);
+
+		long startTime = System.currentTimeMillis();
+		TreeMap<Long, BinaryBoard> boards = generate(firstSeed, count);
+
+		if (toDirectory) {
+			for (Map.Entry<Long, BinaryBoard> e : boards.entrySet()) {
+				new Board(null, e.getValue()).writeJSON(new File(
+						Game.MAP_DIRECTORY + SEED_MAP_PREFIX + e.getKey() + Game.MAP_EXTENSION));
+			}
+		} else {
+			//Merge with the boards already in the archive, if any
+			if (archive.exists()) {
+				TreeMap<Long, BinaryBoard> old = BoardArchive.read(archive).getBoards();
+				old.putAll(boards);
+				boards = old;
+			}
+			BoardArchive.write(archive, boards);
+		}
+		System.err.println("Generated " + count + " boards in "
+				+ (System.currentTimeMillis() - startTime) / 1000.0 + " seconds");
+	}
+
+	/** Generate the boards for seeds firstSeed .. firstSeed + count - 1 in parallel
+	 * and return them in binary form, as a map of seed -> board. */
+	public static TreeMap<Long, BinaryBoard> generate(long firstSeed, int count) {
+		return new ForkJoinPool().invoke(new GenerateTask(firstSeed, count));
+	}
+
+	/** Generates the boards for a range of seeds, splitting the range in half
+	 * until it is small enough to do directly. */
+	private static class GenerateTask extends RecursiveTask<TreeMap<Long, BinaryBoard>> {
+		private static final long serialVersionUID = 1L;
+
+		private final long firstSeed; //First seed in the range
+		private final int count;      //Number of seeds in the range
+
+		/** Constructor: a task for seeds firstSeed .. firstSeed + count - 1. */
+		GenerateTask(long firstSeed, int count) {
+			this.firstSeed = firstSeed;
+			this.count = count;
+		}
+
+		@Override
+		protected TreeMap<Long, BinaryBoard> compute() {
+			if (count <= SEQUENTIAL_THRESHOLD) {
+				TreeMap<Long, BinaryBoard> boards = new TreeMap<Long, BinaryBoard>();
+				for (int i = 0; i < count; i++) {
+					long seed = firstSeed + i;
+					//Boards built without a game are never played, only serialized.
+					boards.put(seed, BinaryBoard.fromBoard(Board.randomBoard(null, seed)));
+				}
+				return boards;
+			}
+
+			int half = count / 2;
+			GenerateTask first = new GenerateTask(firstSeed, half);
+			GenerateTask second = new GenerateTask(firstSeed + half, count - half);
+			first.fork();
+			TreeMap<Long, BinaryBoard> boards = second.compute();
+			boards.putAll(first.join());
+			return boards;
+		}
+	}
+}
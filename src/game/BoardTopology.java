@@ -0,0 +1,285 @@
+package game;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.json.JSONTokener;
+
+/** A BoardTopology is the immutable part of a board: its nodes (names and
+ * coordinates), its edges (exits and lengths) and its score coefficients, in
+ * index form. Nodes and edges are numbered 0..getNodeCount()-1 and
+ * 0..getEdgeCount()-1, as in the BinaryBoard the topology was built from, and
+ * the exits of each node are kept in compressed arrays, so walking the graph
+ * allocates nothing.
+ * <br><br>
+ * A topology never changes, so any number of games, running at the same time or
+ * one after the other, can share one. What they share is these arrays only: each
+ * Board still creates its own Node, Edge, Truck and Parcel objects, with their
+ * Circles and Lines, to hold its game's mutable state (where the trucks are, who
+ * holds which parcel, what is on each node). Board.getNode(int) and
+ * Board.getEdge(int) map the topology's indexes to them.
+ * <br><br>
+ * Topologies of the CACHE_SIZE most recently used map files are cached (see
+ * of(File)): games on the same map, e.g. a Grader running every submission on
+ * the same test boards, read and parse it once. The cache also keeps the map's
+ * initial trucks and parcels, so building a game from it reads no file at all.
+ */
+public final class BoardTopology {
+
+	/** The number of map files whose topologies are cached. */
+	public static final int CACHE_SIZE = 16;
+
+	/** Map file (canonical path) -> its topology, least recently used first.
+	 * Holds at most CACHE_SIZE entries. Synchronize on it to use it. */
+	private static final LinkedHashMap<String, BoardTopology> CACHE =
+			new LinkedHashMap<String, BoardTopology>(CACHE_SIZE * 2, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, BoardTopology> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			};
+
+	/** The board this topology was built from, with its initial trucks and parcels. */
+	final BinaryBoard board;
+
+	private final long lastModified; //Of the file this was read from (0 if none)
+	private final long fileLength;   //Of the file this was read from (0 if none)
+
+	//The exits of node n are edges exitEdge[exitStart[n] .. exitStart[n+1]-1];
+	//exitNode[k] is the other exit of edge exitEdge[k].
+	private final int[] exitStart;
+	private final int[] exitEdge;
+	private final int[] exitNode;
+
+	private final int minLength;
+	private final int maxLength;
+
+	/** The router of this topology (null until built; see LandmarkRouter.of).
+	 * It is derived from the fields above, so building it changes nothing about
+	 * this topology. Guarded by this when written. */
+	volatile LandmarkRouter router;
+
+	/** The contraction hierarchy of this topology, built or being built (null
+	 * until asked for; see ContractionHierarchy.prepare). Guarded by this when
+	 * written. */
+	volatile CompletableFuture<ContractionHierarchy> hierarchy;
+
+	/** Constructor: the topology of b, read from a file last modified at time
+	 * lastModified with length fileLength (both 0 if b was not read from a file). */
+	private BoardTopology(BinaryBoard b, long lastModified, long fileLength) {
+		board = b;
+		this.lastModified = lastModified;
+		this.fileLength = fileLength;
+
+		int n = b.nodeX.length;
+		int m = b.edgeLength.length;
+		exitStart = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			exitStart[b.edgeFirst[e] + 1]++;
+			exitStart[b.edgeSecond[e] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			exitStart[i + 1] += exitStart[i];
+		}
+		exitEdge = new int[2 * m];
+		exitNode = new int[2 * m];
+		int[] next = new int[n];
+		System.arraycopy(exitStart, 0, next, 0, n);
+		int min = Edge.DEFAULT_MIN_LENGTH;
+		int max = Edge.DEFAULT_MAX_LENGTH;
+		for (int e = 0; e < m; e++) {
+			int u = b.edgeFirst[e];
+			int v = b.edgeSecond[e];
+			exitEdge[next[u]] = e;
+			exitNode[next[u]++] = v;
+			exitEdge[next[v]] = e;
+			exitNode[next[v]++] = u;
+			min = Math.min(min, b.edgeLength[e]);
+			max = Math.max(max, b.edgeLength[e]);
+		}
+		minLength = min;
+		maxLength = max;
+	}
+
+	/** Return the topology of binary board b (not cached). */
+	static BoardTopology of(BinaryBoard b) {
+		return new BoardTopology(b, 0, 0);
+	}
+
+	/** Return the topology of the map in file f, a binary board if its name ends
+	 * with BinaryBoard.EXTENSION and a JSON map otherwise. It is read at most once
+	 * while f is unchanged and among the CACHE_SIZE most recently used map files:
+	 * later calls return the same topology.
+	 * @throws IOException - if f can't be read or is not a map. */
+	public static BoardTopology of(File f) throws IOException {
+		String key = f.getCanonicalPath();
+		long modified = f.lastModified();
+		long length = f.length();
+		BoardTopology t;
+		synchronized(CACHE) {
+			t = CACHE.get(key);
+		}
+		if (t != null && t.lastModified == modified && t.fileLength == length)
+			return t;
+		t = new BoardTopology(read(f), modified, length);
+		synchronized(CACHE) {
+			CACHE.put(key, t);
+		}
+		return t;
+	}
+
+	/** Read and return the board in map file f.
+	 * @throws IOException - if f can't be read or is not a map. */
+	private static BinaryBoard read(File f) throws IOException {
+		if (f.getName().endsWith(BinaryBoard.EXTENSION))
+			return BinaryBoard.read(f);
+		try (Reader r = new BufferedReader(new FileReader(f))) {
+			return BinaryBoard.fromBoard(new Board(null, new JSONTokener(r)));
+		} catch (RuntimeException e) {
+			throw new IOException(f + " is not a map: " + e.getMessage(), e);
+		}
+	}
+
+	/** Forget every cached topology. */
+	public static void clearCache() {
+		synchronized(CACHE) {
+			CACHE.clear();
+		}
+	}
+
+	/** Return the seed of the board (-1 if it was not randomly generated). */
+	public long getSeed() {
+		return board.seed;
+	}
+
+	/** Return the number of nodes. */
+	public int getNodeCount() {
+		return board.nodeX.length;
+	}
+
+	/** Return the number of edges. */
+	public int getEdgeCount() {
+		return board.edgeLength.length;
+	}
+
+	/** Return the name of node n. */
+	public String getName(int n) {
+		return board.strings[n];
+	}
+
+	/** Return the x coordinate of node n. */
+	public int getX(int n) {
+		return board.nodeX[n];
+	}
+
+	/** Return the y coordinate of node n. */
+	public int getY(int n) {
+		return board.nodeY[n];
+	}
+
+	/** Return the index of the truck depot (-1 if there is none). */
+	public int getDepot() {
+		return board.depot;
+	}
+
+	/** Return the first exit of edge e. */
+	public int getFirstExit(int e) {
+		return board.edgeFirst[e];
+	}
+
+	/** Return the second exit of edge e. */
+	public int getSecondExit(int e) {
+		return board.edgeSecond[e];
+	}
+
+	/** Return the length of edge e. */
+	public int getLength(int e) {
+		return board.edgeLength[e];
+	}
+
+	/** Return the exit of edge e that is not node n (n must be an exit of e). */
+	public int getOther(int e, int n) {
+		return board.edgeFirst[e] == n ? board.edgeSecond[e] : board.edgeFirst[e];
+	}
+
+	/** Return the number of edges leaving node n. */
+	public int getDegree(int n) {
+		return exitStart[n + 1] - exitStart[n];
+	}
+
+	/** Return edge k (0 <= k < getDegree(n)) of the edges leaving node n. */
+	public int getExit(int n, int k) {
+		return exitEdge[exitStart[n] + k];
+	}
+
+	/** Return the other exit of edge getExit(n, k). */
+	public int getNeighbor(int n, int k) {
+		return exitNode[exitStart[n] + k];
+	}
+
+	/** Return the distance from node s to every node (Integer.MAX_VALUE for the
+	 * nodes s can't reach), computed with Dijkstra's algorithm in O(m log n). */
+	public int[] distancesFrom(int s) {
+		int n = getNodeCount();
+		int[] dist = new int[n];
+		boolean[] settled = new boolean[n];
+		Arrays.fill(dist, Integer.MAX_VALUE);
+		LongHeap frontier = new LongHeap();
+		dist[s] = 0;
+		frontier.add(s);
+		while (!frontier.isEmpty()) {
+			int v = (int)frontier.poll();
+			if (settled[v]) continue;
+			settled[v] = true;
+			for (int k = exitStart[v]; k < exitStart[v + 1]; k++) {
+				int w = exitNode[k];
+				int d = dist[v] + board.edgeLength[exitEdge[k]];
+				if (d < dist[w]) {
+					dist[w] = d;
+					frontier.add((long)d << 32 | w);
+				}
+			}
+		}
+		return dist;
+	}
+
+	/** Return the smallest edge length (Edge.DEFAULT_MIN_LENGTH if there are no edges). */
+	public int getMinLength() {
+		return minLength;
+	}
+
+	/** Return the largest edge length (Edge.DEFAULT_MAX_LENGTH if there are no edges). */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/** Return the cost of a truck idling for a frame. */
+	public int getWaitCost() {
+		return board.scoreCoeff[0];
+	}
+
+	/** Return the cost of picking up a parcel. */
+	public int getPickupCost() {
+		return board.scoreCoeff[1];
+	}
+
+	/** Return the cost of dropping off a parcel. */
+	public int getDropoffCost() {
+		return board.scoreCoeff[2];
+	}
+
+	/** Return the value of delivering a parcel. */
+	public int getPayoff() {
+		return board.scoreCoeff[3];
+	}
+
+	/** Return the multiplier of the payoff of an on-color delivery. */
+	public int getOnColorMultiplier() {
+		return board.scoreCoeff[4];
+	}
+}
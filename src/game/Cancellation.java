@@ -0,0 +1,47 @@
+package game;
+
+/** A Cancellation is the cancellation token of one game. Once the game ends,
+ * for whatever reason, its token is cancelled, and from then on every engine
+ * blocking point (a truck waiting for its next frame, a pause) and every manager
+ * callback boundary (before and after a truck notifies its manager) checks it and
+ * stops the calling thread by throwing an InterruptedException, which the truck
+ * and game code already handle by ending cleanly, releasing every lock it holds.
+ * <br><br>
+ * This replaces stopping game threads with Thread.stop(), which can end a thread
+ * while it holds a lock and leave that lock held forever. A manager that
+ * computes for a long time should poll isCancelled() (see Game.getCancellation())
+ * and return when it is true.
+ */
+public final class Cancellation {
+
+	private volatile String reason; //Why the game was cancelled (null if it wasn't)
+
+	/** Constructor: a token that is not cancelled. */
+	Cancellation() {
+	}
+
+	/** Cancel this token because of reason r. Return true iff this call cancelled
+	 * it (false if it already was: the first reason is kept). */
+	synchronized boolean cancel(String r) {
+		if (reason != null) return false;
+		reason = r;
+		return true;
+	}
+
+	/** Return true iff this token has been cancelled. */
+	public boolean isCancelled() {
+		return reason != null;
+	}
+
+	/** Return why this token was cancelled (null if it wasn't). */
+	public String getReason() {
+		return reason;
+	}
+
+	/** Throw an InterruptedException if this token has been cancelled.
+	 * @throws InterruptedException - if this token has been cancelled. */
+	public void check() throws InterruptedException {
+		if (reason != null)
+			throw new InterruptedException("Game cancelled: " + reason);
+	}
+}
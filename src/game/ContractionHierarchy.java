@@ -0,0 +1,596 @@
+package game;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/** A ContractionHierarchy answers shortest-path queries on a board in well
+ * under a millisecond, even on boards of thousands of nodes, at the price of
+ * preprocessing the board once.
+ * <br><br>
+ * Preprocessing ranks the nodes, least important first, and contracts them in
+ * that order: contracting node v removes it from the graph and, for every two
+ * remaining neighbors u and w of v whose shortest path runs through v, adds a
+ * shortcut u-w as long as that path. The importance of a node is the number of
+ * shortcuts contracting it would add minus its number of edges, plus the number
+ * of its neighbors already contracted; it is computed for every node in parallel
+ * before contraction starts, and kept up to date lazily during it.
+ * <br><br>
+ * A query is then a bidirectional Dijkstra search that only ever goes from a node
+ * to a more important one, along edges and shortcuts. Both searches meet at the
+ * most important node of a shortest path, having settled a few dozen nodes, and
+ * the shortcuts of the path are unpacked into the board's edges. Paths are as
+ * short as those of Dijkstra's algorithm.
+ * <br><br>
+ * A hierarchy depends only on a BoardTopology and is shared by every game on it.
+ * It is built the first time it is asked for: of waits for it, while
+ * ifBuiltOrPrepare only starts building it in the background, so a game whose
+ * manager never asks for one never spends time on it. Queries may be made from
+ * any number of threads at once. The time preprocessing took and the time of
+ * each query made through the Node-based methods are recorded in the game's
+ * metrics.
+ */
+public final class ContractionHierarchy {
+
+	/** Distance to an unreachable node. */
+	private static final int INFINITY = Integer.MAX_VALUE;
+
+	/** Largest number of nodes a witness search settles before giving up (and
+	 * adding the shortcut it was looking for a witness of). */
+	private static final int WITNESS_LIMIT = 500;
+
+	private final BoardTopology topology;
+	private final long preprocessTime; //ns
+
+	//Arcs from each node to more important ones: the arcs of node v are
+	//upTo/upWeight/upMid/upEdge[upStart[v] .. upStart[v+1]-1]. An arc is an edge
+	//(upMid -1, upEdge its index) or a shortcut through node upMid (upEdge -1).
+	private final int[] upStart;
+	private final int[] upTo;
+	private final int[] upWeight;
+	private final int[] upMid;
+	private final int[] upEdge;
+
+	/** The scratch space of each thread's queries. */
+	private final ThreadLocal<Query> query = new ThreadLocal<Query>() {
+		@Override
+		protected Query initialValue() {
+			return new Query(topology.getNodeCount());
+		}
+	};
+
+	/** The state of one direction of a thread's queries; an entry of dist or
+	 * parent is valid only if the stamp of its node is the current generation. */
+	private static final class Side {
+		private final int[] dist;
+		private final int[] parent;  //Arc by which the node was reached (index into up arrays)
+		private final int[] reached; //reached[v] == generation iff v was reached
+		private final LongHeap frontier = new LongHeap();
+
+		/** Constructor: one direction of queries on a graph of n nodes. */
+		private Side(int n) {
+			dist = new int[n];
+			parent = new int[n];
+			reached = new int[n];
+		}
+	}
+
+	/** The state of one thread's queries. */
+	private static final class Query {
+		private final Side forward;
+		private final Side backward;
+		private int generation;
+
+		/** Constructor: scratch space for queries on a graph of n nodes. */
+		private Query(int n) {
+			forward = new Side(n);
+			backward = new Side(n);
+		}
+
+		/** Start a new query. */
+		private void reset() {
+			generation++;
+			if (generation == Integer.MAX_VALUE) {
+				Arrays.fill(forward.reached, 0);
+				Arrays.fill(backward.reached, 0);
+				generation = 1;
+			}
+			forward.frontier.clear();
+			backward.frontier.clear();
+		}
+	}
+
+	/** Constructor: the hierarchy of topology t. */
+	private ContractionHierarchy(BoardTopology t) {
+		long start = System.nanoTime();
+		topology = t;
+		Builder b = new Builder(t);
+		b.contract();
+
+		int n = t.getNodeCount();
+		upStart = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			upStart[v + 1] = upStart[v] + b.up[v].size;
+		}
+		upTo = new int[upStart[n]];
+		upWeight = new int[upStart[n]];
+		upMid = new int[upStart[n]];
+		upEdge = new int[upStart[n]];
+		for (int v = 0; v < n; v++) {
+			Arcs a = b.up[v];
+			System.arraycopy(a.to, 0, upTo, upStart[v], a.size);
+			System.arraycopy(a.weight, 0, upWeight, upStart[v], a.size);
+			System.arraycopy(a.mid, 0, upMid, upStart[v], a.size);
+			System.arraycopy(a.edge, 0, upEdge, upStart[v], a.size);
+		}
+		preprocessTime = System.nanoTime() - start;
+	}
+
+	/** Start building the hierarchy of topology t in the background, unless it is
+	 * built or being built already. Return the hierarchy, when it is built. */
+	public static CompletableFuture<ContractionHierarchy> prepare(BoardTopology t) {
+		CompletableFuture<ContractionHierarchy> h = t.hierarchy;
+		if (h != null)
+			return h;
+		synchronized(t) {
+			if (t.hierarchy == null)
+				t.hierarchy = CompletableFuture.supplyAsync(() -> new ContractionHierarchy(t));
+			return t.hierarchy;
+		}
+	}
+
+	/** Return the hierarchy of topology t, building it (or waiting for it to be
+	 * built) if need be. */
+	public static ContractionHierarchy of(BoardTopology t) {
+		return prepare(t).join();
+	}
+
+	/** Return the hierarchy of board b's topology, building it (or waiting for it
+	 * to be built) if need be. */
+	public static ContractionHierarchy of(Board b) {
+		return of(b.getTopology());
+	}
+
+	/** Return the hierarchy of topology t if it is built, null if it is not (yet). */
+	public static ContractionHierarchy ifBuilt(BoardTopology t) {
+		CompletableFuture<ContractionHierarchy> h = t.hierarchy;
+		return h == null || !h.isDone() || h.isCompletedExceptionally() ? null : h.join();
+	}
+
+	/** Return the hierarchy of topology t if it is built. If it is not, start
+	 * building it in the background (see prepare) and return null, so the caller
+	 * can answer its query some other way until it is built. */
+	public static ContractionHierarchy ifBuiltOrPrepare(BoardTopology t) {
+		ContractionHierarchy h = ifBuilt(t);
+		if (h == null) prepare(t);
+		return h;
+	}
+
+	/** Return the topology of this hierarchy. */
+	public BoardTopology getTopology() {
+		return topology;
+	}
+
+	/** Return the time it took to build this hierarchy, in ns. */
+	public long getPreprocessTime() {
+		return preprocessTime;
+	}
+
+	/** Return the number of shortcuts preprocessing added. */
+	public int getShortcutCount() {
+		int c = 0;
+		for (int mid : upMid) {
+			if (mid >= 0) c++;
+		}
+		return c;
+	}
+
+	/** Search from node s to node t in q. Return the node at which the searches
+	 * met on a shortest path (-1 if t can't be reached from s). */
+	private int search(Query q, int s, int t) {
+		q.reset();
+		int g = q.generation;
+		q.forward.reached[s] = g;
+		q.forward.dist[s] = 0;
+		q.forward.parent[s] = -1;
+		q.forward.frontier.add(s);
+		q.backward.reached[t] = g;
+		q.backward.dist[t] = 0;
+		q.backward.parent[t] = -1;
+		q.backward.frontier.add(t);
+
+		int best = INFINITY;
+		int meet = -1;
+		while (true) {
+			long f = q.forward.frontier.isEmpty() ? Long.MAX_VALUE : q.forward.frontier.peek();
+			long b = q.backward.frontier.isEmpty() ? Long.MAX_VALUE : q.backward.frontier.peek();
+			Side side = f <= b ? q.forward : q.backward;
+			Side other = side == q.forward ? q.backward : q.forward;
+			//Stop when neither search can find a shorter path
+			if (Math.min(f, b) == Long.MAX_VALUE || (int)(Math.min(f, b) >>> 32) >= best) break;
+
+			long top = side.frontier.poll();
+			int v = (int)top;
+			int d = (int)(top >>> 32);
+			if (d > side.dist[v]) continue; //Polled before, with a shorter distance
+			if (other.reached[v] == g && d + other.dist[v] < best) {
+				best = d + other.dist[v];
+				meet = v;
+			}
+			for (int k = upStart[v]; k < upStart[v + 1]; k++) {
+				int w = upTo[k];
+				int dw = d + upWeight[k];
+				if (side.reached[w] != g || dw < side.dist[w]) {
+					side.reached[w] = g;
+					side.dist[w] = dw;
+					side.parent[w] = k;
+					side.frontier.add((long)dw << 32 | w);
+				}
+			}
+		}
+		return meet;
+	}
+
+	/** Return the length of a shortest path from node s to node t, or -1 if
+	 * there is none. */
+	public int distance(int s, int t) {
+		Query q = query.get();
+		int m = search(q, s, t);
+		return m < 0 ? -1 : q.forward.dist[m] + q.backward.dist[m];
+	}
+
+	/** Return the edges of a shortest path from node s to node t, in order, or
+	 * null if there is none (the path from s to s has no edges). */
+	public int[] edgePath(int s, int t) {
+		Query q = query.get();
+		int m = search(q, s, t);
+		if (m < 0) return null;
+
+		IntList edges = new IntList();
+		//Arcs from s up to m, found backwards, then unpacked in path order
+		IntList arcs = new IntList();
+		for (int v = m; q.forward.parent[v] >= 0; v = from(q.forward.parent[v])) {
+			arcs.add(q.forward.parent[v]);
+		}
+		for (int i = arcs.size - 1; i >= 0; i--) {
+			int k = arcs.a[i];
+			unpack(from(k), upTo[k], k, edges);
+		}
+		//Arcs from m down to t
+		for (int v = m; q.backward.parent[v] >= 0; ) {
+			int k = q.backward.parent[v];
+			int u = from(k);
+			unpack(v, u, k, edges);
+			v = u;
+		}
+		return Arrays.copyOf(edges.a, edges.size);
+	}
+
+	/** Return the nodes of a shortest path from node s to node t, s and t
+	 * included, or an empty array if there is none. */
+	public int[] path(int s, int t) {
+		int[] edges = edgePath(s, t);
+		if (edges == null) return new int[0];
+		int[] p = new int[edges.length + 1];
+		p[0] = s;
+		for (int i = 0; i < edges.length; i++) {
+			p[i + 1] = topology.getOther(edges[i], p[i]);
+		}
+		return p;
+	}
+
+	/** Return the edges of a shortest path from start to end, in order, or null if
+	 * there is none. start and end must be nodes of the same board, whose
+	 * topology is this hierarchy's. The result can be given to
+	 * Truck.setTravelQueue. */
+	public LinkedList<Edge> edgePath(Node start, Node end) {
+		long t0 = System.nanoTime();
+		Board b = start.getBoard();
+		int[] edges = edgePath(b.indexOf(start), b.indexOf(end));
+		LinkedList<Edge> p = null;
+		if (edges != null) {
+			p = new LinkedList<Edge>();
+			for (int e : edges) {
+				p.add(b.getEdge(e));
+			}
+		}
+		queried(b, t0);
+		return p;
+	}
+
+	/** Return a shortest route from start to end, or null if there is none.
+	 * start and end must be nodes of the same board, whose topology is this
+	 * hierarchy's. The result can be given to Truck.setTravelRoute. */
+	public Route route(Node start, Node end) {
+		long t0 = System.nanoTime();
+		Board b = start.getBoard();
+		int s = b.indexOf(start);
+		int[] edges = edgePath(s, b.indexOf(end));
+		Route r = edges == null ? null : new Route(b, s, edges);
+		queried(b, t0);
+		return r;
+	}
+
+	/** Return the nodes of a shortest path from start to end, both included, or
+	 * the empty list if there is none. start and end must be nodes of the same
+	 * board, whose topology is this hierarchy's. The result can be given to
+	 * Truck.setTravelPath. */
+	public LinkedList<Node> path(Node start, Node end) {
+		long t0 = System.nanoTime();
+		Board b = start.getBoard();
+		LinkedList<Node> p = new LinkedList<Node>();
+		for (int v : path(b.indexOf(start), b.indexOf(end))) {
+			p.add(b.getNode(v));
+		}
+		queried(b, t0);
+		return p;
+	}
+
+	/** Record in the metrics of board b's game (if it has one) a query that
+	 * started at time t0 (System.nanoTime()), and the time this hierarchy took
+	 * to build. */
+	private void queried(Board b, long t0) {
+		if (b.game != null) {
+			GameMetrics m = b.game.getMetrics();
+			m.routeQueried(System.nanoTime() - t0);
+			m.routePrepared(preprocessTime);
+		}
+	}
+
+	/** Return the node whose up arcs include arc k. */
+	private int from(int k) {
+		//upStart is sorted: the last node whose arcs start at or before k
+		int lo = 0;
+		int hi = upStart.length - 2;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (upStart[mid] <= k) lo = mid;
+			else hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/** Append to out the edges of arc k, which connects nodes a and b, in order
+	 * from a to b. */
+	private void unpack(int a, int b, int k, IntList out) {
+		if (upMid[k] < 0) {
+			out.add(upEdge[k]);
+			return;
+		}
+		int m = upMid[k]; //Less important than a and b, so its up arcs reach both
+		unpack(a, m, arc(m, a), out);
+		unpack(m, b, arc(m, b), out);
+	}
+
+	/** Return the up arc of node v to node w. */
+	private int arc(int v, int w) {
+		for (int k = upStart[v]; k < upStart[v + 1]; k++) {
+			if (upTo[k] == w) return k;
+		}
+		throw new IllegalStateException("No arc from " + v + " to " + w);
+	}
+
+	/** A growable list of ints. */
+	private static final class IntList {
+		private int[] a = new int[16];
+		private int size;
+
+		private void add(int x) {
+			if (size == a.length) a = Arrays.copyOf(a, 2 * size);
+			a[size++] = x;
+		}
+	}
+
+	/** The arcs of a node during preprocessing: arc i goes to node to[i], has
+	 * length weight[i] and is the shortcut through node mid[i] (edge[i] -1) or
+	 * edge edge[i] (mid[i] -1). Between two nodes there is at most one arc. */
+	private static final class Arcs {
+		private int[] to = new int[4];
+		private int[] weight = new int[4];
+		private int[] mid = new int[4];
+		private int[] edge = new int[4];
+		private int size;
+
+		/** Return the index of the arc to node w (-1 if there is none). */
+		private int find(int w) {
+			for (int i = 0; i < size; i++) {
+				if (to[i] == w) return i;
+			}
+			return -1;
+		}
+
+		/** Add an arc to w, or make the arc to w this one if it is shorter. */
+		private void put(int w, int wt, int m, int e) {
+			int i = find(w);
+			if (i < 0) {
+				if (size == to.length) {
+					to = Arrays.copyOf(to, 2 * size);
+					weight = Arrays.copyOf(weight, 2 * size);
+					mid = Arrays.copyOf(mid, 2 * size);
+					edge = Arrays.copyOf(edge, 2 * size);
+				}
+				i = size++;
+			} else if (weight[i] <= wt) {
+				return;
+			}
+			to[i] = w;
+			weight[i] = wt;
+			mid[i] = m;
+			edge[i] = e;
+		}
+
+		/** Remove the arc to w, if there is one. */
+		private void remove(int w) {
+			int i = find(w);
+			if (i < 0) return;
+			size--;
+			to[i] = to[size];
+			weight[i] = weight[size];
+			mid[i] = mid[size];
+			edge[i] = edge[size];
+		}
+	}
+
+	/** The state of preprocessing. */
+	private static final class Builder {
+		private final int n;
+		private final Arcs[] arcs; //Arcs between nodes not contracted yet
+		private final Arcs[] up;   //Arcs of contracted nodes, all to more important nodes
+		private final int[] contractedNeighbors;
+
+		/** The scratch space of each thread's witness searches. */
+		private final ThreadLocal<Witness> witness;
+
+		/** Constructor: the state before contracting any node of t. */
+		private Builder(BoardTopology t) {
+			n = t.getNodeCount();
+			arcs = new Arcs[n];
+			up = new Arcs[n];
+			contractedNeighbors = new int[n];
+			for (int v = 0; v < n; v++) {
+				arcs[v] = new Arcs();
+			}
+			for (int e = 0; e < t.getEdgeCount(); e++) {
+				int u = t.getFirstExit(e);
+				int w = t.getSecondExit(e);
+				if (u == w) continue;
+				arcs[u].put(w, t.getLength(e), -1, e);
+				arcs[w].put(u, t.getLength(e), -1, e);
+			}
+			witness = new ThreadLocal<Witness>() {
+				@Override
+				protected Witness initialValue() {
+					return new Witness(n);
+				}
+			};
+		}
+
+		/** Contract every node, least important first. */
+		private void contract() {
+			int[] importance = new int[n];
+			IntStream.range(0, n).parallel().forEach(v -> importance[v] = importance(v));
+
+			LongHeap queue = new LongHeap();
+			for (int v = 0; v < n; v++) {
+				queue.add(key(importance[v], v));
+			}
+			while (!queue.isEmpty()) {
+				int v = (int)queue.poll();
+				//Contracting its neighbors changed v's importance: contract v
+				//unless another node is now less important
+				long k = key(importance(v), v);
+				if (!queue.isEmpty() && k > queue.peek()) {
+					queue.add(k);
+					continue;
+				}
+				contract(v);
+			}
+		}
+
+		/** Return the heap key of node v of importance i. */
+		private static long key(int i, int v) {
+			return (long)(i + (1 << 30)) << 32 | v;
+		}
+
+		/** Return the importance of node v, not contracted yet. */
+		private int importance(int v) {
+			return shortcuts(v, false) - arcs[v].size + contractedNeighbors[v];
+		}
+
+		/** Return the number of shortcuts contracting node v needs, adding them
+		 * iff add. */
+		private int shortcuts(int v, boolean add) {
+			Arcs a = arcs[v];
+			Witness w = witness.get();
+			int count = 0;
+			for (int i = 0; i < a.size; i++) {
+				int u = a.to[i];
+				int maxVia = 0;
+				for (int j = i + 1; j < a.size; j++) {
+					maxVia = Math.max(maxVia, a.weight[i] + a.weight[j]);
+				}
+				if (maxVia == 0) continue;
+				w.search(arcs, u, v, maxVia);
+				for (int j = i + 1; j < a.size; j++) {
+					int x = a.to[j];
+					int via = a.weight[i] + a.weight[j];
+					if (w.distance(x) <= via) continue; //A witness: no shortcut needed
+					count++;
+					if (add) {
+						arcs[u].put(x, via, v, -1);
+						arcs[x].put(u, via, v, -1);
+					}
+				}
+			}
+			return count;
+		}
+
+		/** Contract node v. */
+		private void contract(int v) {
+			shortcuts(v, true);
+			Arcs a = arcs[v];
+			for (int i = 0; i < a.size; i++) {
+				arcs[a.to[i]].remove(v);
+				contractedNeighbors[a.to[i]]++;
+			}
+			up[v] = a;
+			arcs[v] = null;
+		}
+	}
+
+	/** The scratch space of a witness search: a Dijkstra search among the nodes
+	 * not contracted yet, from one neighbor of the node being contracted, that
+	 * avoids that node and gives up at a distance or after WITNESS_LIMIT nodes. */
+	private static final class Witness {
+		private final int[] dist;
+		private final int[] reached;
+		private final LongHeap frontier = new LongHeap();
+		private int generation;
+
+		/** Constructor: scratch space for witness searches on n nodes. */
+		private Witness(int n) {
+			dist = new int[n];
+			reached = new int[n];
+		}
+
+		/** Search from node s, avoiding node avoid, up to distance limit. */
+		private void search(Arcs[] arcs, int s, int avoid, int limit) {
+			generation++;
+			if (generation == Integer.MAX_VALUE) {
+				Arrays.fill(reached, 0);
+				generation = 1;
+			}
+			frontier.clear();
+			reached[s] = generation;
+			dist[s] = 0;
+			frontier.add(s);
+			int settled = 0;
+			while (!frontier.isEmpty() && settled < WITNESS_LIMIT) {
+				long top = frontier.poll();
+				int v = (int)top;
+				int d = (int)(top >>> 32);
+				if (d > dist[v]) continue;
+				if (d > limit) break;
+				settled++;
+				Arcs a = arcs[v];
+				for (int i = 0; i < a.size; i++) {
+					int w = a.to[i];
+					int dw = d + a.weight[i];
+					if (w != avoid && (reached[w] != generation || dw < dist[w])) {
+						reached[w] = generation;
+						dist[w] = dw;
+						frontier.add((long)dw << 32 | w);
+					}
+				}
+			}
+		}
+
+		/** Return the distance to node v found by the last search (INFINITY if
+		 * it didn't reach v). Not settled distances are upper bounds, which is
+		 * all a witness needs. */
+		private int distance(int v) {
+			return reached[v] == generation ? dist[v] : INFINITY;
+		}
+	}
+}
@@ -37,6 +37,11 @@ public final class Edge implements BoardElement{
     /** The length (weight) of this Edge. Uncorrelated with its graphical length on the GUI */
     public final int length;		
 
+    /** The id of this Edge: its index in its board's topology (see Board.indexOf),
+     * given out in order of construction. Used for hashing and equality, and as
+     * the index of the edge in an EdgeMap. */
+    final int id;
+
     private Map<Truck, Boolean> truckHere; //Maps truck -> is here
 
     private Object userData; //User data (if any) stored in this edge
@@ -73,6 +78,7 @@ public final class Edge implements BoardElement{
         setExits(e);
 
         board = m;
+        id = m.newEdgeId();
         truckHere = Collections.synchronizedMap(new HashMap<Truck, Boolean>());
 
         if (lengthOfRoad <= 0)
@@ -83,6 +89,12 @@ public final class Edge implements BoardElement{
         line = new Line(firstExit.getCircle(), secondExit.getCircle(), this);
     }
 
+    /** Return the id of this edge: 0 for the first edge of its board, 1 for the
+     * second, and so on. It is the edge's index in its board's topology. */
+    public int getId() {
+        return id;
+    }
+
     /** Return the Board to which this Edge belongs. */
     @Override
     public Board getBoard() {
@@ -206,28 +218,24 @@ public final class Edge implements BoardElement{
     	return false;
     }
 
-    /** Return true iff this edge and e are equal.
-     * Two Edges are equal if they have the same exits, even if they have different lengths.
-     * This ensures that only one edge connects each pair of nodes in duplicate-free collections.  */
+    /** Return true iff e is an Edge and is equal to this one.
+     * Two Edges are equal if they are on the same board and have the same id -
+     * guaranteed to be unique within the board */
     @Override
     public boolean equals(Object e) {
-        if (e == null)
-            return false;
+        if (e == this)
+            return true;
         if (! (e instanceof Edge) )
             return false;
         Edge e1= (Edge) e;
-        Node[] exist1= e1.getTrueExits();
-        return (exits[0].equals(exist1[1]) && exits[1].equals(exist1[0])) ||
-               (exits[0].equals(exist1[0]) && exits[1].equals(exist1[1]));
+        return id == e1.id && board == e1.board;
     }
 
-    /** Return the hash code for this edge.
-     * The hashCode is equal to the sum of the hashCodes of its first and second exit.
-     * {@code getFirstExit().hashCode() + getSecondExit().hashCode()}.
-     * Notably: This means the ordering of the exits for an edge doesn't matter for hashing */
+    /** Return the hash code for this edge, its id. Unlike a hash of its exits,
+     * this never collides for two edges of a board. */
     @Override
     public int hashCode() {
-        return exits[0].hashCode() + exits[1].hashCode();
+        return id;
     }
 
     /** Return a String representation of this edge:
@@ -290,11 +298,11 @@ public final class Edge implements BoardElement{
         return i;
     }
 
-    /** Repaint the edge (the line). Parameters x and y unused but are included
+    /** Fix the bounds of the edge (the line) after one of its exits moved; the
+     * gui's board canvas repaints it. Parameters x and y unused but are included
      * to comply with interface. */
     @Override
     public void updateGUILocation(int x, int y) {
         getLine().fixBounds();
-        getLine().repaint();
     }
 }
@@ -0,0 +1,21 @@
+package game;
+
+/** A map from the edges of a board to values of type V, backed by an array
+ * indexed by edge id (see Edge.getId): lookups and updates take O(1) time and
+ * never hash. It can be used wherever a Map&lt;Edge, V&gt; is. Only edges of
+ * its board can be put in it. Not synchronized.
+ */
+public final class EdgeMap<V> extends ElementMap<Edge, V> {
+
+	/** Constructor: an empty map for the edges of board b. */
+	public EdgeMap(Board b) {
+		super(b, b.getEdgesSize());
+	}
+
+	@Override
+	int idOf(Object o) {
+		if (!(o instanceof Edge)) return -1;
+		Edge e = (Edge)o;
+		return e.getBoard() == board ? e.id : -1;
+	}
+}
@@ -0,0 +1,196 @@
+package game;
+
+import java.util.*;
+
+/** A map whose keys are nodes or edges of one board, stored in arrays indexed
+ * by the keys' ids (see Node.getId, Edge.getId): get, put, containsKey and remove
+ * take O(1) time with no hashing, and iteration is in order of id. The arrays
+ * grow if an element with a larger id than the board had when the map was
+ * created is put in. Not synchronized. See NodeMap and EdgeMap.
+ */
+abstract class ElementMap<K, V> extends AbstractMap<K, V> {
+
+	/** The board whose elements are the keys. */
+	final Board board;
+
+	private Object[] keys;   //keys[i]: the key of id i (null if none)
+	private Object[] values; //values[i]: the value of the key of id i
+	private int size;
+	private int modCount;    //Number of changes of the keys, for iterators
+
+	/** Constructor: an empty map for elements of board b with ids below bound. */
+	ElementMap(Board b, int bound) {
+		board = b;
+		keys = new Object[bound];
+		values = new Object[bound];
+	}
+
+	/** Return the id of o if it is a key this map can hold (an element of its
+	 * board of the right kind); otherwise return -1. */
+	abstract int idOf(Object o);
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		int i = idOf(key);
+		return i >= 0 && i < keys.length && keys[i] != null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int i = idOf(key);
+		return i >= 0 && i < keys.length ? (V)values[i] : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		int i = idOf(key);
+		if (i < 0)
+			throw new IllegalArgumentException(key + " is not an element of " + board);
+		if (i >= keys.length) {
+			int n = Math.max(i + 1, keys.length * 2);
+			keys = Arrays.copyOf(keys, n);
+			values = Arrays.copyOf(values, n);
+		}
+		V old = (V)values[i];
+		if (keys[i] == null) {
+			keys[i] = key;
+			size++;
+			modCount++;
+		}
+		values[i] = value;
+		return old;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		int i = idOf(key);
+		if (i < 0 || i >= keys.length || keys[i] == null) return null;
+		V old = (V)values[i];
+		keys[i] = null;
+		values[i] = null;
+		size--;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public void clear() {
+				ElementMap.this.clear();
+			}
+
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+		};
+	}
+
+	/** An iterator over the entries of this map, in order of id. */
+	private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		private int next = advance(0); //Id of the next entry (keys.length if none)
+		private int last = -1;         //Id of the entry last returned (-1 if none)
+		private int expectedModCount = modCount;
+
+		/** Return the smallest id at least i with an entry (keys.length if none). */
+		private int advance(int i) {
+			while (i < keys.length && keys[i] == null) {
+				i++;
+			}
+			return i;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < keys.length;
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+			if (next >= keys.length) throw new NoSuchElementException();
+			last = next;
+			next = advance(next + 1);
+			return new Entry(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) throw new IllegalStateException();
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+			ElementMap.this.remove(keys[last]);
+			expectedModCount = modCount;
+			last = -1;
+		}
+	}
+
+	/** The entry of id i, which writes through to this map. */
+	private final class Entry implements Map.Entry<K, V> {
+		private final int i;
+
+		/** Constructor: the entry of id i. */
+		private Entry(int i) {
+			this.i = i;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public K getKey() {
+			return (K)keys[i];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V)values[i];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V setValue(V value) {
+			V old = (V)values[i];
+			values[i] = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) return false;
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+			return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package game;
 import gui.GUI;
-import gui.TextIO;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 /** Class Game is the controlling class for the ShippingGame Project. It manages the go-between
  * between the board, which maintains the state of the game, and the gui, which visually displays it.
@@ -43,6 +49,67 @@ public class Game {
 	
 	protected Object endCondition = new Object();
 
+	/** The latest RenderSnapshot handed out (null until the first is asked for). */
+	private final AtomicReference<RenderSnapshot> renderSnapshot =
+			new AtomicReference<RenderSnapshot>();
+	/** True iff something drawn changed since renderSnapshot was taken. */
+	private final AtomicBoolean renderChanged = new AtomicBoolean(true);
+
+	/** Records this game to a replay log (null if it isn't being recorded). */
+	private volatile ReplayRecorder recorder;
+
+	private final Object pauseLock = new Object(); //Trucks wait on it at frames while paused
+	private boolean paused;			//True iff this game is paused. Guarded by pauseLock
+	private int parkedTrucks;		//Number of trucks waiting for the pause to end. Guarded by pauseLock
+	private boolean restartTrucks;	//True iff the truck threads were stopped to restore
+	// a Snapshot while paused, so must be started again on resume. Guarded by pauseLock
+	private volatile long pausedAt;	//System time (ms) when this game was paused
+	private volatile long clockOffset; //Game time = System time - clockOffset, while not paused
+
+	/** The trucks and parcels whose state changed since the last Snapshot. */
+	private final Set<Object> changedState = ConcurrentHashMap.newKeySet();
+	/** The last Snapshot taken or restored (null if none). Guarded by changedState. */
+	private Snapshot lastSnapshot;
+
+	/** Cancelled when this game ends; see Cancellation. */
+	private final Cancellation cancellation = new Cancellation();
+
+	/** Time cancel(String) gives this game's threads to stop, in ms. */
+	private static final long CANCEL_GRACE = 500;
+
+	/** Number of threads isolated by cancel(String), of all games, that may be
+	 * still running before start() refuses to start another game. */
+	public static final int MAX_ABANDONED_THREADS = 16;
+
+	/** The threads isolated by cancel(String), of all games, that may be still
+	 * running. Guarded by itself. */
+	private static final List<Thread> ABANDONED = new ArrayList<Thread>();
+
+	/** The names of the threads of this game isolated by cancel(String). */
+	private volatile List<String> abandonedThreads = Collections.emptyList();
+
+	/** Measures the CPU time of the manager's code. */
+	private static final ThreadMXBean THREAD_MX = ManagementFactory.getThreadMXBean();
+	/** True iff THREAD_MX can measure the CPU time of threads. */
+	private static final boolean CPU_TIME = THREAD_MX.isThreadCpuTimeSupported() &&
+			THREAD_MX.isCurrentThreadCpuTimeSupported();
+
+	/** Value of lastProgress before any truck has moved. */
+	private static final long NO_PROGRESS = Long.MIN_VALUE;
+
+	private volatile long startTime;	//Game time (see getTime()) when this game started
+	private volatile long endTime;		//Game time when this game ended (if it has)
+	private volatile long lastProgress;	//Game time of the last truck move or delivery (NO_PROGRESS if none yet)
+	private volatile long managerThreadCpu; //Last measured CPU time of the manager's thread (ns)
+	/** CPU time spent in the manager's truck notifications, on truck threads (ns). */
+	private final AtomicLong callbackCpu = new AtomicLong();
+
+	/** Counters and histograms about this game. */
+	private final GameMetrics metrics = new GameMetrics();
+
+	/** Queues the trucks' notifications for the manager (null if trucks notify it directly). */
+	private NotificationQueue notifications;
+
 	/** The default frame value. Other frame values can be used for testing,
 	 * but only games run with this frame value are fair for scoring.
 	 */
@@ -66,13 +133,15 @@ public class Game {
 	}
 
 	/** Constructor: a game instance with a set Board that is read from File f, using
-	 * the manager whose class name is managerClassname. Uses Default for all other fields */
+	 * the manager whose class name is managerClassname. Uses Default for all other fields.
+	 * f is read as a binary board if its name ends with BinaryBoard.EXTENSION,
+	 * otherwise as a JSON map, unless its BoardTopology is cached: then it is not
+	 * read at all, and the board shares the cached topology (see BoardTopology.of(File)). */
 	public Game(String managerClassname, File f) {
 		this(managerClassname);
 		file = f;
 		try {
-			JSONObject obj = new JSONObject(TextIO.read(f));
-			board = new Board(this, obj);
+			board = new Board(this, BoardTopology.of(f));
 		} catch (IOException e1) {
 			e1.printStackTrace();
 		}
@@ -85,6 +154,35 @@ public class Game {
 		setFrame(frame);
 	}
 
+	/** Constructor: a game instance with a set Board that is read from the serialized
+	 * board obj (e.g. a pre-generated board from a BoardArchive), using the manager
+	 * whose class name is managerClassname. The game has no file; its seed is the
+	 * one recorded in obj (-1 if none). */
+	public Game(String managerClassname, JSONObject obj) {
+		this(managerClassname);
+		file = null;
+		board = new Board(this, obj);
+	}
+
+	/** Constructor: a game instance with a set Board that is read from the serialized
+	 * board in r, using the manager whose class name is managerClassname.
+	 * The board is read in a single pass, without building the whole JSON document.
+	 * The game has no file; its seed is the one recorded in r (-1 if none). */
+	public Game(String managerClassname, Reader r) {
+		this(managerClassname);
+		file = null;
+		board = new Board(this, new JSONTokener(r));
+	}
+
+	/** Constructor: a game instance with a set Board built from the binary board b
+	 * (e.g. a pre-generated board from a BoardArchive), using the manager whose
+	 * class name is managerClassname. The game has no file; its seed is b's seed. */
+	public Game(String managerClassname, BinaryBoard b) {
+		this(managerClassname);
+		file = null;
+		board = new Board(this, b);
+	}
+
 	/** Constructor: a game instance with a random board from seed seed using
 	 * the manager whose class name is managerClassname. */
 	public Game(String managerClassname, long seed) {
@@ -203,23 +301,359 @@ public class Game {
 	}
 
 	/** Start the game by the manager run; then have each truck begin running.
-	 * Additional calls to this method after the first call do nothing. */
+	 * Additional calls to this method after the first call do nothing.
+	 * @throws IllegalStateException - if MAX_ABANDONED_THREADS threads of
+	 * cancelled games are still running (see liveAbandonedThreads()). */
 	public void start() {
 		if (!running && !finished) {
+			int live = liveAbandonedThreads();
+			if (live >= MAX_ABANDONED_THREADS)
+				throw new IllegalStateException("Can't start a game: " + live +
+						" threads of cancelled games are still running");
 			if (frame != GUI_FRAME_RATE) frameAltered = true;
 
 			setRunning(true);			
+			if (recorder != null) recorder.started();
+			startTime = getTime();
+			lastProgress = NO_PROGRESS;
 
 			Thread m = new Thread(gameThreads, manager);
+			m.setDaemon(true);
 			manager.setThread(m);
 			m.start();
 
+			if (notifications != null) {
+				Thread d = new Thread(gameThreads, notifications);
+				d.setDaemon(true);
+				notifications.setThread(d);
+				d.start();
+			}
+
+			startTrucks();
+		}
+	}
+
+	/** Start a thread for each truck that has not finished. */
+	private void startTrucks() {
+		//A ReplayPlayer moves the trucks itself, from its log
+		if (manager instanceof ReplayPlayer) return;
+
+		for (Truck t : board.getTrucks()) {
+			if (board.isTruckFinished(t)) continue;
+			Thread th = new Thread(gameThreads, t);
+			th.setDaemon(true);
+			t.setThread(th);
+			th.start();
+		}
+	}
+
+	/** Return the time on this game's clock, in ms. The clock runs with the system
+	 * clock, except that it stops while the game is paused and is set back when a
+	 * Snapshot is restored. Trucks measure their waiting time with it. */
+	public long getTime() {
+		return (paused ? pausedAt : System.currentTimeMillis()) - clockOffset;
+	}
+
+	/** Return the number of frames this game has run since it started, or ran
+	 * from its start to its end if it is finished (0 if it hasn't started),
+	 * as measured by its clock. */
+	public long getFrames() {
+		if (!running && !finished) return 0;
+		long now = finished ? endTime : getTime();
+		return (now - startTime) / Math.max(1, frame);
+	}
+
+	/** Return the number of frames since a truck last moved or a parcel was
+	 * last delivered (0 if neither has happened yet). The clock starts with the
+	 * first move, so a manager that plans before sending any truck out is not
+	 * stalled however long it plans; its CPU time and the game's frames bound it
+	 * instead (see GameRunner). */
+	public long getFramesSinceProgress() {
+		long last = lastProgress;
+		if (!running && !finished || last == NO_PROGRESS) return 0;
+		return (getTime() - last) / Math.max(1, frame);
+	}
+
+	/** Record that a truck moved or a parcel was delivered. */
+	void progressed() {
+		lastProgress = getTime();
+	}
+
+	/** Return the CPU time used by the manager's code so far, in ns: its own
+	 * thread's plus that spent in its truck notifications, on the trucks' threads.
+	 * Return 0 if the JVM can't measure thread CPU time. */
+	public long getManagerCpuTime() {
+		Thread m = manager.getThread();
+		if (CPU_TIME && m != null) {
+			long t = THREAD_MX.getThreadCpuTime(m.getId()); //-1 once the thread has ended
+			if (t > managerThreadCpu) managerThreadCpu = t;
+		}
+		return managerThreadCpu + callbackCpu.get();
+	}
+
+	/** Return the CPU time of the calling thread, in ns (0 if it can't be measured). */
+	private static long currentThreadCpuTime() {
+		return CPU_TIME ? THREAD_MX.getCurrentThreadCpuTime() : 0;
+	}
+
+	/** Call the manager's truckNotification(t, n) and record how long it took,
+	 * in wall-clock and CPU time. */
+	void notifyManager(Truck t, Manager.Notification n) {
+		long cpu = currentThreadCpuTime();
+		long start = System.nanoTime();
+		manager.truckNotification(t, n);
+		long nanos = System.nanoTime() - start;
+		callbackCpu.addAndGet(currentThreadCpuTime() - cpu);
+		metrics.callbackHandled(n, nanos);
+		manager.getCallbackLatency().record(nanos);
+	}
+
+	/** Make the trucks of this game queue their notifications for the manager,
+	 * at most capacity per truck, instead of waiting for it to handle each one
+	 * (see NotificationQueue); if capacity is 0, make them wait (the default).
+	 * @throws IllegalStateException - if this game has already been started.
+	 * @throws IllegalArgumentException - if capacity is negative. */
+	public void setNotificationQueue(int capacity) {
+		if (running || finished)
+			throw new IllegalStateException("Can't change how trucks notify a started game's manager");
+		if (capacity < 0)
+			throw new IllegalArgumentException("Negative notification queue capacity " + capacity);
+		notifications = capacity == 0 ? null : new NotificationQueue(this, capacity);
+	}
+
+	/** Return the queue of the trucks' notifications (null if they notify the
+	 * manager directly). */
+	NotificationQueue getNotificationQueue() {
+		return notifications;
+	}
+
+	/** Wait for the next frame: sleep for a frame, then, if the game is paused,
+	 * until it is resumed. Called by truck threads between frames, which are the
+	 * only points at which a pause stops them. */
+	void awaitFrame() throws InterruptedException {
+		cancellation.check();
+		Thread.sleep(frame);
+		synchronized(pauseLock) {
+			cancellation.check();
+			if (!paused) return;
+			parkedTrucks++;
+			pauseLock.notifyAll();
+			try {
+				while (paused) {
+					pauseLock.wait();
+					cancellation.check();
+				}
+			} finally {
+				parkedTrucks--;
+			}
+		}
+	}
+
+	/** Pause this game: stop its trucks at their next frame and stop its clock.
+	 * Return once every running truck is stopped; the manager's thread is not
+	 * stopped, and may give directions while the game is paused.
+	 * Do nothing if the game is not running or already paused.
+	 * @throws IllegalStateException - if called by one of this game's trucks
+	 * (e.g. from a manager notification), which would wait for itself.
+	 * @throws InterruptedException - if the calling thread is interrupted. */
+	public void pause() throws InterruptedException {
+		for (Truck t : board.getTrucks()) {
+			if (t.isThread(Thread.currentThread()))
+				throw new IllegalStateException("A truck can't pause its own game");
+		}
+		synchronized(pauseLock) {
+			if (!running || paused) return;
+			pausedAt = System.currentTimeMillis();
+			paused = true;
+			while (running && parkedTrucks < runningTrucks()) {
+				pauseLock.wait(frame);
+			}
+		}
+	}
+
+	/** Return the number of trucks whose threads are running. */
+	private int runningTrucks() {
+		int n = 0;
+		for (Truck t : board.getTrucks()) {
+			if (t.isThreadAlive()) n++;
+		}
+		return n;
+	}
+
+	/** Resume this game after pause(): restart its clock and its trucks.
+	 * Do nothing if it is not paused. */
+	public void resume() {
+		synchronized(pauseLock) {
+			if (!paused) return;
+			clockOffset += System.currentTimeMillis() - pausedAt;
+			paused = false;
+			pauseLock.notifyAll();
+			if (restartTrucks && running) {
+				restartTrucks = false;
+				startTrucks();
+			}
+		}
+	}
+
+	/** Return true iff this game is paused. */
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/** Note that the state of o, a Truck or Parcel of this game, changed, so that
+	 * the next Snapshot captures it. */
+	void stateChanged(Object o) {
+		changedState.add(o);
+	}
+
+	/** Return a Snapshot of this game's current state. It captures only the trucks
+	 * and parcels that changed since the last snapshot taken or restored.
+	 * @throws IllegalStateException - if the game is running and not paused. */
+	public Snapshot snapshot() {
+		if (running && !paused)
+			throw new IllegalStateException("Pause the game before taking a snapshot");
+		synchronized(changedState) {
+			IdentityHashMap<Truck, Truck.State> trucks = new IdentityHashMap<Truck, Truck.State>();
+			IdentityHashMap<Parcel, Parcel.State> parcels = new IdentityHashMap<Parcel, Parcel.State>();
+			Snapshot parent = lastSnapshot;
+			if (parent == null || parent.isChainFull()) {
+				parent = null;
+				changedState.clear();
+				for (Truck t : board.getTrucks()) {
+					trucks.put(t, t.captureState());
+				}
+				synchronized(board.getParcels()) {
+					for (Parcel p : board.getParcels()) {
+						parcels.put(p, p.captureState());
+					}
+				}
+			} else {
+				Iterator<Object> it = changedState.iterator();
+				while (it.hasNext()) {
+					Object o = it.next();
+					it.remove(); //Before capturing, so that a later change is not lost
+					if (o instanceof Truck)
+						trucks.put((Truck)o, ((Truck)o).captureState());
+					else
+						parcels.put((Parcel)o, ((Parcel)o).captureState());
+				}
+			}
+			lastSnapshot = new Snapshot(this, parent, getTime(), manager.getScore(), trucks, parcels);
+			return lastSnapshot;
+		}
+	}
+
+	/** Put this game back in the state captured by s: trucks, their travel queues
+	 * and loads, parcels, score and clock. If the game is paused, its truck threads
+	 * are stopped and, on resume(), started again from the restored state; if it
+	 * has not been started, start() starts them from the restored state.
+	 * The manager is not restored: it is told nothing, and keeps its own state.
+	 * @throws IllegalArgumentException - if s is not a snapshot of this game.
+	 * @throws IllegalStateException - if the game is running and not paused,
+	 * is finished, or is being recorded.
+	 * @throws InterruptedException - if the calling thread is interrupted while
+	 * waiting for the truck threads to stop. */
+	public void restore(Snapshot s) throws InterruptedException {
+		if (s.game != this)
+			throw new IllegalArgumentException("Snapshot is not of this game");
+		if (finished || running && !paused)
+			throw new IllegalStateException("Only a paused or unstarted game can be restored");
+		if (recorder != null)
+			throw new IllegalStateException("A recorded game can't be restored");
+
+		if (paused) {
+			synchronized(pauseLock) {
+				restartTrucks = true;
+			}
 			for (Truck t : board.getTrucks()) {
-				Thread th = new Thread(gameThreads, t);
-				t.setThread(th);
-				th.start();
+				t.stopThread();
 			}
 		}
+
+		synchronized(changedState) {
+			//Take the parcels off the board, then put them back as they were
+			Set<Parcel> boardParcels = board.getParcels();
+			HashSet<Parcel> all = new HashSet<Parcel>(s.rootParcels());
+			synchronized(boardParcels) {
+				all.addAll(boardParcels);
+				for (Parcel p : boardParcels) {
+					if (!p.isHeld()) p.getLocation().getTrueParcels().remove(p);
+				}
+				boardParcels.clear();
+			}
+			int[] parcelCounts = new int[3];
+			for (Parcel p : all) {
+				Parcel.State ps = s.stateOf(p);
+				p.restoreState(ps);
+				if (ps.delivered) {
+					//Off the board
+				} else if (ps.holder != null) {
+					boardParcels.add(p);
+					parcelCounts[GameStats.PARCEL_HELD]++;
+				} else {
+					boardParcels.add(p);
+					p.getLocation().getTrueParcels().add(p);
+					parcelCounts[GameStats.PARCEL_WAITING]++;
+				}
+				changedState.add(p);
+			}
+			//Parcels delivered before the snapshot chain began are not in all
+			parcelCounts[GameStats.PARCEL_DELIVERED] = board.initialParcelCount
+					- parcelCounts[GameStats.PARCEL_WAITING] - parcelCounts[GameStats.PARCEL_HELD];
+
+			int[] truckCounts = new int[3];
+			for (Truck t : board.getTrucks()) {
+				t.restoreState(s.stateOf(t));
+				truckCounts[t.getStatus() == Truck.Status.TRAVELING ?
+						GameStats.TRUCK_TRAVELING : GameStats.TRUCK_WAITING]++;
+				changedState.add(t);
+			}
+			board.setStats(GameStats.of(parcelCounts, truckCounts));
+
+			manager.getScoreObject().setScore(s.score);
+			clockOffset = (paused ? pausedAt : System.currentTimeMillis()) - s.time;
+			lastSnapshot = s;
+		}
+		renderChanged();
+	}
+
+	/** Record this game, from its start to its end, to a replay log in file f
+	 * (see ReplayRecorder and ReplayPlayer).
+	 * @throws IllegalStateException - if this game has already been started.
+	 * @throws IOException - if f can't be written. */
+	public void record(File f) throws IOException {
+		if (running || finished)
+			throw new IllegalStateException("Can't record a game that has already been started");
+		recorder = new ReplayRecorder(this, f);
+	}
+
+	/** Return the recorder of this game (null if it isn't being recorded). */
+	ReplayRecorder getRecorder() {
+		return recorder;
+	}
+
+	/** Close the recorder of this game, if any, finished being true iff the game
+	 * ended correctly. Report a failure to write the log on System.err. */
+	private void closeRecorder(boolean finished) {
+		ReplayRecorder r = recorder;
+		if (r == null) return;
+		try {
+			r.close(finished);
+		} catch (IOException e) {
+			System.err.println("Couldn't write replay log: " + e.getMessage());
+		}
+	}
+
+	/** Return the counters and histograms collected about this game. */
+	public GameMetrics getMetrics() {
+		return metrics;
+	}
+
+	/** Return the cancellation token of this game, which is cancelled when the game
+	 * ends. A manager that computes for a long time should poll its isCancelled()
+	 * and return when it is true. */
+	public Cancellation getCancellation() {
+		return cancellation;
 	}
 
 	/** Return the exception thrown during the running of this game.
@@ -242,6 +676,30 @@ public class Game {
 		else setFrame(SCORE_FRAME_RATE);
 	}
 
+	/** Record that something a gui draws (a truck, a parcel, the score) changed.
+	 * Never blocks: the next getRenderSnapshot() takes the change into account. */
+	void renderChanged() {
+		renderChanged.set(true);
+	}
+
+	/** Return a RenderSnapshot of this game that is at most one frame old.
+	 * A new snapshot is taken only if something changed since the last one and
+	 * that one is at least a frame old, so however often this is called, at most
+	 * one snapshot is taken per frame. Taking one reads state that the truck
+	 * threads publish for it, so the caller (e.g. the gui) never slows them down. */
+	public RenderSnapshot getRenderSnapshot() {
+		RenderSnapshot s = renderSnapshot.get();
+		if (s != null && System.nanoTime() - s.time < frame * 1000000L)
+			return s;
+		if (s == null || renderChanged.compareAndSet(true, false)) {
+			if (s == null)
+				renderChanged.set(false);
+			s = RenderSnapshot.of(this);
+			renderSnapshot.set(s);
+		}
+		return s;
+	}
+
 	/** Return the current update message shown on the GUI. */
 	public String getUpdateMessage() {
 		return gui.getUpdateMessage();
@@ -252,43 +710,22 @@ public class Game {
 		gui.setUpdateMessage(s);
 	}
 
+	/** Return the current parcel and truck counts of this game. O(1); the counts
+	 * are kept up to date by the board as parcels and trucks change state. */
+	public GameStats getStats() {
+		return getBoard().getStats();
+	}
+
 	/** Return the parcel stats for the current game in the form
 	 * [on city, on truck, delivered] */
 	public int[] parcelStats() {
-		int[] pArr = new int[3];
-		Set<Parcel> parcels = getBoard().getParcels();
-		try{
-		synchronized(parcels) {
-			for (Parcel p : parcels) {
-				if (p.isHeld())
-					pArr[1]++;
-				else
-					pArr[0]++;
-			}
-		}
-		pArr[2] = getBoard().initialParcelCount - pArr[0] - pArr[1];
-		} catch(NullPointerException e){} //SCREW IT - TOO COMPLICATED, CAN'T BE FIXED
-		return pArr;
+		return getStats().parcelStats();
 	}
 
 	/** Return the truck stats for the current game in the form
 	 * [waiting, traveling, getting manager input] */
 	public int[] truckStats() {
-		int[] tArr = new int[3];
-		ArrayList<Truck> trucks = getBoard().getTrucks();
-		try{
-			synchronized(trucks) {
-				for (Truck t : trucks) {
-					if (t.isWaitingForManager())
-						tArr[2]++;
-					else if (t.getStatus().equals(Truck.Status.WAITING))
-						tArr[0]++;
-					else
-						tArr[1]++;
-				}
-			}
-		} catch(NullPointerException e){} //SCREW IT - TOO COMPLICATED, CAN'T BE FIXED
-		return tArr;
+		return getStats().truckStats();
 	}
 
 	/** End this game prematurely by halting trucks and manager.
@@ -296,16 +733,62 @@ public class Game {
 	public void kill() {
 		halt(false);
 	}
-	
-	public void forceKill(){
-		if (!finished) {
-			setRunning(false);	
-			setFinished(true);
-		}
+
+	/** End this game prematurely because of reason r, like kill(), and wait up to
+	 * CANCEL_GRACE ms for its manager and truck threads to stop. Threads never
+	 * stopped by force: a thread still running after that is stuck in manager code
+	 * that ignores both interrupts and the game's Cancellation. It is isolated
+	 * instead: given the lowest priority and left to end on its own (game threads
+	 * are daemons, so it does not keep the JVM alive), while every engine call it
+	 * makes fails because the game is cancelled. It counts towards
+	 * MAX_ABANDONED_THREADS until it ends. Return the names of the isolated
+	 * threads (empty if every thread stopped); see also getAbandonedThreads(). */
+	public List<String> cancel(String r) {
+		cancellation.cancel(r);
+		halt(false);
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		if (manager.getThread() != null) threads.add(manager.getThread());
+		if (notifications != null && notifications.getThread() != null)
+			threads.add(notifications.getThread());
 		for (Truck t : board.getTrucks()) {
-			t.forceQuit();
+			if (t.getThread() != null) threads.add(t.getThread());
+		}
+		long deadline = System.currentTimeMillis() + CANCEL_GRACE;
+		ArrayList<String> isolated = new ArrayList<String>();
+		for (Thread th : threads) {
+			long left = deadline - System.currentTimeMillis();
+			try {
+				if (left > 0) th.join(left);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (th.isAlive()) {
+				th.setPriority(Thread.MIN_PRIORITY);
+				isolated.add(th.getName());
+				synchronized(ABANDONED) {
+					ABANDONED.add(th);
+				}
+			}
+		}
+		abandonedThreads = Collections.unmodifiableList(isolated);
+		return isolated;
+	}
+
+	/** Return the names of the threads of this game that cancel(String) isolated
+	 * because they did not stop (empty if it did not isolate any). */
+	public List<String> getAbandonedThreads() {
+		return abandonedThreads;
+	}
+
+	/** Return the number of threads isolated by cancel(String), of all games,
+	 * that are still running. */
+	public static int liveAbandonedThreads() {
+		synchronized(ABANDONED) {
+			for (Iterator<Thread> it = ABANDONED.iterator(); it.hasNext(); ) {
+				if (!it.next().isAlive()) it.remove();
+			}
+			return ABANDONED.size();
 		}
-		manager.forceQuit();
 	}
 
 	/** End this game correctly when the last parcel is delivered. */
@@ -318,10 +801,16 @@ public class Game {
 	 * Additional calls to this method won't do anything more.
 	 */
 	private void halt(boolean gameActuallyOver) {
+		cancellation.cancel(gameActuallyOver ? "finished" : "killed");
 		boolean wasRunning = running;
 		if (!finished) {
+			endTime = wasRunning ? getTime() : startTime;
 			setRunning(false);	
 			setFinished(true);
+			synchronized(pauseLock) {
+				paused = false;
+				pauseLock.notifyAll();
+			}
 			if (gui != null) {
 				if (wasRunning) {
 					if (gameActuallyOver)
@@ -332,11 +821,15 @@ public class Game {
 				}
 			}
 
+			closeRecorder(gameActuallyOver);
+
 			for (Truck t : board.getTrucks()) {
 				t.gameOver();
 			}
 
 			manager.gameOver();
+			if (notifications != null && notifications.getThread() != null)
+				notifications.getThread().interrupt();
 		}
 	}
 
@@ -344,8 +837,9 @@ public class Game {
 	 * Throw an IllegalArgumentException if this board does not exist. 
 	 */
 	public static File gameFile(String filename) throws IllegalArgumentException {
-		//Check that filename ends with .txt. If not, strip off the bad extension(if any) and add .txt
-		if (!filename.endsWith(MAP_EXTENSION)) {
+		//Check that filename ends with .txt (or is a binary board). If not, strip off the
+		//bad extension(if any) and add .txt
+		if (!filename.endsWith(MAP_EXTENSION) && !filename.endsWith(BinaryBoard.EXTENSION)) {
 			int i = filename.indexOf('.');
 			if (i != -1)
 				filename = filename.substring(0, i);
@@ -359,7 +853,8 @@ public class Game {
 		return f;
 	}
 
-	/** Write this Game to a text file that can be loaded and re-played later.
+	/** Write this Game to text file MAP_DIRECTORY/fileName.txt, which can be loaded
+	 * and re-played later. The board is streamed to the file, not built in memory.
 	 * Can  be used only if the game has not yet started or finished.
 	 * If either of these is true, throw a runtime exception.
 	 * @throws IOException - If the file writing goes bad.
@@ -368,8 +863,7 @@ public class Game {
 		if (isRunning() || isFinished())
 			throw new RuntimeException("Can't Write Game File if the game is running.");
 
-		String n = MAP_DIRECTORY + File.pathSeparator + fileName + ".txt";
-		TextIO.write(n, board.toJSONString());
+		board.writeJSON(new File(MAP_DIRECTORY + fileName + MAP_EXTENSION));
 	}
 
 	/** An extension of ThreadGroup to do custom uncaught error handling
@@ -392,7 +886,8 @@ public class Game {
 		@Override
 		public void uncaughtException(Thread t, Throwable e) {
 			if (monitoringThread != null) {
-				if (e instanceof ThreadDeath){
+				//Once the game is cancelled, its threads fail on purpose
+				if (e instanceof ThreadDeath || cancellation.isCancelled()){
 					return;
 				}
 				throwable = e;
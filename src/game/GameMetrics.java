@@ -0,0 +1,300 @@
+package game;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A GameMetrics collects counters and histograms about one game, to show where
+ * a slow or low-scoring manager loses time:
+ * <br> - the latency of the manager's truck notifications, per Notification type (ns);
+ * <br> - the frames trucks spend idle (recorded each time a truck is charged for waiting);
+ * <br> - the lengths of the paths given to trucks (see Truck.setTravelPath);
+ * <br> - the frames between two deliveries;
+ * <br> - the time truck threads wait for a truck lock held by another thread (ns);
+ * <br> - the time the board's ContractionHierarchy took to build, and the time of
+ * each query the manager made of it (ns).
+ * <br><br>
+ * Every game has one (see Game.getMetrics()); the engine records into it from
+ * any thread without locking. toJSONString() and toCSV() (or appendJSON and
+ * appendCSV, into a StringBuilder) export it, and
+ * GameRunner.writeMetrics exports the metrics of a run of games.
+ */
+public final class GameMetrics {
+
+	/** A Histogram counts non-negative values in buckets of powers of two: bucket
+	 * 0 holds 0, and bucket b > 0 holds the values in 2^(b-1) .. 2^b - 1.
+	 * It also keeps the count, sum and maximum of the values. Recording is
+	 * lock-free and O(1). */
+	public static final class Histogram {
+		private static final int BUCKETS = 64;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		/** Constructor: an empty histogram. */
+		Histogram() {
+		}
+
+		/** Record value v (a negative value is recorded as 0). */
+		void record(long v) {
+			if (v < 0) v = 0;
+			buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(v));
+			count.incrementAndGet();
+			sum.addAndGet(v);
+			long m = max.get();
+			while (v > m && !max.compareAndSet(m, v)) {
+				m = max.get();
+			}
+		}
+
+		/** Return the number of values recorded. */
+		public long getCount() {
+			return count.get();
+		}
+
+		/** Return the sum of the values recorded. */
+		public long getSum() {
+			return sum.get();
+		}
+
+		/** Return the largest value recorded (0 if none). */
+		public long getMax() {
+			return max.get();
+		}
+
+		/** Return the mean of the values recorded (0 if none). */
+		public double getMean() {
+			long n = count.get();
+			return n == 0 ? 0 : (double)sum.get() / n;
+		}
+
+		/** Return an upper bound of quantile q (0 <= q <= 1) of the values
+		 * recorded: the largest value of the bucket that holds it, capped at the
+		 * maximum (0 if no value was recorded). */
+		public long getQuantile(double q) {
+			long n = count.get();
+			if (n == 0) return 0;
+			long rank = Math.max(1, (long)Math.ceil(q * n));
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += buckets.get(b);
+				if (seen >= rank)
+					return Math.min(max.get(), b == 0 ? 0 : (1L << b) - 1);
+			}
+			return max.get();
+		}
+
+		/** Return a JSON String of this histogram's summary. */
+		public String toJSONString() {
+			return "{" + Main.addQuotes("count") + ":" + getCount() +
+					"," + Main.addQuotes("sum") + ":" + getSum() +
+					"," + Main.addQuotes("mean") + ":" + String.format(Locale.ROOT, "%.1f", getMean()) +
+					"," + Main.addQuotes("p50") + ":" + getQuantile(0.5) +
+					"," + Main.addQuotes("p90") + ":" + getQuantile(0.9) +
+					"," + Main.addQuotes("p99") + ":" + getQuantile(0.99) +
+					"," + Main.addQuotes("max") + ":" + getMax() + "}";
+		}
+
+		/** Return this histogram's summary as CSV fields:
+		 * count,sum,mean,p50,p90,p99,max. */
+		String toCSV() {
+			return getCount() + "," + getSum() + "," + String.format(Locale.ROOT, "%.1f", getMean()) +
+					"," + getQuantile(0.5) + "," + getQuantile(0.9) + "," + getQuantile(0.99) +
+					"," + getMax();
+		}
+	}
+
+	/** The header of the CSV rows of toCSV(). */
+	public static final String CSV_HEADER = "metric,count,sum,mean,p50,p90,p99,max";
+
+	private final EnumMap<Manager.Notification, Histogram> callbackLatency;
+	private final Histogram idleFrames = new Histogram();
+	private final Histogram pathLengths = new Histogram();
+	private final Histogram deliveryGapFrames = new Histogram();
+	private final Histogram lockWait = new Histogram();
+	private final Histogram routeQueries = new Histogram();
+
+	/** Time the board's ContractionHierarchy took to build, in ns (0 until the
+	 * game queries it). */
+	private volatile long routePreprocessTime;
+
+	private final AtomicLong lastDeliveryFrame = new AtomicLong(); //Frame of the last delivery
+
+	/** Number of notifications of each type dropped by the game's NotificationQueue. */
+	private final EnumMap<Manager.Notification, AtomicLong> dropped;
+
+	/** Constructor: metrics of a game in which nothing has happened. */
+	GameMetrics() {
+		callbackLatency = new EnumMap<Manager.Notification, Histogram>(Manager.Notification.class);
+		for (Manager.Notification n : Manager.Notification.values()) {
+			callbackLatency.put(n, new Histogram());
+		}
+		dropped = new EnumMap<Manager.Notification, AtomicLong>(Manager.Notification.class);
+		for (Manager.Notification n : Manager.Notification.values()) {
+			dropped.put(n, new AtomicLong());
+		}
+	}
+
+	/** Record that a truck notification n took nanos ns to handle. */
+	void callbackHandled(Manager.Notification n, long nanos) {
+		callbackLatency.get(n).record(nanos);
+	}
+
+	/** Record that a truck was charged for waiting frames frames. */
+	void truckIdled(long frames) {
+		idleFrames.record(frames);
+	}
+
+	/** Record that a truck was given a path of length length. */
+	void pathGiven(long length) {
+		pathLengths.record(length);
+	}
+
+	/** Record that a parcel was delivered at frame frame of the game. */
+	void parcelDelivered(long frame) {
+		long last = lastDeliveryFrame.getAndSet(frame);
+		deliveryGapFrames.record(frame - last);
+	}
+
+	/** Record that a notification n was dropped instead of handed to the manager. */
+	void notificationDropped(Manager.Notification n) {
+		dropped.get(n).incrementAndGet();
+	}
+
+	/** Return the number of notifications n dropped instead of handed to the
+	 * manager (see NotificationQueue). */
+	public long getDroppedNotifications(Manager.Notification n) {
+		return dropped.get(n).get();
+	}
+
+	/** Record that a truck thread waited nanos ns for a lock held by another thread. */
+	void lockWaited(long nanos) {
+		lockWait.record(nanos);
+	}
+
+	/** Record that the board's ContractionHierarchy took nanos ns to build (by
+	 * this game or an earlier one on the same map). */
+	void routePrepared(long nanos) {
+		routePreprocessTime = nanos;
+	}
+
+	/** Record that a ContractionHierarchy query took nanos ns. */
+	void routeQueried(long nanos) {
+		routeQueries.record(nanos);
+	}
+
+	/** Return the time the board's ContractionHierarchy took to build, in ns (0
+	 * if the game hasn't queried it). */
+	public long getRoutePreprocessTime() {
+		return routePreprocessTime;
+	}
+
+	/** Return the histogram of the time of ContractionHierarchy queries, in ns. */
+	public Histogram getRouteQueries() {
+		return routeQueries;
+	}
+
+	/** Return the histogram of the latency of notification n, in ns. */
+	public Histogram getCallbackLatency(Manager.Notification n) {
+		return callbackLatency.get(n);
+	}
+
+	/** Return the total time trucks spent waiting for the manager to handle
+	 * their notifications, in ns. */
+	public long getManagerWaitTime() {
+		long t = 0;
+		for (Histogram h : callbackLatency.values()) {
+			t += h.getSum();
+		}
+		return t;
+	}
+
+	/** Return the histogram of the frames trucks were idle, one value each time a
+	 * truck was charged for waiting. Its sum is the total number of idle frames. */
+	public Histogram getIdleFrames() {
+		return idleFrames;
+	}
+
+	/** Return the histogram of the lengths of the paths given to trucks. */
+	public Histogram getPathLengths() {
+		return pathLengths;
+	}
+
+	/** Return the histogram of the frames between two deliveries (the first
+	 * counted from the start of the game). Its count is the number of deliveries. */
+	public Histogram getDeliveryGapFrames() {
+		return deliveryGapFrames;
+	}
+
+	/** Return the histogram of the time truck threads waited for locks, in ns. */
+	public Histogram getLockWait() {
+		return lockWait;
+	}
+
+	/** Return the number of parcels delivered per frame over the first frames
+	 * frames of the game (0 if frames is not positive). */
+	public double getDeliveriesPerFrame(long frames) {
+		return frames <= 0 ? 0 : (double)deliveryGapFrames.getCount() / frames;
+	}
+
+	/** Return a JSON String of these metrics. */
+	public String toJSONString() {
+		return appendJSON(new StringBuilder()).toString();
+	}
+
+	/** Append a JSON String of these metrics to sb. Return sb. */
+	public StringBuilder appendJSON(StringBuilder sb) {
+		sb.append('{').append(Main.addQuotes("callbackLatencyNanos")).append(":{");
+		boolean first = true;
+		for (Manager.Notification n : callbackLatency.keySet()) {
+			if (!first) sb.append(',');
+			sb.append(Main.addQuotes(n.name())).append(':').append(callbackLatency.get(n).toJSONString());
+			first = false;
+		}
+		sb.append("},").append(Main.addQuotes("droppedNotifications")).append(":{");
+		first = true;
+		for (Manager.Notification n : dropped.keySet()) {
+			if (!first) sb.append(',');
+			sb.append(Main.addQuotes(n.name())).append(':').append(dropped.get(n).get());
+			first = false;
+		}
+		return sb.append("},").append(Main.addQuotes("managerWaitNanos")).append(':').append(getManagerWaitTime())
+				.append(',').append(Main.addQuotes("idleFrames")).append(':').append(idleFrames.toJSONString())
+				.append(',').append(Main.addQuotes("pathLengths")).append(':').append(pathLengths.toJSONString())
+				.append(',').append(Main.addQuotes("deliveryGapFrames")).append(':').append(deliveryGapFrames.toJSONString())
+				.append(',').append(Main.addQuotes("lockWaitNanos")).append(':').append(lockWait.toJSONString())
+				.append(',').append(Main.addQuotes("routePreprocessNanos")).append(':').append(routePreprocessTime)
+				.append(',').append(Main.addQuotes("routeQueryNanos")).append(':').append(routeQueries.toJSONString())
+				.append('}');
+	}
+
+	/** Return these metrics as CSV rows (see CSV_HEADER), each starting with
+	 * prefix (e.g. the seed of the game, followed by a comma). */
+	public String toCSV(String prefix) {
+		return appendCSV(new StringBuilder(), prefix).toString();
+	}
+
+	/** Append these metrics as CSV rows (see CSV_HEADER), each starting with
+	 * prefix, to sb. Return sb. */
+	public StringBuilder appendCSV(StringBuilder sb, String prefix) {
+		for (Manager.Notification n : callbackLatency.keySet()) {
+			sb.append(prefix).append("callbackLatencyNanos.").append(n.name()).append(',')
+					.append(callbackLatency.get(n).toCSV()).append('\n');
+		}
+		for (Manager.Notification n : dropped.keySet()) {
+			//A count only: the other columns of a counter are 0
+			sb.append(prefix).append("droppedNotifications.").append(n.name()).append(',')
+					.append(dropped.get(n).get()).append(",0,0.0,0,0,0,0\n");
+		}
+		sb.append(prefix).append("idleFrames,").append(idleFrames.toCSV()).append('\n');
+		sb.append(prefix).append("pathLengths,").append(pathLengths.toCSV()).append('\n');
+		sb.append(prefix).append("deliveryGapFrames,").append(deliveryGapFrames.toCSV()).append('\n');
+		sb.append(prefix).append("lockWaitNanos,").append(lockWait.toCSV()).append('\n');
+		sb.append(prefix).append("routePreprocessNanos,").append(routePreprocessTime).append(",0,0.0,0,0,0,0\n");
+		sb.append(prefix).append("routeQueryNanos,").append(routeQueries.toCSV()).append('\n');
+		return sb;
+	}
+}
@@ -2,7 +2,13 @@ package game;
 
 import gui.GUI;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 
 /**
@@ -19,8 +25,21 @@ public class GameRunner {
 	private GUI gui;
 	private static final long UPDATE_FRAME = 10;
 
-	/** Extra time alloted before timeout, for calculation and stuff */
-	private static final double TIME_ALLOWANCE = 10000;
+	/** Extra frames alloted before timeout, for calculation and stuff */
+	private static final double FRAME_ALLOWANCE = 10000;
+
+	/** Manager CPU time alloted to every game, in ms */
+	private static final long CPU_ALLOWANCE = 5000;
+
+	/** Extra manager CPU time alloted per parcel, in ms */
+	private static final long CPU_PER_PARCEL = 20;
+
+	/** Number of frames without a truck moving or a parcel being delivered,
+	 * counted from the first move, after which a game is stalled */
+	private static final long STALL_FRAMES = 3000;
+
+	/** Time between two checks of a running game's budgets, in ms */
+	private static final long POLL_TIME = 20;
 
 	/**
 	 * Number of components of stack trace to include in status message printed
@@ -40,6 +59,14 @@ public class GameRunner {
 	/** True if gameRunners should print extra debugging output (time allotted) */
 	private static final boolean PRINT_DEBUG = false;
 
+	/** Directory to which each game is recorded as a replay log (null if games
+	 * are not recorded). */
+	private File replayDirectory;
+
+	/** Capacity of the notification queue of each truck of the games run
+	 * (0 if trucks notify the manager directly). */
+	private int notificationQueue;
+
 	/**
 	 * Create a new GameRunner to run a set of games using userManagerClassname.
 	 * A gui will be used iff hasGUI. Output will be printed iff printOutput
@@ -53,26 +80,64 @@ public class GameRunner {
 
 	/**
 	 * Run the userManager on the files in fNames, assuming they are in
-	 * directory Maps/*
+	 * directory Maps/*. A map with a binary version (same name, extension
+	 * BinaryBoard.EXTENSION) is loaded from the binary version.
 	 */
 	public GameScore[] runFiles(String[] fNames) {
 		Game[] g = new Game[fNames.length];
 		for (int i = 0; i < fNames.length; i++) {
-			g[i] = new Game(userManagerClass, new File(Game.MAP_DIRECTORY
-					+ fNames[i] + Game.MAP_EXTENSION));
+			File f = new File(Game.MAP_DIRECTORY + fNames[i] + BinaryBoard.EXTENSION);
+			if (!f.exists())
+				f = new File(Game.MAP_DIRECTORY + fNames[i] + Game.MAP_EXTENSION);
+			g[i] = new Game(userManagerClass, f);
 		}
 		return runGames(g);
 	}
 
-	/** Run the userManager on seeds seeds */
+	/** Run the userManager on seeds seeds.
+	 * Boards that are in the default BoardArchive are read from it
+	 * rather than generated. */
 	public GameScore[] runSeeds(long[] seeds) {
+		BoardArchive archive = BoardArchive.readDefault();
 		Game[] g = new Game[seeds.length];
 		for (int i = 0; i < seeds.length; i++) {
-			g[i] = new Game(userManagerClass, seeds[i]);
+			if (archive != null && archive.contains(seeds[i])) {
+				g[i] = new Game(userManagerClass, archive.getBoard(seeds[i]));
+			} else {
+				g[i] = new Game(userManagerClass, seeds[i]);
+			}
 		}
 		return runGames(g);
 	}
 
+	/** Record each game run from now on to a replay log in directory dir, named
+	 * after the game's file or seed (see ReplayRecorder). Stop recording if dir is null. */
+	public void setReplayDirectory(File dir) {
+		replayDirectory = dir;
+	}
+
+	/** Make the trucks of each game run from now on queue up to capacity
+	 * notifications for the manager instead of waiting for it to handle each one
+	 * (see Game.setNotificationQueue). If capacity is 0, make them wait. */
+	public void setNotificationQueue(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Negative notification queue capacity " + capacity);
+		notificationQueue = capacity;
+	}
+
+	/** Start recording game g to a replay log in replayDirectory, if it is not null. */
+	private void startRecording(Game g) {
+		if (replayDirectory == null)
+			return;
+		String name = g.getFile() != null ? g.getFile().getName() : "" + g.getSeed();
+		File f = new File(replayDirectory, name + ReplayRecorder.EXTENSION);
+		try {
+			g.record(f);
+		} catch (IOException e) {
+			System.err.println("Couldn't record game to " + f + ": " + e.getMessage());
+		}
+	}
+
 	/** Run the userManager on n random seeds. */
 	public GameScore[] runRandom(int n) {
 		long[] seeds = new long[n];
@@ -118,45 +183,73 @@ public class GameRunner {
 	}
 
 	/**
-	 * Monitors game g. Caps g's running time based on total number of parcels
-	 * and total number of trucks.
+	 * Monitors game g. Ends it with status TIMEOUT, for a specific
+	 * TimeoutReason, as soon as it exceeds one of its budgets: a number of
+	 * frames (of g's clock) based on total number of parcels and total number of
+	 * trucks, a manager CPU time based on the number of parcels, or STALL_FRAMES
+	 * frames without progress.
 	 **/
 	private GameScore monitor(Game g) {
 
-		// Calculate the longest possible time g could take to complete with a
-		// deterministic algorithm
+		// Calculate the longest possible number of frames g could take to
+		// complete with a deterministic algorithm
 		final double parcelTruckRatio = Math.max(1, ((double) g.getBoard()
 				.getParcels().size())
 				/ ((double) g.getBoard().getTrucks().size()));
 		final double maxPathLength = g.getBoard().getMaxLength()
 				* g.getBoard().getEdgesSize();
-		final long maxTime = (long) (maxPathLength * parcelTruckRatio / 5 + TIME_ALLOWANCE);
+		final long maxFrames = (long) (maxPathLength * parcelTruckRatio / 5 + FRAME_ALLOWANCE);
+		final long maxCpu = (CPU_ALLOWANCE + CPU_PER_PARCEL * g.getBoard().getParcels().size())
+				* 1000000L;
 		if(PRINT_DEBUG) 
-			System.err.println(">> Time Allowed : " + maxTime);
+			System.err.println(">> Frames Allowed : " + maxFrames + ", manager CPU allowed : "
+					+ maxCpu / 1000000 + "ms");
+
+		// Refuse to start g while too many threads of cancelled games run
+		int live = Game.liveAbandonedThreads();
+		if (live >= Game.MAX_ABANDONED_THREADS) {
+			return new GameScore(g, g.getManager().getScore(), GameStatus.REFUSED,
+					"Not started: " + live + " runaway threads of earlier games are still running");
+		}
 
 		// Set the monitoring thread as this thread, start g
 		g.monitoringThread = Thread.currentThread();
+		startRecording(g);
+		if (notificationQueue > 0) g.setNotificationQueue(notificationQueue);
 		g.start();
 
-		// Find the time the game should end by
-		final long maxFinishTime = System.currentTimeMillis() + maxTime;
 		try {
-			while (!g.isFinished()
-					&& System.currentTimeMillis() < maxFinishTime) {
+			while (!g.isFinished()) {
 				synchronized(g.endCondition){
-					g.endCondition.wait(maxTime);
+					if (!g.isFinished())
+						g.endCondition.wait(POLL_TIME);
+				}
+				if (g.isFinished())
+					break;
+
+				TimeoutReason reason = null;
+				String msg = null;
+				if (g.getFrames() > maxFrames) {
+					reason = TimeoutReason.FRAMES;
+					msg = "Game Timeout after " + maxFrames + " frames";
+				} else if (g.getManagerCpuTime() > maxCpu) {
+					reason = TimeoutReason.MANAGER_CPU;
+					msg = "Game Timeout: manager used more than " + maxCpu / 1000000
+							+ "ms of CPU";
+				} else if (g.getFramesSinceProgress() > STALL_FRAMES) {
+					reason = TimeoutReason.STALLED;
+					msg = "Game Stalled: no truck moved and no parcel was delivered for "
+							+ STALL_FRAMES + " frames";
+				}
+				if (reason != null) {
+					List<String> stuck = g.cancel(msg);
+					return new GameScore(g, g.getManager().getScore(),
+							GameStatus.TIMEOUT, msg + isolatedMessage(stuck), reason);
 				}
 			}
-			if (System.currentTimeMillis() < maxFinishTime) {
-				Thread.sleep(UPDATE_FRAME);
-				return new GameScore(g, g.getManager().getScore(),
-						GameStatus.SUCCESS, "Success :-)");
-			} else {
-				g.forceKill();
-				return new GameScore(g, g.getManager().getScore(),
-						GameStatus.TIMEOUT, "Game Timeout after " + maxTime
-								+ "ms");
-			}
+			Thread.sleep(UPDATE_FRAME);
+			return new GameScore(g, g.getManager().getScore(),
+					GameStatus.SUCCESS, "Success :-)");
 		} catch (InterruptedException e) {
 			String msg = "" + g.throwable;
 			if (g.throwable != null) {
@@ -166,10 +259,87 @@ public class GameRunner {
 					msg += " at " + g.throwable.getStackTrace()[i];
 				}
 			}
-			g.forceKill();
+			List<String> stuck = g.cancel("exception thrown");
 			return new GameScore(g, g.getManager().getScore(),
-					GameStatus.ERROR, "Exception Thrown - " + msg);
+					GameStatus.ERROR, "Exception Thrown - " + msg + isolatedMessage(stuck));
+		}
+	}
+
+	/** Return a JSON String of the metrics (see GameMetrics) of the games of scores:
+	 * an array with an object per game. */
+	public static String metricsJSON(GameScore[] scores) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < scores.length; i++) {
+			appendMetricsJSON(sb, scores[i], i == 0);
 		}
+		return sb.append("\n]\n").toString();
+	}
+
+	/** Append to sb the JSON object of the metrics of the game of gs, preceded by a
+	 * comma unless it is the first of its array. */
+	private static void appendMetricsJSON(StringBuilder sb, GameScore gs, boolean first) {
+		Game g = gs.game;
+		sb.append(first ? "" : ",").append("\n{")
+				.append(Main.addQuotes("seed")).append(':').append(g.getSeed()).append(',')
+				.append(Main.addQuotes("file")).append(':').append(g.getFile() == null ? "null"
+						: Main.addQuotes(g.getFile().getName())).append(',')
+				.append(Main.addQuotes("score")).append(':').append(gs.score).append(',')
+				.append(Main.addQuotes("status")).append(':').append(Main.addQuotes(gs.status.name())).append(',')
+				.append(Main.addQuotes("frames")).append(':').append(g.getFrames()).append(',')
+				.append(Main.addQuotes("managerCpuNanos")).append(':').append(g.getManagerCpuTime()).append(',')
+				.append(Main.addQuotes("deliveriesPerFrame")).append(':').append(String.format(Locale.ROOT, "%.5f",
+						g.getMetrics().getDeliveriesPerFrame(g.getFrames()))).append(',')
+				.append(Main.addQuotes("metrics")).append(':');
+		g.getMetrics().appendJSON(sb).append('}');
+	}
+
+	/** The header line of metricsCSV. */
+	private static final String METRICS_CSV_HEADER = "seed,score,status," + GameMetrics.CSV_HEADER + "\n";
+
+	/** Return the metrics (see GameMetrics) of the games of scores as CSV:
+	 * a header line, then one line per metric per game, starting with the
+	 * game's seed, score and status. */
+	public static String metricsCSV(GameScore[] scores) {
+		StringBuilder sb = new StringBuilder(METRICS_CSV_HEADER);
+		for (GameScore gs : scores) {
+			appendMetricsCSV(sb, gs);
+		}
+		return sb.toString();
+	}
+
+	/** Append to sb the CSV rows of the metrics of the game of gs. */
+	private static void appendMetricsCSV(StringBuilder sb, GameScore gs) {
+		gs.game.getMetrics().appendCSV(sb, gs.game.getSeed() + "," + gs.score + "," + gs.status + ",");
+	}
+
+	/** Write the metrics of the games of scores to file f, as CSV if its name
+	 * ends with ".csv" and as JSON otherwise, one game at a time, so that the
+	 * whole export is never held in memory.
+	 * @throws IOException - if f can't be written. */
+	public static void writeMetrics(GameScore[] scores, File f) throws IOException {
+		boolean csv = f.getName().endsWith(".csv");
+		try (Writer w = new BufferedWriter(new FileWriter(f))) {
+			w.write(csv ? METRICS_CSV_HEADER : "[");
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < scores.length; i++) {
+				sb.setLength(0);
+				if (csv)
+					appendMetricsCSV(sb, scores[i]);
+				else
+					appendMetricsJSON(sb, scores[i], i == 0);
+				w.append(sb);
+			}
+			if (!csv) w.write("\n]\n");
+		}
+	}
+
+	/** Return the part of a status message that names the threads in stuck, which
+	 * a cancelled game isolated because they did not stop ("" if there are none). */
+	private static String isolatedMessage(List<String> stuck) {
+		if (stuck.isEmpty())
+			return "";
+		String names = stuck.size() <= 3 ? "" + stuck : stuck.subList(0, 3) + "...";
+		return " (isolated " + stuck.size() + " runaway threads " + names + ")";
 	}
 
 	/**
@@ -183,7 +353,21 @@ public class GameRunner {
 		/** Game was terminated by the runner because it ran too long */
 		TIMEOUT,
 		/** Game terminated itself because of an internal error. */
-		ERROR
+		ERROR,
+		/** Game was not started because too many threads of cancelled games
+		 * were still running (see Game.MAX_ABANDONED_THREADS) */
+		REFUSED
+	}
+
+	/** Which budget a game that timed out exceeded. */
+	public enum TimeoutReason {
+		/** The game ran for more frames than its board allows */
+		FRAMES,
+		/** The manager used more CPU time than the board allows */
+		MANAGER_CPU,
+		/** After the first move, no truck moved and no parcel was delivered for
+		 * STALL_FRAMES frames */
+		STALLED
 	}
 
 	/**
@@ -217,6 +401,13 @@ public class GameRunner {
 		/** the message. */
 		public final String message;
 
+		/** The budget the game exceeded, if status is TIMEOUT (null otherwise). */
+		public final TimeoutReason timeoutReason;
+
+		/** The names of the game's threads that were still running after it was
+		 * cancelled, and were abandoned (see Game.cancel). */
+		public final List<String> abandonedThreads;
+
 		/**
 		 * Constructor: an instance for game g with score s, status status, and
 		 * message m.
@@ -227,10 +418,19 @@ public class GameRunner {
 		 * @param m
 		 */
 		public GameScore(Game g, int s, GameStatus status, String m) {
+			this(g, s, status, m, null);
+		}
+
+		/**
+		 * Constructor: an instance for game g with score s, status status,
+		 * message m and timeout reason r (null unless status is TIMEOUT).
+		 */
+		public GameScore(Game g, int s, GameStatus status, String m, TimeoutReason r) {
 			game = g;
+			timeoutReason = r;
+			abandonedThreads = g.getAbandonedThreads();
 			initialParcels = g.getBoard().initialParcelCount;
-			deliveredParcels = initialParcels
-					- g.getBoard().getParcels().size();
+			deliveredParcels = g.getStats().parcels(GameStats.PARCEL_DELIVERED);
 			trucks = g.getBoard().getTrucks().size();
 			homeTrucks = g.getBoard().getTruckDepot().trucksHere();
 			score = s;
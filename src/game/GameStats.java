@@ -0,0 +1,92 @@
+package game;
+
+import java.util.Arrays;
+
+/** A GameStats is an immutable count of the parcels and trucks of a game by state:
+ * parcels waiting on a node, held by a truck or delivered, and trucks waiting,
+ * traveling or waiting for manager input.
+ * <br><br>
+ * A Board keeps the current GameStats in an atomic reference and replaces it
+ * (see Board.parcelMoved and Board.truckMoved) at each state transition, so
+ * reading the stats is O(1) and the counts in one GameStats always add up:
+ * every parcel and every truck is counted in exactly one state.
+ */
+public final class GameStats {
+
+	/** State of a parcel lying on a node. */
+	public static final int PARCEL_WAITING = 0;
+	/** State of a parcel carried by a truck. */
+	public static final int PARCEL_HELD = 1;
+	/** State of a parcel delivered to its destination. */
+	public static final int PARCEL_DELIVERED = 2;
+
+	/** State of a truck waiting at a node. */
+	public static final int TRUCK_WAITING = 0;
+	/** State of a truck traveling along an edge. */
+	public static final int TRUCK_TRAVELING = 1;
+	/** State of a truck waiting for its manager to handle a notification. */
+	public static final int TRUCK_WAITING_FOR_MANAGER = 2;
+
+	private final int[] parcels; //parcels[s] = number of parcels in state s
+	private final int[] trucks;  //trucks[s] = number of trucks in state s
+
+	/** Constructor: stats with the given counts (not copied). */
+	private GameStats(int[] parcels, int[] trucks) {
+		this.parcels = parcels;
+		this.trucks = trucks;
+	}
+
+	/** Return the stats of a game that has not started: all parcelCount parcels
+	 * waiting and all truckCount trucks waiting. */
+	static GameStats initial(int parcelCount, int truckCount) {
+		return new GameStats(new int[]{parcelCount, 0, 0}, new int[]{truckCount, 0, 0});
+	}
+
+	/** Return the stats with parcels[s] parcels and trucks[s] trucks in state s
+	 * (the arrays are copied). */
+	static GameStats of(int[] parcels, int[] trucks) {
+		return new GameStats(parcels.clone(), trucks.clone());
+	}
+
+	/** Return these stats with one parcel moved from state from to state to. */
+	GameStats withParcelMoved(int from, int to) {
+		int[] p = parcels.clone();
+		p[from]--;
+		p[to]++;
+		return new GameStats(p, trucks);
+	}
+
+	/** Return these stats with one truck moved from state from to state to. */
+	GameStats withTruckMoved(int from, int to) {
+		int[] t = trucks.clone();
+		t[from]--;
+		t[to]++;
+		return new GameStats(parcels, t);
+	}
+
+	/** Return the number of parcels in state s (one of the PARCEL_ constants). */
+	public int parcels(int s) {
+		return parcels[s];
+	}
+
+	/** Return the number of trucks in state s (one of the TRUCK_ constants). */
+	public int trucks(int s) {
+		return trucks[s];
+	}
+
+	/** Return the parcel stats in the form [waiting, held, delivered]. */
+	public int[] parcelStats() {
+		return parcels.clone();
+	}
+
+	/** Return the truck stats in the form [waiting, traveling, waiting for manager]. */
+	public int[] truckStats() {
+		return trucks.clone();
+	}
+
+	/** Return a string representation of these stats. */
+	@Override
+	public String toString() {
+		return "parcels " + Arrays.toString(parcels) + ", trucks " + Arrays.toString(trucks);
+	}
+}
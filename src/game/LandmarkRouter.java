@@ -0,0 +1,253 @@
+package game;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/** A LandmarkRouter answers shortest-path queries on a board with A* search
+ * whose lower bounds come from landmarks ("ALT": A*, Landmarks, Triangle
+ * inequality).
+ * <br><br>
+ * Node coordinates say nothing about edge lengths, so the straight-line
+ * distance between two nodes is no lower bound of the length of a path between
+ * them, and A* can't use it. Instead, the router computes once the distances from
+ * a few landmark nodes to every node: the Truck Depot, then repeatedly the node
+ * farthest from the landmarks picked so far. For every landmark L, the triangle
+ * inequality gives |d(L, t) - d(L, v)| <= d(v, t), so the largest of these
+ * differences is a lower bound of the distance from v to t that A* can use. It is
+ * consistent, so a query returns a shortest path, of exactly the length
+ * Dijkstra's algorithm finds, while settling only the nodes that can lie on one.
+ * <br><br>
+ * A router depends only on a BoardTopology, so it is built the first time a
+ * topology is routed on (see of(BoardTopology)), in O(LANDMARKS * m log n) for a
+ * board of n nodes and m edges, and shared by every game on that topology.
+ * Queries may be made from any number of threads at once; each thread searches
+ * in its own scratch arrays, which are reused, not cleared, between queries.
+ */
+public final class LandmarkRouter {
+
+	/** Largest number of landmarks a router uses. */
+	public static final int LANDMARKS = 8;
+
+	/** Distance to an unreachable node. */
+	private static final int INFINITY = Integer.MAX_VALUE;
+
+	private final BoardTopology topology;
+	private final int[] landmarks; //Indexes of the landmark nodes
+	private final int[][] fromLandmark; //fromLandmark[i][v] = distance from landmarks[i] to v
+
+	/** The scratch space of each thread's searches. */
+	private final ThreadLocal<Search> search = new ThreadLocal<Search>() {
+		@Override
+		protected Search initialValue() {
+			return new Search(topology.getNodeCount());
+		}
+	};
+
+	/** The state of one thread's searches. An entry of dist or parent is valid
+	 * only if the stamp of its node is the current generation, so starting a
+	 * search costs O(1) instead of O(n). */
+	private static final class Search {
+		private final int[] dist;
+		private final int[] parent;  //Node before v on the best path found to v
+		private final int[] parentEdge; //Edge from parent[v] to v
+		private final int[] reached; //reached[v] == generation iff v was reached
+		private final int[] settled; //settled[v] == generation iff v was settled
+		private final LongHeap frontier = new LongHeap();
+		private int generation;
+		private int settledCount; //Nodes settled by the last search
+
+		/** Constructor: scratch space for searches on a graph of n nodes. */
+		private Search(int n) {
+			dist = new int[n];
+			parent = new int[n];
+			parentEdge = new int[n];
+			reached = new int[n];
+			settled = new int[n];
+		}
+
+		/** Start a new search. */
+		private void reset() {
+			generation++;
+			if (generation == Integer.MAX_VALUE) {
+				Arrays.fill(reached, 0);
+				Arrays.fill(settled, 0);
+				generation = 1;
+			}
+			frontier.clear();
+			settledCount = 0;
+		}
+	}
+
+	/** Constructor: a router on topology t with up to LANDMARKS landmarks. */
+	private LandmarkRouter(BoardTopology t) {
+		topology = t;
+		int n = t.getNodeCount();
+		int k = Math.min(LANDMARKS, n);
+		int[] picked = new int[k];
+		int[][] dists = new int[k][];
+		int[] nearest = new int[n]; //Distance from each node to its nearest landmark
+		Arrays.fill(nearest, INFINITY);
+
+		int count = 0;
+		int next = t.getDepot() >= 0 ? t.getDepot() : 0;
+		while (count < k) {
+			picked[count] = next;
+			dists[count] = t.distancesFrom(next);
+			count++;
+			//Next landmark: the node farthest from the landmarks so far, preferring
+			//nodes none of them reaches, so that every component gets one
+			int farthest = 0;
+			next = -1;
+			for (int v = 0; v < n; v++) {
+				nearest[v] = Math.min(nearest[v], dists[count - 1][v]);
+				if (nearest[v] > farthest) {
+					farthest = nearest[v];
+					next = v;
+				}
+			}
+			if (next < 0) break; //Every node is a landmark
+		}
+		landmarks = Arrays.copyOf(picked, count);
+		fromLandmark = Arrays.copyOf(dists, count);
+	}
+
+	/** Return the router of topology t, building it if t has none yet. */
+	public static LandmarkRouter of(BoardTopology t) {
+		LandmarkRouter r = t.router;
+		if (r != null)
+			return r;
+		synchronized(t) {
+			if (t.router == null)
+				t.router = new LandmarkRouter(t);
+			return t.router;
+		}
+	}
+
+	/** Return the router of board b's topology. */
+	public static LandmarkRouter of(Board b) {
+		return of(b.getTopology());
+	}
+
+	/** Return the topology this router routes on. */
+	public BoardTopology getTopology() {
+		return topology;
+	}
+
+	/** Return the indexes of the landmark nodes, the Truck Depot first. */
+	public int[] getLandmarks() {
+		return landmarks.clone();
+	}
+
+	/** Return a lower bound of the distance from node v to node t, or -1 if no
+	 * path connects them (some landmark reaches one but not the other). */
+	public int lowerBound(int v, int t) {
+		int bound = 0;
+		for (int[] d : fromLandmark) {
+			if (d[t] == INFINITY || d[v] == INFINITY) {
+				if (d[t] != d[v]) return -1;
+				continue;
+			}
+			bound = Math.max(bound, Math.abs(d[t] - d[v]));
+		}
+		return bound;
+	}
+
+	/** Search from node s to node t in the calling thread's scratch space.
+	 * Return the distance from s to t (-1 if t can't be reached). */
+	private int search(Search sr, int s, int t) {
+		sr.reset();
+		if (lowerBound(s, t) < 0) return -1;
+		int g = sr.generation;
+		sr.dist[s] = 0;
+		sr.parent[s] = -1;
+		sr.reached[s] = g;
+		sr.frontier.add((long)lowerBound(s, t) << 32 | s);
+		while (!sr.frontier.isEmpty()) {
+			int v = (int)sr.frontier.poll();
+			if (sr.settled[v] == g) continue;
+			sr.settled[v] = g;
+			sr.settledCount++;
+			if (v == t) return sr.dist[t];
+			for (int k = 0; k < topology.getDegree(v); k++) {
+				int w = topology.getNeighbor(v, k);
+				if (sr.settled[w] == g) continue;
+				int e = topology.getExit(v, k);
+				int d = sr.dist[v] + topology.getLength(e);
+				if (sr.reached[w] != g || d < sr.dist[w]) {
+					sr.reached[w] = g;
+					sr.dist[w] = d;
+					sr.parent[w] = v;
+					sr.parentEdge[w] = e;
+					sr.frontier.add((long)(d + lowerBound(w, t)) << 32 | w);
+				}
+			}
+		}
+		return -1;
+	}
+
+	/** Return the length of a shortest path from node s to node t, or -1 if
+	 * there is none. */
+	public int distance(int s, int t) {
+		return search(search.get(), s, t);
+	}
+
+	/** Return the nodes of a shortest path from node s to node t, s and t
+	 * included, or an empty array if there is none. */
+	public int[] path(int s, int t) {
+		Search sr = search.get();
+		if (search(sr, s, t) < 0) return new int[0];
+		int length = 1;
+		for (int v = t; v != s; v = sr.parent[v]) {
+			length++;
+		}
+		int[] p = new int[length];
+		for (int v = t; length > 0; v = sr.parent[v]) {
+			p[--length] = v;
+		}
+		return p;
+	}
+
+	/** Return the edges of a shortest path from node s to node t, in order, or
+	 * null if there is none (the path from s to s has no edges). */
+	public int[] edgePath(int s, int t) {
+		Search sr = search.get();
+		if (search(sr, s, t) < 0) return null;
+		int length = 0;
+		for (int v = t; v != s; v = sr.parent[v]) {
+			length++;
+		}
+		int[] p = new int[length];
+		for (int v = t; v != s; v = sr.parent[v]) {
+			p[--length] = sr.parentEdge[v];
+		}
+		return p;
+	}
+
+	/** Return a shortest route from start to end, or null if there is none.
+	 * start and end must be nodes of the same board, whose topology is this
+	 * router's. */
+	public Route route(Node start, Node end) {
+		Board b = start.getBoard();
+		int s = b.indexOf(start);
+		int[] edges = edgePath(s, b.indexOf(end));
+		return edges == null ? null : new Route(b, s, edges);
+	}
+
+	/** Return the nodes of a shortest path from start to end, both included, or
+	 * the empty list if there is none. start and end must be nodes of the same
+	 * board, whose topology is this router's. */
+	public LinkedList<Node> path(Node start, Node end) {
+		Board b = start.getBoard();
+		LinkedList<Node> p = new LinkedList<Node>();
+		for (int v : path(b.indexOf(start), b.indexOf(end))) {
+			p.add(b.getNode(v));
+		}
+		return p;
+	}
+
+	/** Return the number of nodes the calling thread's last query settled: a
+	 * measure of how much of the board it explored. */
+	public int getSettledCount() {
+		return search.get().settledCount;
+	}
+}
@@ -0,0 +1,68 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A LatencyWindow keeps the last SIZE latencies of a manager's truck
+ * notifications, so that the manager (or whoever runs it) can watch their
+ * rolling median and 99th percentile while the game runs, e.g. to notice that
+ * its notifications are getting slow. See Manager.getCallbackLatency().
+ * <br><br>
+ * Recording is lock-free and O(1); computing a percentile sorts a copy of the
+ * window, O(SIZE log SIZE).
+ */
+public final class LatencyWindow {
+
+	/** Number of latencies kept. */
+	public static final int SIZE = 1024;
+
+	private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+	private final AtomicLong recorded = new AtomicLong(); //Number of latencies ever recorded
+
+	/** Constructor: an empty window. */
+	LatencyWindow() {
+	}
+
+	/** Record latency nanos (in ns), replacing the oldest one if the window is full. */
+	void record(long nanos) {
+		long i = recorded.getAndIncrement();
+		samples.set((int)(i % SIZE), nanos);
+	}
+
+	/** Return the number of latencies ever recorded. */
+	public long getCount() {
+		return recorded.get();
+	}
+
+	/** Return quantile q (0 <= q <= 1) of the latencies in the window, in ns
+	 * (0 if none were recorded). */
+	public long getQuantile(double q) {
+		int n = (int)Math.min(SIZE, recorded.get());
+		if (n == 0) return 0;
+		long[] s = new long[n];
+		for (int i = 0; i < n; i++) {
+			s[i] = samples.get(i);
+		}
+		Arrays.sort(s);
+		int rank = (int)Math.ceil(q * n); //1-based rank of the quantile
+		return s[Math.max(0, Math.min(n, rank) - 1)];
+	}
+
+	/** Return the median of the latencies in the window, in ns. */
+	public long getP50() {
+		return getQuantile(0.5);
+	}
+
+	/** Return the 99th percentile of the latencies in the window, in ns. */
+	public long getP99() {
+		return getQuantile(0.99);
+	}
+
+	/** Return a string representation of this window: its median and 99th
+	 * percentile, in microseconds. */
+	@Override
+	public String toString() {
+		return "p50 " + getP50() / 1000 + "us, p99 " + getP99() / 1000 + "us";
+	}
+}
@@ -0,0 +1,55 @@
+package game;
+
+import java.util.Arrays;
+
+/** A binary min-heap of longs, for the graph searches of LandmarkRouter and
+ * ContractionHierarchy. A search adds (priority << 32 | node) and skips nodes it
+ * polled before, instead of updating priorities in place; clear() keeps the
+ * array, so a heap reused across searches stops allocating once it is large
+ * enough. */
+final class LongHeap {
+	private long[] a = new long[64];
+	private int size;
+
+	/** Remove every element. */
+	void clear() {
+		size = 0;
+	}
+
+	/** Return true iff this heap has no elements. */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Return the smallest element. Precondition: this heap is not empty. */
+	long peek() {
+		return a[0];
+	}
+
+	/** Add x. */
+	void add(long x) {
+		if (size == a.length) a = Arrays.copyOf(a, 2 * size);
+		int k = size++;
+		while (k > 0 && a[(k - 1) / 2] > x) {
+			a[k] = a[(k - 1) / 2];
+			k = (k - 1) / 2;
+		}
+		a[k] = x;
+	}
+
+	/** Remove and return the smallest element. Precondition: this heap is not empty. */
+	long poll() {
+		long top = a[0];
+		long x = a[--size];
+		int k = 0;
+		while (2 * k + 1 < size) {
+			int c = 2 * k + 1;
+			if (c + 1 < size && a[c + 1] < a[c]) c++;
+			if (x <= a[c]) break;
+			a[k] = a[c];
+			k = c;
+		}
+		a[k] = x;
+		return top;
+	}
+}
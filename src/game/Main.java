@@ -3,7 +3,6 @@ package game;
 import gui.GUI;
 
 import java.util.*;
-import java.util.concurrent.Semaphore;
 
 /** Game starting methods. Also serves as a util holder */
 public class Main {
@@ -15,14 +14,12 @@ public class Main {
 	 * an instance of that manager class, create the game and the threads, and start the game.
 	 * @param args - a 1x... array containing the name of the class of the user wants as the Manager
 	 * 				first argument is manager name, other args are flags.
+	 *              In gamerunner mode, {@code -record <directory>} (anywhere after the
+	 *              manager name) records each game to a replay log in that directory.
 	 *              If null or empty, uses {"MyManager"} as a 1x1 array of args.
 	 * @throws IllegalArgumentException if args is null or has length 0.
 	 */
 	public static void main(String[] args) throws IllegalArgumentException {
-		//Add initial elements to fibCalc
-		fibCalc.add(0);
-		fibCalc.add(1);
-		
 		if (args == null || args.length < 1)
 			args = new String[]{"MyManager"};
 
@@ -32,6 +29,19 @@ public class Main {
 			userManagerClass = "solution."+args[0].substring(args[0].indexOf('>') + 1);
 		}
 		
+		//Take out the replay directory, if any
+		String replayDirectory = null;
+		for (int i = 1; i < args.length - 1; i++) {
+			if (args[i].equals("-record")) {
+				replayDirectory = args[i+1];
+				String[] rest = new String[args.length - 2];
+				System.arraycopy(args, 0, rest, 0, i);
+				System.arraycopy(args, i + 2, rest, i, args.length - i - 2);
+				args = rest;
+				break;
+			}
+		}
+
 		//Check if running in gamerunner mode.
 		//just one argument - not gamerunner mode (default gui mode. No headless option).
 		//multiple - gamerunner mode (may or may not be headless).
@@ -44,6 +54,7 @@ public class Main {
 			if (argsList.contains("-h")) headless = true;
 			
 			GameRunner gr = new GameRunner(userManagerClass, ! headless, true);
+			if (replayDirectory != null) gr.setReplayDirectory(new java.io.File(replayDirectory));
 			
 			if (args.length > 2 && ((args[1].equals("-r") && ! headless) || (args[2].equals("-r") && headless))) {
 				int n = -1;
@@ -119,46 +130,29 @@ public class Main {
 		return sumToHelper(i-1, s+i);
 	}
 
-	/** Part of fib series calculated thus far. Bit of memoization for speed. */
-	private static ArrayList<Integer> fibCalc = new ArrayList<Integer>();
-
-	/** Lock that ensures that fibCalc arrayList is added to/accessed correctly. */
-	private static Semaphore fibLock = new Semaphore(1);
+	/** FIB[i] = fibonacci number i, for every i whose fibonacci number fits in an int.
+	 * Computed once, so fib never blocks (it is called every frame, see Score.cost). */
+	private static final int[] FIB = new int[47];
+	static {
+		FIB[1] = 1;
+		for (int i = 2; i < FIB.length; i++) {
+			FIB[i] = FIB[i-2] + FIB[i-1];
+		}
+	}
 
 	/** Return fibonachi number i (0 indexed), starting with 0,1,1,2 ... 
-	 * Returns -1 if i is negative or if the calling thread is interrupted */
+	 * Returns -1 if i is negative. Numbers too big for an int overflow. */
 	public static int fib(int i) {
-		try {
-			fibLock.acquire();
-		} catch (InterruptedException e) {
-			return -1;
-		}
-		if (i < 0) {
-			fibLock.release();
-			return -1;
-		}
-		else if (i < fibCalc.size()) {
-			int k = fibCalc.get(i);
-			fibLock.release();
-			return k;
-		}
-
-		//Release the lock before recursive calls.
-		fibLock.release();
-		//Calculate next number
-		int f = fib(i-2) + fib(i-1);
-
-		//Acquire before checking size/adding.
-		try {
-			fibLock.acquire();
-		} catch (InterruptedException e) {
-			return -1;
+		if (i < 0) return -1;
+		if (i < FIB.length) return FIB[i];
+		int a = FIB[FIB.length - 2];
+		int b = FIB[FIB.length - 1];
+		for (int k = FIB.length; k <= i; k++) {
+			int c = a + b;
+			a = b;
+			b = c;
 		}
-		//Check that we're storing it in the correct place.
-		if (fibCalc.size() == i)
-			fibCalc.add(f);
-		fibLock.release();
-		return f;
+		return b;
 	}
 
 	/** Return s with quotes added around it.
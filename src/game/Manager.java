@@ -21,6 +21,7 @@ public abstract class Manager implements Runnable{
 
 	private Game game;     //The game in which this manager is running.
 	private final Score score;   //The score for this manager.
+	private final LatencyWindow callbackLatency = new LatencyWindow(); //Of truckNotification
 	private Thread thread; //The thread in which this manager is running.
 
 	/** Constructor: an instance with a score but no game or thread.
@@ -51,7 +52,16 @@ public abstract class Manager implements Runnable{
 		/** Notification sent whenever a truck arrives at a node that contains
 		 *  at least one parcel. A PARCEL_AT_NODE notification is fired after a
 		 *  LOCATION_CHANGED notification */
-		PARCEL_AT_NODE
+		PARCEL_AT_NODE,
+
+		/** Notification sent when a truck has done every step of the plan it was
+		 *  given with Truck.setPlan. While following a plan a truck sends no
+		 *  other notifications. */
+		PLAN_COMPLETED,
+
+		/** Notification sent when a step of a truck's plan can't be done. The
+		 *  truck stops following the plan; TruckPlan.getFailure says why. */
+		PLAN_FAILED
 	}
 
 	/** Called by Truck t to notify the manager that something has occurred. 
@@ -67,6 +77,12 @@ public abstract class Manager implements Runnable{
 		return score;
 	}
 
+	/** Return the latencies of this manager's most recent truck notifications:
+	 * how long truckNotification took to return, whichever thread called it. */
+	public final LatencyWindow getCallbackLatency() {
+		return callbackLatency;
+	}
+
 	/** Return the current value of the score. */
 	public final int getScore() {
 		return score.value();
@@ -124,11 +140,10 @@ public abstract class Manager implements Runnable{
 	final void gameOver() {
 		if (thread != null) thread.interrupt();
 	}
-	
-	
-	@SuppressWarnings("deprecation")
-	final void forceQuit(){
-		thread.stop();
+
+	/** Return the Thread on which this manager is being run (null if not started). */
+	final Thread getThread() {
+		return thread;
 	}
 
 }
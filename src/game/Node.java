@@ -20,6 +20,11 @@ public final class Node implements BoardElement {
     /** The name of this node. Set during construction */
     public final String name;
 
+    /** The id of this node: its index in its board's topology (see Board.indexOf),
+     * given out in order of construction. Used for hashing and equality, and as
+     * the index of the node in a NodeMap. */
+    final int id;
+
     private final Board board;		//The board this Node is contained in
 
     protected int x;				//x coordinate of this node in independent project space
@@ -28,6 +33,8 @@ public final class Node implements BoardElement {
     private HashMap<Truck, Boolean> truckHere; //Maps truck -> is here
 
     private Set<Edge> exits; 		//Edges leaving this Node
+    private volatile Map<Node, Edge> adjacency; //Neighbor -> edge to it (immutable). Built from
+    // exits when first needed; null again whenever exits change
     private Set<Parcel> parcels; 	//Parcels currently here and not on truck
 
     private Object userData;
@@ -53,6 +60,7 @@ public final class Node implements BoardElement {
     protected Node(Board m, String name, DraggableCircle c, Set<Edge> exits) {
         board = m;
         this.name = name;
+        id = m.newNodeId();
 
         if (c == null)
             circle = new DraggableCircle(this, 0, 0, Circle.DEFAULT_DIAMETER);
@@ -64,11 +72,17 @@ public final class Node implements BoardElement {
         if (exits !=  null) {
             this.exits = Collections.synchronizedSet(exits);
         } else{
-            this.exits = Collections.synchronizedSet(new HashSet<Edge>());
+            this.exits = Collections.synchronizedSet(new LinkedHashSet<Edge>());
         }
         parcels = Collections.synchronizedSet(new HashSet<Parcel>());
     }
 
+    /** Return the id of this node: 0 for the first node of its board, 1 for the
+     * second, and so on. It is the node's index in its board's topology. */
+    public int getId() {
+        return id;
+    }
+
     /** Return the board on which this Node belongs. */
     public Board getBoard() {
         return board;
@@ -109,17 +123,46 @@ public final class Node implements BoardElement {
 
     /** Add e to this Node's set of exits */
     protected void addExit(Edge e) {
-        exits.add(e);
+        synchronized(exits) {
+            exits.add(e);
+            adjacency = null;
+        }
     }
 
     /** Remove e from this Node's set of exits */
     protected void removeExit(Edge e) {
-        exits.remove(e);
+        synchronized(exits) {
+            exits.remove(e);
+            adjacency = null;
+        }
     }
 
     /** Add edges in s to this Node's set of edges (its exits). */
     protected void addExits(Collection<Edge> s) {
-        exits.addAll(s);
+        synchronized(exits) {
+            exits.addAll(s);
+            adjacency = null;
+        }
+    }
+
+    /** Return the map of this Node's neighbors to the edges leading to them.
+     * It is built from exits the first time it is needed after they change, and
+     * by the board when it freezes its topology, and is immutable, so reading it
+     * needs no lock. */
+    Map<Node, Edge> getAdjacency() {
+        Map<Node, Edge> a = adjacency;
+        if (a != null)
+            return a;
+        synchronized(exits) {
+            if (adjacency == null) {
+                HashMap<Node, Edge> m = new HashMap<Node, Edge>();
+                for (Edge r : exits) {
+                    m.put(r.getOther(this), r);
+                }
+                adjacency = Collections.unmodifiableMap(m);
+            }
+            return adjacency;
+        }
     }
 
     /** Return the number of exits from this node. */
@@ -175,10 +218,13 @@ public final class Node implements BoardElement {
 
     /** Create a new Edge with length len and add it as an exit
      * to this Node and node. Also add it to the board.
+     * Do nothing if this Node is already connected to node.
      * @param node - the Node to connect this Node to
      * @param len - the length of the Edge
      */
     protected void connectTo(Node node, int len) {
+        if (isConnectedTo(node))
+            return;
         Edge r = new Edge(board, this, node, len);
         addExit(r);
         node.addExit(r);
@@ -192,33 +238,13 @@ public final class Node implements BoardElement {
         if (destination.equals(this))
             return false;
 
-        boolean b = false;
-        synchronized(exits) {
-            for (Edge r : exits) {
-                if (r.isExit(destination)) {
-                    b = true;
-                    break;
-                }
-            }
-        }
-
-        return b;
+        return getAdjacency().containsKey(destination);
     }
 
-    /** Return the road that this node shares with node other (null if not connected). */
+    /** Return the road that this node shares with node other (null if not connected).
+     * Takes expected O(1) time and, once the board no longer changes, no lock. */
     public Edge getConnect(Node other) {
-        Edge n = null;
-
-        synchronized(exits) {
-            for (Edge r : exits) {
-                if (r.getOther(this).equals(other)) {
-                    n = r;
-                    break;
-                }
-            }
-        }
-
-        return n;
+        return getAdjacency().get(other);
     }
 
     /** Return the userData stored in this Node. May be null. */
@@ -259,7 +285,6 @@ public final class Node implements BoardElement {
     public void updateGUILocation(int x, int y) {
         circle.setX1(x);
         circle.setY1(y);
-        circle.repaint();
         for (Edge e : exits) {
             e.updateGUILocation(x, y);
         }
@@ -274,22 +299,23 @@ public final class Node implements BoardElement {
     }
 
     /** Return true iff n is a Node and is equal to this one.
-     * Two Nodes are equal if they have the same name - guaranteed to be unique
-     * within the context of a single game */
+     * Two Nodes are equal if they are on the same board and have the same id -
+     * guaranteed to be unique within the board */
     @Override
     public boolean equals(Object n) {
-        if (n == null)
-            return false;
+        if (n == this)
+            return true;
         if (!(n instanceof Node) )
             return false;
-        return name.equals( ((Node)n).name);
+        Node other = (Node)n;
+        return id == other.id && board == other.board;
     }
 
-    /** Return the hashCode of this node. Its hashCode is equal to the hashCode of
-     * its name. This is guaranteed to be unique within the context of a single game. */
+    /** Return the hashCode of this node, its id. This is unique within the
+     * context of a single game, and costs no string hashing. */
     @Override
     public int hashCode() {
-        return name.hashCode();
+        return id;
     }
 
     /** Return true iff t is currently at this node. */
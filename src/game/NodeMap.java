@@ -0,0 +1,25 @@
+package game;
+
+/** A map from the nodes of a board to values of type V, backed by an array
+ * indexed by node id (see Node.getId): lookups and updates take O(1) time and
+ * never hash or compare names. It can be used wherever a Map&lt;Node, V&gt; is,
+ * e.g.
+ * <pre>
+ *     NodeMap&lt;Integer&gt; dist = new NodeMap&lt;Integer&gt;(getBoard());
+ * </pre>
+ * Only nodes of its board can be put in it. Not synchronized.
+ */
+public final class NodeMap<V> extends ElementMap<Node, V> {
+
+	/** Constructor: an empty map for the nodes of board b. */
+	public NodeMap(Board b) {
+		super(b, b.getNodesSize());
+	}
+
+	@Override
+	int idOf(Object o) {
+		if (!(o instanceof Node)) return -1;
+		Node n = (Node)o;
+		return n.getBoard() == board ? n.id : -1;
+	}
+}
@@ -0,0 +1,118 @@
+package game;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+
+/** A NotificationQueue decouples a game's trucks from a slow manager. With one
+ * (see Game.setNotificationQueue(int)), a truck does not call its manager's
+ * truckNotification itself, blocking until it returns; it puts the
+ * notification in its own bounded queue and carries on. A single dispatcher
+ * thread takes notifications from the trucks' queues in turn and hands them to
+ * the manager.
+ * <br><br>
+ * WAITING notifications are the only ones that may be dropped: one is dropped
+ * if the truck already has a WAITING notification pending or its queue is full,
+ * and, when the dispatcher reaches it, if the truck has been given directions
+ * since (it is stale). A truck whose queue is full of other notifications waits
+ * for room, which is the backpressure a slow manager puts on it.
+ * <br><br>
+ * A notification handed to the manager this way may be late: the truck need not
+ * be waiting, or at the node where it was sent, by the time the manager gets it.
+ */
+final class NotificationQueue implements Runnable {
+
+	private final Game game;
+	private final int capacity; //Largest number of notifications pending per truck
+
+	//Guarded by this:
+	private final IdentityHashMap<Truck, ArrayDeque<Manager.Notification>> queues =
+			new IdentityHashMap<Truck, ArrayDeque<Manager.Notification>>();
+	private final ArrayDeque<Truck> ready = new ArrayDeque<Truck>(); //Trucks with notifications
+	// pending, in the order the dispatcher serves them
+
+	private Thread thread; //The dispatcher thread (null if not started)
+
+	/** Constructor: a queue of capacity notifications per truck of game g. */
+	NotificationQueue(Game g, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("A notification queue needs room for a notification");
+		game = g;
+		this.capacity = capacity;
+	}
+
+	/** Set the dispatcher thread of this queue to t. */
+	void setThread(Thread t) {
+		t.setName("NOTIFICATION-DISPATCHER");
+		thread = t;
+	}
+
+	/** Return the dispatcher thread of this queue (null if not started). */
+	Thread getThread() {
+		return thread;
+	}
+
+	/** Queue notification n from truck t for the manager, dropping it if it is a
+	 * WAITING notification that t already has pending or that doesn't fit.
+	 * @throws InterruptedException - if the game is cancelled or the calling
+	 * thread is interrupted while waiting for room. */
+	void offer(Truck t, Manager.Notification n) throws InterruptedException {
+		synchronized(this) {
+			ArrayDeque<Manager.Notification> q = queues.get(t);
+			if (q == null) {
+				q = new ArrayDeque<Manager.Notification>(capacity);
+				queues.put(t, q);
+			}
+			if (n == Manager.Notification.WAITING) {
+				if (q.size() >= capacity || q.contains(n)) {
+					game.getMetrics().notificationDropped(n);
+					return;
+				}
+			} else {
+				while (q.size() >= capacity) {
+					//Make room by dropping a WAITING notification, else wait for the dispatcher
+					if (q.removeLastOccurrence(Manager.Notification.WAITING)) {
+						game.getMetrics().notificationDropped(Manager.Notification.WAITING);
+						break;
+					}
+					wait();
+					game.getCancellation().check();
+				}
+			}
+			if (q.isEmpty())
+				ready.add(t); //t has notifications pending iff it is in ready
+			q.add(n);
+			notifyAll();
+		}
+	}
+
+	/** Hand the queued notifications to the manager, a truck at a time, until
+	 * the game is cancelled. */
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				Truck t;
+				Manager.Notification n;
+				synchronized(this) {
+					while (ready.isEmpty()) {
+						game.getCancellation().check();
+						wait();
+					}
+					t = ready.poll();
+					ArrayDeque<Manager.Notification> q = queues.get(t);
+					n = q.poll();
+					if (!q.isEmpty()) ready.add(t);
+					notifyAll();
+				}
+				game.getCancellation().check();
+				if (n == Manager.Notification.WAITING && t.hasDirections()) {
+					game.getMetrics().notificationDropped(n);
+					continue;
+				}
+				game.notifyManager(t, n);
+			}
+		} catch (InterruptedException e) {
+			return;
+		}
+	}
+}
@@ -24,8 +24,9 @@ public final class Parcel implements BoardElement {
 	/** The node on which this this parcel started. */
 	public final Node start;
 	
-	/** This parcel's current location. */
-	private Node location;
+	/** This parcel's current location. Volatile so that RenderSnapshots,
+	 * taken in another thread, see it. */
+	private volatile Node location;
 	
 	/** The node where this parcel is to be delivered. */
 	public final Node destination;
@@ -70,6 +71,40 @@ public final class Parcel implements BoardElement {
 		parcelLock = new Semaphore(1);
 	}
 
+	/** The state of a parcel, as captured by a Snapshot. */
+	static final class State {
+		/** The state of every delivered parcel. */
+		static final State DELIVERED = new State(null, null, true);
+
+		final Node location;
+		final Truck holder;
+		final boolean delivered;
+
+		/** Constructor: a parcel at location, held by holder (may be null),
+		 * delivered iff delivered. */
+		private State(Node location, Truck holder, boolean delivered) {
+			this.location = location;
+			this.holder = holder;
+			this.delivered = delivered;
+		}
+	}
+
+	/** Return the current state of this parcel, for a Snapshot. */
+	State captureState() {
+		if (!board.getParcels().contains(this))
+			return State.DELIVERED;
+		return new State(location, holder, false);
+	}
+
+	/** Put this parcel's location and holder back as in state s, taken by
+	 * captureState(). The game puts it back on its node and in the board. */
+	void restoreState(State s) {
+		if (s.delivered)
+			return;
+		location = s.location;
+		holder = s.holder;
+	}
+
 	/** Return the board on which this Parcel belongs. */
 	@Override
 	public Board getBoard() {
@@ -133,6 +168,7 @@ public final class Parcel implements BoardElement {
 		parcelLock.acquire();
 		holder = t;
 		parcelLock.release();
+		board.parcelMoved(this, t, GameStats.PARCEL_WAITING, GameStats.PARCEL_HELD);
 	}
 
 	/** Have holder drop off this parcel at its current location.
@@ -154,9 +190,11 @@ public final class Parcel implements BoardElement {
 			return;
 		}
 
+		Truck t = holder;
 		setLocation(holder.getLocation());
 		holder = null;
 		parcelLock.release();
+		board.parcelMoved(this, t, GameStats.PARCEL_HELD, GameStats.PARCEL_WAITING);
 	}
 
 	/** Used when game notifies this parcel that it has reached its destination. */
@@ -202,6 +240,13 @@ public final class Parcel implements BoardElement {
 	public boolean isHeld() {
 		return holder != null;
 	}
+
+	/** Return the truck currently holding this Parcel (null if none). While a
+	 * truck holds it, getLocation() is where it was picked up; the parcel is
+	 * wherever the truck is. */
+	public Truck getHolder() {
+		return holder;
+	}
 	
 	/** Return 1 if a truck is currently holding this Parcel, 0 otherwise */
 	@Override
@@ -212,12 +257,11 @@ public final class Parcel implements BoardElement {
 	}
 
 	/** Update the circle position to (x, y).
-	 * Relies on the circle for painting. Parcels have no dependents */
+	 * The gui's board canvas paints it there. Parcels have no dependents */
 	@Override
 	public void updateGUILocation(int x, int y) {
 		Circle c = getCircle();
 		c.setX1(x);
 		c.setY1(y);
-		c.repaint();
 	}
 }
@@ -0,0 +1,149 @@
+package game;
+
+import java.util.*;
+
+/** A RenderSnapshot is an immutable picture of a game at one moment, holding what
+ * a gui needs to draw it: where each truck is and what it carries, where each
+ * undelivered parcel is, and the score.
+ * <br><br>
+ * The simulation never waits for a gui, nor a gui for it. Each truck publishes
+ * its own TruckState (through a volatile field) as it moves, picks up and drops
+ * off, each parcel its location, and the board copies its undelivered parcels
+ * when asked, if any has left since the last copy (see Board.getParcelView()). The game assembles those
+ * into a RenderSnapshot on demand, at most once per frame, without taking any lock
+ * the trucks take, and hands it over through a single atomic slot (see
+ * Game.getRenderSnapshot()). A gui that draws slowly just skips the snapshots it
+ * had no time for.
+ */
+public final class RenderSnapshot {
+
+	/** Where one truck is and what it carries. */
+	public static final class TruckState {
+		/** The truck. */
+		public final Truck truck;
+		/** The node the truck is at if it is waiting, or is coming from if it is traveling. */
+		public final Node from;
+		/** The node the truck is traveling to (null if it is waiting). */
+		public final Node to;
+		/** The edge the truck is traveling along (null if it is waiting). */
+		public final Edge along;
+		/** The fraction of along that the truck has traveled, 0 .. 1 (0 if waiting). */
+		public final double progress;
+		/** The parcel the truck is carrying (null if none). */
+		public final Parcel load;
+
+		/** Constructor: truck t waiting at node at, carrying load. */
+		TruckState(Truck t, Node at, Parcel load) {
+			this(t, at, null, null, 0, load);
+		}
+
+		/** Constructor: truck t traveling along edge e from node from to node to,
+		 * progress of the way there, carrying load. */
+		TruckState(Truck t, Node from, Node to, Edge e, double progress, Parcel load) {
+			truck = t;
+			this.from = from;
+			this.to = to;
+			along = e;
+			this.progress = progress;
+			this.load = load;
+		}
+
+		/** Return true iff the truck is traveling. */
+		public boolean isTraveling() {
+			return to != null;
+		}
+	}
+
+	/** Where one undelivered parcel is. */
+	public static final class ParcelState {
+		/** The parcel. */
+		public final Parcel parcel;
+		/** The truck carrying the parcel (null if it is on a node). */
+		public final Truck holder;
+		/** The node the parcel is on (its last location if a truck carries it). */
+		public final Node location;
+
+		/** Constructor: parcel p on node location, carried by holder (may be null). */
+		ParcelState(Parcel p, Node location, Truck holder) {
+			parcel = p;
+			this.location = location;
+			this.holder = holder;
+		}
+	}
+
+	/** The System.nanoTime() at which this snapshot was taken. */
+	public final long time;
+
+	/** The score of the game when this snapshot was taken. */
+	public final int score;
+
+	private final List<TruckState> trucks;
+	private final List<ParcelState> parcels;
+	private final Set<Edge> traveledEdges;			//Edges with at least one truck on them
+	private final Map<Node, Integer> parcelCounts;	//Node -> number of parcels on it (if > 0)
+
+	/** Constructor: a snapshot of game g, taken now. */
+	private RenderSnapshot(Game g) {
+		time = System.nanoTime();
+		score = g.getManager().getScore();
+
+		Board b = g.getBoard();
+		ArrayList<TruckState> ts = new ArrayList<TruckState>(b.getTrucks().size());
+		HashMap<Parcel, Truck> holders = new HashMap<Parcel, Truck>();
+		HashSet<Edge> traveled = new HashSet<Edge>();
+		for (Truck t : b.getTrucks()) {
+			TruckState s = t.getRenderState();
+			ts.add(s);
+			if (s.load != null)
+				holders.put(s.load, t);
+			if (s.along != null)
+				traveled.add(s.along);
+		}
+
+		Parcel[] ps = b.getParcelView();
+		ArrayList<ParcelState> parcelStates = new ArrayList<ParcelState>(ps.length);
+		HashMap<Node, Integer> counts = new HashMap<Node, Integer>();
+		for (Parcel p : ps) {
+			Truck holder = holders.get(p);
+			Node location = p.getLocation();
+			parcelStates.add(new ParcelState(p, location, holder));
+			if (holder == null) {
+				Integer c = counts.get(location);
+				counts.put(location, c == null ? 1 : c + 1);
+			}
+		}
+
+		trucks = Collections.unmodifiableList(ts);
+		parcels = Collections.unmodifiableList(parcelStates);
+		traveledEdges = traveled;
+		parcelCounts = counts;
+	}
+
+	/** Return a snapshot of game g, taken now. Reads only state that the game's
+	 * threads publish for this purpose, so it never waits on them. */
+	static RenderSnapshot of(Game g) {
+		return new RenderSnapshot(g);
+	}
+
+	/** Return the states of the trucks, in the order of Board.getTrucks(). */
+	public List<TruckState> getTrucks() {
+		return trucks;
+	}
+
+	/** Return the states of the undelivered parcels. */
+	public List<ParcelState> getParcels() {
+		return parcels;
+	}
+
+	/** Return true iff at least one truck was traveling along e. */
+	public boolean isTraveled(Edge e) {
+		return traveledEdges.contains(e);
+	}
+
+	/** Return the number of parcels lying on node n (not counting parcels
+	 * carried by trucks that are at n). */
+	public int parcelsAt(Node n) {
+		Integer c = parcelCounts.get(n);
+		return c == null ? 0 : c;
+	}
+}
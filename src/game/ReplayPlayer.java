@@ -0,0 +1,338 @@
+package game;
+
+import gui.GUI;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** A ReplayPlayer shows a game recorded by a ReplayRecorder again, without the
+ * manager that played it. It is the manager of the replayed game: when the game
+ * is started, instead of giving trucks directions, it reads the recorded events
+ * and applies them to the board at the pace they were recorded (times a speed
+ * factor), moving trucks and parcels and changing the score. The trucks' own
+ * threads are not started (see Game.start()).
+ * <br><br>
+ * Use load(File) to create a replayed game, then give it to a GUI, or run
+ * main to do that from the command line.
+ */
+public final class ReplayPlayer extends Manager {
+
+	/** Time between two updates of the replayed board, in ms. */
+	private static final int TICK = 10;
+
+	private String managerClassname;	//The manager of the recorded game
+	private int recordedFrame;			//The frame of the recorded game, in ms
+	private volatile double speed = 1;	//Log time played per unit of real time
+
+	//Event i has type type[i], happened at time[i] (in microseconds since the start),
+	//and has fields a[i], b[i], c[i] (unused fields are 0). For a TRAVEL event,
+	//until[i] is the time of the truck's arrival (Long.MAX_VALUE if none).
+	private byte[] type = new byte[0];
+	private long[] time = new long[0];
+	private int[] a = new int[0];
+	private int[] b = new int[0];
+	private int[] c = new int[0];
+	private long[] until = new long[0];
+	private int events;
+
+	//Replayed state of truck i
+	private Node[] at;			//The node it is at or traveling from
+	private Node[] to;			//The node it is traveling to (null if none)
+	private Edge[] along;		//The edge it is traveling along (null if none)
+	private long[] travelStart;	//The times its current travel started and ends
+	private long[] travelEnd;
+	private Parcel[] load;		//The parcel it carries (null if none)
+	private int[] state;		//Its GameStats state
+
+	/** Constructor: a player with no log. Used by Game to create the manager of a
+	 * replayed game; see load(File). */
+	public ReplayPlayer() {
+	}
+
+	/** Return a game that replays the log in file f when it is started.
+	 * @throws IOException - if f can't be read or is not a replay log. */
+	public static Game load(File f) throws IOException {
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			try {
+				if (buf.getInt() != ReplayRecorder.MAGIC)
+					throw new IOException(f + " is not a replay log");
+				int version = buf.getInt();
+				if (version != ReplayRecorder.VERSION)
+					throw new IOException("Unsupported replay log version " + version);
+				int frame = buf.getInt();
+				byte[] manager = new byte[buf.getInt()];
+				buf.get(manager);
+				int length = buf.getInt();
+				int end = buf.position() + length;
+				BinaryBoard board = BinaryBoard.decode(buf);
+				if (buf.position() != end)
+					throw new IOException("Board of " + f + " has the wrong length");
+
+				Game g = new Game(ReplayPlayer.class.getName(), board);
+				ReplayPlayer p = (ReplayPlayer)g.getManager();
+				p.managerClassname = new String(manager, StandardCharsets.UTF_8);
+				p.recordedFrame = frame;
+				p.readEvents(buf);
+				return g;
+			} catch (RuntimeException e) {
+				throw new IOException(f + " is truncated or corrupt: " + e, e);
+			}
+		}
+	}
+
+	/** Read the events remaining in buf. A log that ends in the middle of an
+	 * event (e.g. because the recording game was killed) is read up to that event. */
+	private void readEvents(ByteBuffer buf) {
+		int n = getTrucks().size();
+		int[] traveling = new int[n]; //traveling[t] = index of truck t's travel event, or -1
+		Arrays.fill(traveling, -1);
+		long t = 0;
+		while (buf.hasRemaining()) {
+			int start = buf.position();
+			try {
+				byte ty = buf.get();
+				t += getVarint(buf);
+				int x = 0, y = 0, z = 0;
+				switch (ty) {
+					case ReplayRecorder.TRUCK:
+						x = getVarint(buf);
+						y = buf.get();
+						break;
+					case ReplayRecorder.TRAVEL:
+						x = getVarint(buf);
+						y = getVarint(buf);
+						z = getVarint(buf);
+						break;
+					case ReplayRecorder.ARRIVE:
+						x = getVarint(buf);
+						break;
+					case ReplayRecorder.PARCEL:
+						x = getVarint(buf);
+						y = getVarint(buf);
+						z = buf.get();
+						break;
+					case ReplayRecorder.SCORE:
+						x = getZigzag(buf);
+						break;
+					case ReplayRecorder.END:
+						x = buf.get();
+						y = getZigzag(buf);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown replay event " + ty);
+				}
+				add(ty, t, x, y, z);
+				if (ty == ReplayRecorder.TRAVEL) {
+					traveling[x] = events - 1;
+				} else if (ty == ReplayRecorder.ARRIVE && traveling[x] != -1) {
+					until[traveling[x]] = t;
+					traveling[x] = -1;
+				}
+			} catch (java.nio.BufferUnderflowException e) {
+				buf.position(start);
+				return;
+			}
+		}
+	}
+
+	/** Append an event of type ty at time t with fields x, y, z. */
+	private void add(byte ty, long t, int x, int y, int z) {
+		if (events == type.length) {
+			int cap = Math.max(1024, events * 2);
+			type = Arrays.copyOf(type, cap);
+			time = Arrays.copyOf(time, cap);
+			a = Arrays.copyOf(a, cap);
+			b = Arrays.copyOf(b, cap);
+			c = Arrays.copyOf(c, cap);
+			until = Arrays.copyOf(until, cap);
+		}
+		type[events] = ty;
+		time[events] = t;
+		a[events] = x;
+		b[events] = y;
+		c[events] = z;
+		until[events] = Long.MAX_VALUE;
+		events++;
+	}
+
+	/** Read and return an unsigned varint from buf. */
+	private static int getVarint(ByteBuffer buf) {
+		int v = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte x = buf.get();
+			v |= (x & 0x7F) << shift;
+			if (x >= 0) return v;
+		}
+	}
+
+	/** Read and return a zigzag-encoded varint from buf. */
+	private static int getZigzag(ByteBuffer buf) {
+		int v = getVarint(buf);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/** Return the class name of the manager that played the recorded game. */
+	public String getRecordedManager() {
+		return managerClassname;
+	}
+
+	/** Return the frame of the recorded game, in ms. */
+	public int getRecordedFrame() {
+		return recordedFrame;
+	}
+
+	/** Replay speed s times as fast as the game was recorded (s > 0). */
+	public void setSpeed(double s) {
+		if (s <= 0)
+			throw new IllegalArgumentException("Replay speed must be positive, not " + s);
+		speed = s;
+	}
+
+	/** Replay the log: every TICK ms, apply the events that happened up to the
+	 * current replay time and move the traveling trucks along. End the game at
+	 * the end of the log. */
+	@Override
+	public void run() {
+		int n = getTrucks().size();
+		at = new Node[n];
+		to = new Node[n];
+		along = new Edge[n];
+		travelStart = new long[n];
+		travelEnd = new long[n];
+		load = new Parcel[n];
+		state = new int[n];
+		Arrays.fill(at, getBoard().getTruckDepot());
+
+		double played = 0; //Microseconds of the log replayed so far
+		long prev = System.nanoTime();
+		int next = 0;
+		try {
+			while (next < events) {
+				Thread.sleep(TICK);
+				long now = System.nanoTime();
+				played += (now - prev) / 1000.0 * speed;
+				prev = now;
+				while (next < events && time[next] <= played) {
+					if (type[next] == ReplayRecorder.END) {
+						end(a[next] == 1, b[next]);
+						return;
+					}
+					apply(next++);
+				}
+				for (int t = 0; t < n; t++) {
+					if (along[t] != null)
+						publish(t, played);
+				}
+			}
+		} catch (InterruptedException e) {
+			return;
+		}
+		getGame().kill(); //The log has no END event: the recording game was killed
+	}
+
+	/** Apply event i to the board. */
+	private void apply(int i) {
+		BinaryBoard.Elements el = getBoard().getBinaryElements();
+		if (type[i] == ReplayRecorder.SCORE) {
+			getScoreObject().changeScore(a[i]);
+			return;
+		}
+		int t = a[i];
+		Truck truck = el.trucks[t];
+		switch (type[i]) {
+			case ReplayRecorder.TRUCK:
+				getBoard().truckMoved(truck, state[t], b[i]);
+				state[t] = b[i];
+				break;
+			case ReplayRecorder.TRAVEL:
+				along[t] = el.edges[b[i]];
+				to[t] = el.nodes[c[i]];
+				travelStart[t] = time[i];
+				travelEnd[t] = until[i];
+				at[t].setTruckHere(truck, false);
+				along[t].setTruckHere(truck, true);
+				at[t].getCircle().updateColor();
+				publish(t, time[i]);
+				break;
+			case ReplayRecorder.ARRIVE:
+				along[t].setTruckHere(truck, false);
+				to[t].setTruckHere(truck, true);
+				to[t].getCircle().updateColor();
+				at[t] = to[t];
+				to[t] = null;
+				along[t] = null;
+				publish(t, time[i]);
+				break;
+			case ReplayRecorder.PARCEL:
+				Parcel p = el.parcels[b[i]];
+				int s = c[i];
+				if (s == GameStats.PARCEL_HELD) {
+					at[t].getTrueParcels().remove(p);
+					load[t] = p;
+					getBoard().parcelMoved(p, truck, GameStats.PARCEL_WAITING, s);
+				} else {
+					if (s == GameStats.PARCEL_WAITING) {
+						p.setLocation(at[t]);
+						at[t].getTrueParcels().add(p);
+					} else {
+						getBoard().getParcels().remove(p);
+					}
+					load[t] = null;
+					getBoard().parcelMoved(p, truck, GameStats.PARCEL_HELD, s);
+				}
+				publish(t, time[i]);
+				break;
+		}
+	}
+
+	/** Publish the replayed state of truck t at replay time now. */
+	private void publish(int t, double now) {
+		Truck truck = getBoard().getBinaryElements().trucks[t];
+		if (along[t] == null) {
+			truck.publishRenderState(new RenderSnapshot.TruckState(truck, at[t], load[t]));
+			return;
+		}
+		double progress = 0;
+		if (travelEnd[t] != Long.MAX_VALUE && travelEnd[t] > travelStart[t])
+			progress = Math.min(1, Math.max(0, (now - travelStart[t]) / (travelEnd[t] - travelStart[t])));
+		truck.publishRenderState(new RenderSnapshot.TruckState(truck, at[t], to[t], along[t],
+				progress, load[t]));
+	}
+
+	/** End the replayed game, which ended correctly iff finished with score score. */
+	private void end(boolean finished, int score) {
+		if (getScore() != score)
+			System.err.println("Replay ended with score " + getScore() +
+					", but the recorded game ended with score " + score);
+		if (finished)
+			getGame().finish();
+		else
+			getGame().kill();
+	}
+
+	/** Trucks of a replayed game don't run, so they send no notifications. */
+	@Override
+	public void truckNotification(Truck t, Notification message) {
+	}
+
+	/** Replay the log in args[0] on a GUI, args[1] (if present) times as fast as it
+	 * was recorded. */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0 || args.length > 2) {
+			System.err.println("Usage: ReplayPlayer <replay file> [speed]");
+			return;
+		}
+		Game g = load(new File(args[0]));
+		if (args.length == 2)
+			((ReplayPlayer)g.getManager()).setSpeed(Double.parseDouble(args[1]));
+		GUI gui = new GUI(g);
+		g.start();
+		gui.setUpdateMessage("Replaying " + ((ReplayPlayer)g.getManager()).getRecordedManager());
+	}
+}
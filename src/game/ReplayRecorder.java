@@ -0,0 +1,216 @@
+package game;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+
+/** A ReplayRecorder writes everything that happens in a game to a compact binary
+ * log, from which a ReplayPlayer can show the game again without running its
+ * manager. Recording is opt-in: see Game.record(File).
+ * <br><br>
+ * A log starts with a header:
+ * <br> int magic, int version, int frame, int length + UTF-8 bytes of the
+ * manager class name, int length + bytes of the BinaryBoard of the game's board.
+ * <br><br>
+ * Then come events, each a type byte, the time since the previous event (in
+ * microseconds, as a varint) and the event's fields. Trucks, edges, nodes and
+ * parcels are written as their indexes in the header's BinaryBoard (varints):
+ * <br> TRUCK truck, state byte (a GameStats.TRUCK_ constant)
+ * <br> TRAVEL truck, edge, node traveled to
+ * <br> ARRIVE truck
+ * <br> PARCEL truck, parcel, state byte (a GameStats.PARCEL_ constant)
+ * <br> SCORE score change (zigzag varint)
+ * <br> END finished byte (1 iff the game ended correctly), final score (zigzag varint)
+ * <br><br>
+ * Events are appended under this recorder's lock into a buffer that is written
+ * through a FileChannel when it fills up, so recording costs a truck thread a few
+ * bytes of copying per event. A recorder that fails to write stops recording
+ * and reports the failure when it is closed; the game is never disturbed.
+ */
+public final class ReplayRecorder {
+
+	/** The extension of replay files. */
+	public static final String EXTENSION = ".sgr";
+
+	/** First int of every replay ("SGRP"). */
+	static final int MAGIC = 0x53475250;
+
+	/** Version of the format written by this class. */
+	static final int VERSION = 1;
+
+	/** Event types. */
+	static final byte END = 0;
+	static final byte TRUCK = 1;
+	static final byte TRAVEL = 2;
+	static final byte ARRIVE = 3;
+	static final byte PARCEL = 4;
+	static final byte SCORE = 5;
+
+	/** Size of the event buffer, in bytes. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** Largest number of bytes one event takes. */
+	private static final int MAX_EVENT_SIZE = 32;
+
+	private final Game game;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private final IdentityHashMap<Object, Integer> index; //Truck, Edge, Node or Parcel -> its index
+
+	private long last;			//System.nanoTime() of the previous event (or of the start)
+	private boolean closed;		//True iff no more events are recorded
+	private IOException error;	//The first write failure, null if none
+
+	/** Constructor: a recorder of game g, which is not running, to file f.
+	 * Writes the log's header.
+	 * @throws IOException - if f can't be written. */
+	ReplayRecorder(Game g, File f) throws IOException {
+		game = g;
+		Board b = g.getBoard();
+		BinaryBoard.Elements el = new BinaryBoard.Elements(b);
+		ByteBuffer board = BinaryBoard.fromBoard(b, el).encode();
+
+		index = new IdentityHashMap<Object, Integer>();
+		indexAll(el.nodes);
+		indexAll(el.edges);
+		indexAll(el.trucks);
+		indexAll(el.parcels);
+
+		channel = FileChannel.open(f.toPath(), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			byte[] manager = g.getManagerClassname().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer header = ByteBuffer.allocate(4 * 5 + manager.length);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(g.getFrame());
+			header.putInt(manager.length);
+			header.put(manager);
+			header.putInt(board.remaining());
+			header.flip();
+			writeFully(header);
+			writeFully(board);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		last = System.nanoTime();
+	}
+
+	/** Put the elements of arr in index, each under its position in arr. */
+	private void indexAll(Object[] arr) {
+		for (int i = 0; i < arr.length; i++) {
+			index.put(arr[i], i);
+		}
+	}
+
+	/** Restart the clock: the game starts now. */
+	synchronized void started() {
+		last = System.nanoTime();
+	}
+
+	/** Record that truck t went to GameStats state s. */
+	synchronized void truckMoved(Truck t, int s) {
+		if (!begin(TRUCK)) return;
+		putVarint(index.get(t));
+		buffer.put((byte)s);
+	}
+
+	/** Record that truck t started to travel along edge e to node to. */
+	synchronized void traveling(Truck t, Edge e, Node to) {
+		if (!begin(TRAVEL)) return;
+		putVarint(index.get(t));
+		putVarint(index.get(e));
+		putVarint(index.get(to));
+	}
+
+	/** Record that truck t arrived at the node it was traveling to. */
+	synchronized void arrived(Truck t) {
+		if (!begin(ARRIVE)) return;
+		putVarint(index.get(t));
+	}
+
+	/** Record that parcel p went to GameStats state s, because of truck t. */
+	synchronized void parcelMoved(Parcel p, Truck t, int s) {
+		if (!begin(PARCEL)) return;
+		putVarint(index.get(t));
+		putVarint(index.get(p));
+		buffer.put((byte)s);
+	}
+
+	/** Record that the score changed by delta. */
+	synchronized void scoreChanged(int delta) {
+		if (!begin(SCORE)) return;
+		putVarint((delta << 1) ^ (delta >> 31));
+	}
+
+	/** Record the end of the game (finished is true iff it ended correctly),
+	 * write everything recorded and close the log. Do nothing if already closed.
+	 * @throws IOException - if any part of the log could not be written. */
+	synchronized void close(boolean finished) throws IOException {
+		if (closed)
+			return;
+		if (begin(END)) {
+			buffer.put((byte)(finished ? 1 : 0));
+			int score = game.getManager().getScore();
+			putVarint((score << 1) ^ (score >> 31));
+			flush();
+		}
+		closed = true;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			if (error == null) error = e;
+		}
+		if (error != null)
+			throw error;
+	}
+
+	/** Begin an event of type type: make room for it and write its type and time.
+	 * Return false (and write nothing) if this recorder is closed or has failed. */
+	private boolean begin(byte type) {
+		if (closed || error != null)
+			return false;
+		if (buffer.remaining() < MAX_EVENT_SIZE) {
+			flush();
+			if (error != null)
+				return false;
+		}
+		long now = System.nanoTime();
+		buffer.put(type);
+		putVarint((int)Math.min(Integer.MAX_VALUE, (now - last) / 1000));
+		last = now;
+		return true;
+	}
+
+	/** Write v (>= 0 as an unsigned int) to the buffer, 7 bits per byte, low bits first. */
+	private void putVarint(int v) {
+		while ((v & ~0x7F) != 0) {
+			buffer.put((byte)((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		buffer.put((byte)v);
+	}
+
+	/** Write the buffer's contents to the log. On failure, remember the failure. */
+	private void flush() {
+		buffer.flip();
+		try {
+			writeFully(buffer);
+		} catch (IOException e) {
+			error = e;
+		}
+		buffer.clear();
+	}
+
+	/** Write all remaining bytes of buf to the log. */
+	private void writeFully(ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+	}
+}
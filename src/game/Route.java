@@ -0,0 +1,155 @@
+package game;
+
+import java.util.*;
+
+/** A Route is an immutable path on a board: the node it starts at and the
+ * edges it travels, in order, stored as topology indices (see
+ * Board.indexOf). The nodes it passes and the length of every prefix of it are
+ * computed once, when it is built, from the board's topology, so that building
+ * one costs O(hops) and asking for its length, or the length of any part of it,
+ * costs O(1), with no hashing or locking.
+ * <br><br>
+ * Routes are what the board's routers return (ContractionHierarchy.route,
+ * LandmarkRouter.route) and what Truck.setTravelRoute takes. A route with no
+ * edges stays at its start node.
+ */
+public final class Route {
+
+	private final Board board;
+	private final int[] edges;  //edges[i]: index of the i-th edge traveled
+	private final int[] nodes;  //nodes[i]: index of the node reached after i edges
+	private final int[] prefix; //prefix[i]: length of the first i edges
+
+	/** Constructor: the route on board b from node start traveling edges (indices
+	 * in b's topology, in order). Takes ownership of edges.
+	 * @throws IllegalArgumentException - if the edges aren't a path from start. */
+	Route(Board b, int start, int[] edges) {
+		BoardTopology t = b.getTopology();
+		board = b;
+		this.edges = edges;
+		nodes = new int[edges.length + 1];
+		prefix = new int[edges.length + 1];
+		nodes[0] = start;
+		for (int i = 0; i < edges.length; i++) {
+			int e = edges[i];
+			if (t.getFirstExit(e) != nodes[i] && t.getSecondExit(e) != nodes[i])
+				throw new IllegalArgumentException("Edge " + b.getEdge(e) +
+						" doesn't leave " + b.getNode(nodes[i]));
+			nodes[i + 1] = t.getOther(e, nodes[i]);
+			prefix[i + 1] = prefix[i] + t.getLength(e);
+		}
+	}
+
+	/** Return the route on board b from node start (an index in b's topology)
+	 * traveling edges (indices in b's topology, in order), in O(edges.length).
+	 * @throws IllegalArgumentException - if the edges aren't a path from start. */
+	public static Route of(Board b, int start, int[] edges) {
+		return new Route(b, start, edges.clone());
+	}
+
+	/** Return the route along path, a list of adjacent nodes of a board (the
+	 * first being where it starts).
+	 * @throws IllegalArgumentException - if path is empty or two consecutive
+	 * nodes of it aren't adjacent. */
+	public static Route of(List<Node> path) {
+		if (path.isEmpty())
+			throw new IllegalArgumentException("Can't make a route of an empty path");
+		Board b = path.get(0).getBoard();
+		int[] edges = new int[path.size() - 1];
+		Node prev = null;
+		int i = 0;
+		for (Node n : path) {
+			if (prev != null) {
+				Edge e = prev.getConnect(n);
+				if (e == null)
+					throw new IllegalArgumentException(prev + " and " + n + " aren't adjacent");
+				edges[i++] = b.indexOf(e);
+			}
+			prev = n;
+		}
+		return new Route(b, b.indexOf(path.get(0)), edges);
+	}
+
+	/** Return the board this route is on. */
+	public Board getBoard() {
+		return board;
+	}
+
+	/** Return the number of edges of this route. */
+	public int size() {
+		return edges.length;
+	}
+
+	/** Return the node this route starts at. */
+	public Node getStart() {
+		return board.getNode(nodes[0]);
+	}
+
+	/** Return the node this route ends at. */
+	public Node getEnd() {
+		return board.getNode(nodes[edges.length]);
+	}
+
+	/** Return the i-th edge of this route (0 <= i < size()). */
+	public Edge getEdge(int i) {
+		return board.getEdge(edges[i]);
+	}
+
+	/** Return the node of this route reached after i edges (0 <= i <= size()). */
+	public Node getNode(int i) {
+		return board.getNode(nodes[i]);
+	}
+
+	/** Return the topology index of the i-th edge of this route. */
+	public int getEdgeIndex(int i) {
+		return edges[i];
+	}
+
+	/** Return the total length of this route. */
+	public int getLength() {
+		return prefix[edges.length];
+	}
+
+	/** Return the length of the first i edges of this route (0 <= i <= size()). */
+	public int getLength(int i) {
+		return prefix[i];
+	}
+
+	/** Return the length of the part of this route from the node reached after i
+	 * edges to the node reached after j edges (0 <= i <= j <= size()). */
+	public int getLength(int i, int j) {
+		return prefix[j] - prefix[i];
+	}
+
+	/** Return the edges of this route, in order, as an unmodifiable list. */
+	public List<Edge> getEdges() {
+		return new AbstractList<Edge>() {
+			@Override
+			public Edge get(int i) {
+				return getEdge(i);
+			}
+
+			@Override
+			public int size() {
+				return edges.length;
+			}
+		};
+	}
+
+	/** Return the nodes of this route, start and end included, in a new list
+	 * (as Truck.setTravelPath takes them). */
+	public LinkedList<Node> toNodeList() {
+		LinkedList<Node> l = new LinkedList<Node>();
+		for (int v : nodes) {
+			l.add(board.getNode(v));
+		}
+		return l;
+	}
+
+	/** Return a String representation of this route. */
+	@Override
+	public String toString() {
+		return "Route from " + getStart() + " to " + getEnd() + ", " + edges.length +
+				" edges, length " + getLength();
+	}
+}
@@ -1,6 +1,7 @@
 package game;
 import java.awt.Color;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** Class Score monitors the score of a Game for a given Manager. <br>
  * The method that allows changing the value of the score is protected, so only
@@ -101,7 +102,7 @@ public final class Score {
 			return -s;
 	}
 
-	private int score; //The score maintained by this score object
+	private final AtomicInteger score; //The score maintained by this score object
 	
 	/** The manager for which this Score object keeps track. */
 	public final Manager manager;
@@ -109,7 +110,7 @@ public final class Score {
 	/** Constructor: an instance for manager m and with initial score 0. */
 	protected Score(Manager m) {
 		manager = m;
-		score = 0;
+		score = new AtomicInteger();
 	}
 
 	/** Constructor: an instance for manager m and with initial score s.
@@ -117,18 +118,28 @@ public final class Score {
 	 */
 	protected Score(Manager m, int s) {
 		this(m);
-		this.score = s;
+		score.set(s);
 	}
 
-	/** Add s to the score. */
+	/** Add s to the score. Safe to call from any truck thread; the gui picks
+	 * the new score up from the game's next RenderSnapshot. */
 	protected void changeScore(int s) {
-		score += s;
-		if (manager.getGame().getGUI() != null) manager.getGame().getGUI().updateScore(score);
+		score.addAndGet(s);
+		Game g = manager.getGame();
+		g.renderChanged();
+		ReplayRecorder r = g.getRecorder();
+		if (r != null) r.scoreChanged(s);
+	}
+
+	/** Set the score to s. Used to restore a Snapshot. */
+	void setScore(int s) {
+		score.set(s);
+		manager.getGame().renderChanged();
 	}
 
 	/** Return the current score. */
 	public int getScore() {
-		return score;
+		return score.get();
 	}
 
 	/** Return the current score. */
@@ -0,0 +1,73 @@
+package game;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/** This class provides method main to check that random board generation still
+ * gives, for the first few seeds, exactly the boards it always has. It prints
+ * its results on the console.
+ * <br><br>
+ * A board is reduced to a checksum of its score coefficients, its nodes with
+ * their exits, its edges and its trucks, all in iteration order, and its parcels
+ * sorted. Node coordinates are left out, since they are scaled to the screen.
+ * EXPECTED holds the checksums of the boards the generator gave when it was
+ * written. Every seeded score and grade depends on these boards, so a change
+ * that makes this check fail is a change of the game.
+ */
+public class SeedTester {
+
+	/** EXPECTED[s]: the checksum (see checksum(Board)) of the board of seed s. */
+	private static final long[] EXPECTED = {
+		1063250553L, 283935378L, 1076572674L, 2316298051L, 1025075189L,
+		616242535L, 114715935L, 1629851381L, 449173576L, 2419127942L
+	};
+
+	/** Check the boards of seeds 0..EXPECTED.length-1 against EXPECTED and print
+	 * the results. Exit with status 1 if any board differs. */
+	public static void main(String[] args) {
+		int failed = 0;
+		for (int s = 0; s < EXPECTED.length; s++) {
+			long c = checksum(Board.randomBoard(null, s));
+			if (c == EXPECTED[s]) {
+				System.out.println("Seed " + s + ": ok");
+			} else {
+				System.out.println("Seed " + s + ": FAILED - checksum " + c +
+						", expected " + EXPECTED[s]);
+				failed++;
+			}
+		}
+		if (failed > 0) {
+			System.out.println(failed + " of " + EXPECTED.length + " boards differ");
+			System.exit(1);
+		}
+		System.out.println("All " + EXPECTED.length + " boards are the same");
+	}
+
+	/** Return the checksum of board b described in the class comment. */
+	static long checksum(Board b) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(b.getWaitCost()).append(',').append(b.getPickupCost()).append(',')
+				.append(b.getDropoffCost()).append(',').append(b.getPayoff()).append(',')
+				.append(b.getOnColorMultiplier()).append('\n');
+		sb.append(b.toString()).append('\n');
+		for (Edge e : b.getEdges()) {
+			sb.append(e.toJSONString()).append('\n');
+		}
+		for (Truck t : b.getTrucks()) {
+			sb.append(t.toJSONString()).append('\n');
+		}
+		ArrayList<String> parcels = new ArrayList<String>();
+		for (Parcel p : b.getParcels()) {
+			parcels.add(p.toJSONString());
+		}
+		Collections.sort(parcels);
+		for (String p : parcels) {
+			sb.append(p).append('\n');
+		}
+		CRC32 crc = new CRC32();
+		crc.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+}
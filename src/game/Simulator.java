@@ -0,0 +1,332 @@
+package game;
+
+import java.util.*;
+
+/** A Simulator evaluates hypothetical plans for a game's trucks without playing
+ * them: it computes, in closed form and without threads or side effects, the
+ * score change and the time that executing the plans would take, by the same
+ * rules the game uses (see Truck.travel, Truck.pickupLoad, Truck.dropoffLoad and
+ * Board.deliverParcel):
+ * <br> - traveling an edge of length L at speed s takes ceil(L / s) frames, and
+ *        costs Score.cost(s) per full frame and Score.cost(s) * r / s for a last
+ *        frame of only r units;
+ * <br> - each frame a truck spends not traveling costs the board's wait cost.
+ *        This part is an approximation: every truck is charged for waiting
+ *        until the last plan is done, as if the game ended then. In the game a
+ *        truck whose plan is done keeps paying until every truck has finished
+ *        (see Board.addTruckToFinished), and each idle stretch is charged in
+ *        whole frames, rounded down;
+ * <br> - a pickup costs the pickup cost, a dropoff the dropoff cost, and dropping
+ *        a parcel off at its destination delivers it for the payoff (times the
+ *        on-color multiplier if the truck and parcel have the same color).
+ * <br><br>
+ * A simulation starts from the current state of the game: each truck where it
+ * is (a traveling truck first finishes its current edge, at its current speed),
+ * with its load and speed, and each parcel where it is. Plans replace the trucks'
+ * travel queues. The trucks' actions are interleaved in time order, so two plans
+ * that pick up the same parcel are resolved as the game would: the first truck
+ * there gets it and the other pickup does nothing. Trucks without a plan stay
+ * where they are, waiting.
+ * <br><br>
+ * A Simulator can be reused for any number of simulations of its game; each one
+ * takes time linear in the number of actions of its plans.
+ */
+public final class Simulator {
+
+	/** A plan for one truck: a sequence of actions, executed in order. */
+	public static final class Plan {
+		private static final int TRAVEL = 0;
+		private static final int PICKUP = 1;
+		private static final int DROPOFF = 2;
+		private static final int SPEED = 3;
+		private static final int WAIT = 4;
+
+		private int[] kinds = new int[8];		//Kind of action i
+		private Object[] targets = new Object[8];	//Edge traveled or parcel picked up by action i
+		private int[] values = new int[8];		//Speed or number of frames of action i
+		private int size;
+
+		/** Constructor: an empty plan. */
+		public Plan() {
+		}
+
+		/** Append an action of kind kind with target target and value value. */
+		private Plan add(int kind, Object target, int value) {
+			if (size == kinds.length) {
+				kinds = Arrays.copyOf(kinds, size * 2);
+				targets = Arrays.copyOf(targets, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			kinds[size] = kind;
+			targets[size] = target;
+			values[size] = value;
+			size++;
+			return this;
+		}
+
+		/** Append traveling along edge e to this plan. Return this plan. */
+		public Plan travel(Edge e) {
+			return add(TRAVEL, e, 0);
+		}
+
+		/** Append traveling along path (a list of adjacent nodes, the first being
+		 * where the truck will be when it starts traveling it) to this plan.
+		 * Return this plan. */
+		public Plan travel(List<Node> path) {
+			Node prev = null;
+			for (Node n : path) {
+				if (prev != null) travel(prev.getConnect(n));
+				prev = n;
+			}
+			return this;
+		}
+
+		/** Append picking up parcel p to this plan. Return this plan. */
+		public Plan pickup(Parcel p) {
+			return add(PICKUP, p, 0);
+		}
+
+		/** Append dropping off the truck's load to this plan. Return this plan. */
+		public Plan dropoff() {
+			return add(DROPOFF, null, 0);
+		}
+
+		/** Append changing the truck's speed to s to this plan. Return this plan.
+		 * @throws IllegalArgumentException - if s is not a valid truck speed. */
+		public Plan speed(int s) {
+			if (s < Truck.MIN_SPEED || s > Truck.MAX_SPEED)
+				throw new IllegalArgumentException("Illegal truck speed " + s);
+			return add(SPEED, null, s);
+		}
+
+		/** Append waiting for frames frames to this plan. Return this plan. */
+		public Plan waitFrames(int frames) {
+			if (frames < 0)
+				throw new IllegalArgumentException("Can't wait " + frames + " frames");
+			return add(WAIT, null, frames);
+		}
+
+		/** Return the number of actions in this plan. */
+		public int size() {
+			return size;
+		}
+	}
+
+	/** The outcome of a simulation. */
+	public static final class Result {
+		/** The change of the score. */
+		public final int scoreDelta;
+
+		/** The number of frames until every plan is done. */
+		public final long frames;
+
+		/** The time until every plan is done, in ms (frames times the game's frame). */
+		public final long time;
+
+		/** The number of parcels delivered. */
+		public final int delivered;
+
+		private final Map<Truck, Long> finishFrames; //Truck -> frame its plan is done at
+
+		/** Constructor: a result with the given contents. */
+		private Result(int scoreDelta, long frames, long time, int delivered,
+				Map<Truck, Long> finishFrames) {
+			this.scoreDelta = scoreDelta;
+			this.frames = frames;
+			this.time = time;
+			this.delivered = delivered;
+			this.finishFrames = finishFrames;
+		}
+
+		/** Return the frame at which truck t's plan is done (0 if it had none
+		 * and was not traveling). */
+		public long getFinishFrame(Truck t) {
+			Long f = finishFrames.get(t);
+			return f == null ? 0 : f;
+		}
+
+		/** Return a string representation of this result. */
+		@Override
+		public String toString() {
+			return "score " + scoreDelta + " in " + frames + " frames (" + time + "ms), " +
+					delivered + " delivered";
+		}
+	}
+
+	/** COST[s] = Score.cost(s), for the valid speeds s. */
+	private static final int[] COST = new int[Truck.MAX_SPEED + 1];
+	static {
+		for (int s = Truck.MIN_SPEED; s <= Truck.MAX_SPEED; s++) {
+			COST[s] = Score.cost(s);
+		}
+	}
+
+	private final Game game;
+	private final int waitCost;
+	private final int pickupCost;
+	private final int dropoffCost;
+	private final int payoff;
+	private final int onColorMultiplier;
+
+	/** Constructor: a simulator for game g. */
+	public Simulator(Game g) {
+		game = g;
+		Board b = g.getBoard();
+		waitCost = b.getWaitCost();
+		pickupCost = b.getPickupCost();
+		dropoffCost = b.getDropoffCost();
+		payoff = b.getPayoff();
+		onColorMultiplier = b.getOnColorMultiplier();
+	}
+
+	/** Return the score change of traveling an edge of length length,
+	 * of which progress is already traveled, at speed speed. */
+	static int travelCost(int length, int progress, int speed) {
+		int remaining = length - progress;
+		int full = remaining / speed;
+		int last = remaining % speed;
+		int cost = full * COST[speed];
+		if (last > 0)
+			cost += COST[speed] * last / speed;
+		return cost;
+	}
+
+	/** Return the number of frames it takes to travel an edge of length length,
+	 * of which progress is already traveled, at speed speed. */
+	static int travelFrames(int length, int progress, int speed) {
+		return (length - progress + speed - 1) / speed;
+	}
+
+	/** Return the result of executing plans (truck -> its plan) from the current
+	 * state of the game. Nothing in the game is changed.
+	 * @throws IllegalArgumentException - if a plan can't be executed: it travels
+	 * an edge that does not leave the node the truck is at, picks up a parcel while
+	 * the truck carries one, or drops off while it carries none. */
+	public Result simulate(Map<Truck, Plan> plans) {
+		List<Truck> trucks = game.getBoard().getTrucks();
+		int n = trucks.size();
+		Node[] at = new Node[n];
+		Parcel[] load = new Parcel[n];
+		int[] speed = new int[n];
+		long[] clock = new long[n];		//Frame truck i is at in its plan
+		long[] busy = new long[n];		//Frames truck i has spent traveling
+		Plan[] plan = new Plan[n];
+		int[] next = new int[n];		//Index of truck i's next action
+
+		//Hypothetical parcels on each node, copied on first touch
+		IdentityHashMap<Node, Set<Parcel>> nodeParcels = new IdentityHashMap<Node, Set<Parcel>>();
+
+		int score = 0;
+		int delivered = 0;
+
+		for (int i = 0; i < n; i++) {
+			Truck t = trucks.get(i);
+			speed[i] = t.getSpeed();
+			load[i] = t.getLoad();
+			Edge along = t.getTravelingAlong();
+			Node to = t.getTravelingTo();
+			if (to != null && along != null) {
+				int progress = t.getTravelProgress();
+				int frames = travelFrames(along.length, progress, speed[i]);
+				score += travelCost(along.length, progress, speed[i]);
+				clock[i] = frames;
+				busy[i] = frames;
+				at[i] = to;
+			} else {
+				at[i] = t.getLocation();
+			}
+			plan[i] = plans.get(t);
+		}
+
+		//Execute the actions in time order: always the truck furthest behind
+		PriorityQueue<long[]> queue = new PriorityQueue<long[]>(Math.max(1, n),
+				new Comparator<long[]>() {
+					@Override
+					public int compare(long[] a, long[] b) {
+						if (a[0] != b[0]) return Long.compare(a[0], b[0]);
+						return Long.compare(a[1], b[1]);
+					}
+				});
+		for (int i = 0; i < n; i++) {
+			if (plan[i] != null && plan[i].size > 0)
+				queue.add(new long[]{clock[i], i});
+		}
+		while (!queue.isEmpty()) {
+			int i = (int)queue.poll()[1];
+			Plan p = plan[i];
+			int k = next[i]++;
+			Truck t = trucks.get(i);
+			switch (p.kinds[k]) {
+				case Plan.TRAVEL:
+					Edge e = (Edge)p.targets[k];
+					if (!e.isExit(at[i]))
+						throw new IllegalArgumentException("Truck " + t + " at " + at[i] +
+								" can't travel " + e);
+					int frames = travelFrames(e.length, 0, speed[i]);
+					score += travelCost(e.length, 0, speed[i]);
+					clock[i] += frames;
+					busy[i] += frames;
+					at[i] = e.getOther(at[i]);
+					break;
+				case Plan.PICKUP:
+					if (load[i] != null)
+						throw new IllegalArgumentException("Truck " + t +
+								" can't pick up a parcel while carrying " + load[i]);
+					Parcel q = (Parcel)p.targets[k];
+					Set<Parcel> here = parcelsAt(at[i], nodeParcels);
+					if (here.remove(q)) {
+						load[i] = q;
+						score += pickupCost;
+					}
+					break;
+				case Plan.DROPOFF:
+					if (load[i] == null)
+						throw new IllegalArgumentException("Truck " + t + " has no parcel to drop off");
+					Parcel d = load[i];
+					load[i] = null;
+					if (d.destination == at[i]) {
+						score += t.getColor().equals(d.getColor()) ? payoff * onColorMultiplier : payoff;
+						delivered++;
+					} else {
+						parcelsAt(at[i], nodeParcels).add(d);
+					}
+					score += dropoffCost;
+					break;
+				case Plan.SPEED:
+					speed[i] = p.values[k];
+					break;
+				case Plan.WAIT:
+					clock[i] += p.values[k];
+					break;
+			}
+			if (next[i] < p.size)
+				queue.add(new long[]{clock[i], i});
+		}
+
+		//Every truck waits (and pays for it) whenever it is not traveling until all are done
+		long end = 0;
+		HashMap<Truck, Long> finish = new HashMap<Truck, Long>();
+		for (int i = 0; i < n; i++) {
+			end = Math.max(end, clock[i]);
+			finish.put(trucks.get(i), clock[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			score += (int)((end - busy[i]) * waitCost);
+		}
+		return new Result(score, end, end * game.getFrame(), delivered, finish);
+	}
+
+	/** Return the hypothetical set of parcels lying on node n, copying the game's
+	 * the first time n is touched. */
+	private static Set<Parcel> parcelsAt(Node n, IdentityHashMap<Node, Set<Parcel>> nodeParcels) {
+		Set<Parcel> s = nodeParcels.get(n);
+		if (s == null) {
+			Set<Parcel> live = n.getTrueParcels();
+			synchronized(live) {
+				s = new HashSet<Parcel>(live);
+			}
+			nodeParcels.put(n, s);
+		}
+		return s;
+	}
+}
@@ -0,0 +1,92 @@
+package game;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/** A Snapshot is the mutable state of a game at one moment: where each truck is,
+ * what it is doing and what it carries, where each parcel is, the score and the
+ * game's (virtual) time. Game.snapshot() takes one and Game.restore(Snapshot)
+ * puts the game back in that state, so a game can be branched: run it to some
+ * point, take a snapshot, try something, and restore the snapshot to try
+ * something else.
+ * <br><br>
+ * Snapshots are copy-on-write: a snapshot holds only the states of the trucks
+ * and parcels that changed since the previous snapshot of the same game (its
+ * parent), and finds the others in its ancestors. Taking a snapshot is therefore
+ * O(state changed since the previous one), not O(board). Every MAX_DEPTH
+ * snapshots, and for a game's first snapshot, every state is captured, which
+ * keeps the chains that a lookup walks short.
+ */
+public final class Snapshot {
+
+	/** Largest number of ancestors a snapshot has before a snapshot of the
+	 * same game captures every state again. */
+	static final int MAX_DEPTH = 32;
+
+	/** The game this is a snapshot of. */
+	final Game game;
+
+	private final Snapshot parent;	//The previous snapshot of game (null if every state is here)
+	private final int depth;		//Number of ancestors of this snapshot
+
+	/** The virtual time of the game (see Game.getTime()) when this snapshot was taken. */
+	public final long time;
+
+	/** The score of the game when this snapshot was taken. */
+	public final int score;
+
+	private final Map<Truck, Truck.State> trucks;	//States of trucks changed since parent
+	private final Map<Parcel, Parcel.State> parcels;	//States of parcels changed since parent
+
+	/** Constructor: a snapshot of game g at virtual time time with score score,
+	 * where trucks and parcels hold the states that changed since parent
+	 * (every state if parent is null). */
+	Snapshot(Game g, Snapshot parent, long time, int score,
+			Map<Truck, Truck.State> trucks, Map<Parcel, Parcel.State> parcels) {
+		game = g;
+		this.parent = parent;
+		depth = parent == null ? 0 : parent.depth + 1;
+		this.time = time;
+		this.score = score;
+		this.trucks = trucks;
+		this.parcels = parcels;
+	}
+
+	/** Return true iff the next snapshot of the game should capture every state
+	 * rather than only the states changed since this one. */
+	boolean isChainFull() {
+		return depth >= MAX_DEPTH;
+	}
+
+	/** Return the state of truck t in this snapshot. */
+	Truck.State stateOf(Truck t) {
+		for (Snapshot s = this; s != null; s = s.parent) {
+			Truck.State st = s.trucks.get(t);
+			if (st != null)
+				return st;
+		}
+		throw new IllegalArgumentException("Truck " + t + " is not in this snapshot's game");
+	}
+
+	/** Return the state of parcel p in this snapshot. A parcel whose state was
+	 * never captured had been delivered before the first snapshot of the chain. */
+	Parcel.State stateOf(Parcel p) {
+		for (Snapshot s = this; s != null; s = s.parent) {
+			Parcel.State st = s.parcels.get(p);
+			if (st != null)
+				return st;
+		}
+		return Parcel.State.DELIVERED;
+	}
+
+	/** Return the parcels whose states were captured by the snapshot at the root
+	 * of this snapshot's chain: every parcel not delivered when it was taken. */
+	Set<Parcel> rootParcels() {
+		Snapshot s = this;
+		while (s.parent != null) {
+			s = s.parent;
+		}
+		return Collections.unmodifiableSet(s.parcels.keySet());
+	}
+}
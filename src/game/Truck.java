@@ -72,7 +72,10 @@ public final class Truck implements BoardElement, Runnable {
     private Status status;			//This truck's status, either waiting or traveling
     private boolean waitingForManager;	//True iff this is waiting for manager input
 
-    private long lastTravelTime;    //System time (ms) when this truck last finished travel
+    private long lastTravelTime;    //Game time (ms) when this truck last finished travel
+    private volatile int travelProgress; //Length of travelingAlong traveled so far (if traveling)
+    private boolean resumed;        //True iff this truck's state was restored from a Snapshot
+    // and its run loop has not picked it up yet
 
     private int speed; //The number of units this moves per frame when traveling.
     //Must be between min and max
@@ -85,11 +88,15 @@ public final class Truck implements BoardElement, Runnable {
 
     private Object userData;
 
+    private volatile TruckPlan plan; //The plan this truck is following (null if none)
+
     /** The game to which this truck belongs. */
     public final Game game;
 
     private Thread thread;	//The thread this truck is running in. Should have TRUCK in its name
 
+    private volatile RenderSnapshot.TruckState renderState; //Where this is, as last published
+
     /** Constructor: An instance with name name running in game g starting on
      *  node start with a random color and speed EFFICIENT_SPEED.
      * @param g - the Game this Truck belongs to.
@@ -123,6 +130,125 @@ public final class Truck implements BoardElement, Runnable {
         color = c;
         circle = new Circle(this, 0, 0, (int)((double)Circle.DEFAULT_DIAMETER * 0.8), c, false);
         alive = false;
+        renderState = new RenderSnapshot.TruckState(this, start, null);
+    }
+
+    /** The state of a truck, as captured by a Snapshot. */
+    static final class State {
+        private final Node location;
+        private final Status status;
+        private final Node travelingTo;
+        private final Edge travelingAlong;
+        private final Node goingTo;
+        private final Edge[] travel;
+        private final Parcel load;
+        private final int speed;
+        private final int travelProgress;
+        private final long lastTravelTime;
+        private final boolean finished;
+        private final TruckPlan plan;
+        private final int planProgress;
+
+        /** Constructor: the current state of truck t. */
+        private State(Truck t) {
+            location = t.location;
+            status = t.status;
+            travelingTo = t.travelingTo;
+            travelingAlong = t.travelingAlong;
+            goingTo = t.goingTo;
+            synchronized(t.travel) {
+                travel = t.travel.toArray(new Edge[t.travel.size()]);
+            }
+            load = t.load;
+            speed = t.speed;
+            travelProgress = t.travelProgress;
+            lastTravelTime = t.lastTravelTime;
+            finished = t.getBoard().isTruckFinished(t);
+            plan = t.plan;
+            planProgress = plan == null ? 0 : plan.getProgress();
+        }
+    }
+
+    /** Return the current state of this truck, for a Snapshot.
+     * Call only while this truck's thread is not running or is paused. */
+    State captureState() {
+        return new State(this);
+    }
+
+    /** Put this truck back in state s, taken by captureState(). Its thread (if any)
+     * must have ended: when one is started again, it carries on from state s.
+     * Parcels and stats are restored by the game. */
+    void restoreState(State s) {
+        Node oldLocation = location;
+        if (status == Status.TRAVELING)
+            travelingAlong.setTruckHere(this, false);
+        else
+            location.setTruckHere(this, false);
+
+        location = s.location;
+        status = s.status;
+        travelingTo = s.travelingTo;
+        travelingAlong = s.travelingAlong;
+        goingTo = s.goingTo;
+        travel.clear();
+        travel.addAll(Arrays.asList(s.travel));
+        load = s.load;
+        speed = s.speed;
+        travelProgress = s.travelProgress;
+        lastTravelTime = s.lastTravelTime;
+        waitingForManager = false;
+        plan = s.plan;
+        if (plan != null) {
+            plan.setProgress(s.planProgress);
+            plan.fail(null);
+        }
+        alive = false;
+        resumed = true;
+        getBoard().setTruckFinished(this, s.finished);
+
+        if (status == Status.TRAVELING) {
+            travelingAlong.setTruckHere(this, true);
+            publishRenderState(new RenderSnapshot.TruckState(this, location, travelingTo,
+                    travelingAlong, (double)travelProgress / travelingAlong.length, load));
+        } else {
+            location.setTruckHere(this, true);
+            publishRenderState(new RenderSnapshot.TruckState(this, location, load));
+        }
+        oldLocation.getCircle().updateColor();
+        location.getCircle().updateColor();
+    }
+
+    /** Return true iff this truck runs in thread th. */
+    boolean isThread(Thread th) {
+        return thread == th;
+    }
+
+    /** Return true iff this truck's thread has been started and has not ended. */
+    boolean isThreadAlive() {
+        Thread th = thread;
+        return th != null && th.isAlive();
+    }
+
+    /** Interrupt this truck's thread, if it is running, and wait for it to end. */
+    void stopThread() throws InterruptedException {
+        Thread th = thread;
+        if (th != null && th.isAlive()) {
+            th.interrupt();
+            th.join();
+        }
+    }
+
+    /** Return this truck's state as last published for RenderSnapshots. */
+    RenderSnapshot.TruckState getRenderState() {
+        return renderState;
+    }
+
+    /** Publish s as this truck's state for RenderSnapshots. Called by this truck's
+     * thread (or, in a replayed game, by the ReplayPlayer) whenever it moves or its
+     * load changes; never blocks. */
+    void publishRenderState(RenderSnapshot.TruckState s) {
+        renderState = s;
+        if (game != null) game.renderChanged();
     }
 
     /** The Truck's main running routine. While the travel directions are empty,
@@ -131,42 +257,49 @@ public final class Truck implements BoardElement, Runnable {
      * 
      * Called and on loop until the game ends. Terminates itself when there are
      * no more parcels and this truck is at the Truck Depot. Once that occurs,
-     * doesn't take any more instructions.
+     * doesn't take any more instructions. While this truck has a plan, it follows
+     * the plan instead of notifying the manager that it is waiting.
      * Students: don't call this procedure!
      */
     @Override
     public void run() {
         try {
-            lastTravelTime = System.currentTimeMillis();
             alive = true;
+            if (resumed) {
+                //Pick up where the restored snapshot left off
+                resumed = false;
+                if (status == Status.TRAVELING) {
+                    continueTravel(travelingAlong, travelingAlong.getOther(travelingTo));
+                    fixLastTravelTime();
+                    travelQueue();
+                }
+            } else {
+                lastTravelTime = game.getTime();
+            }
             while (alive) {
-                locLock.acquire();
+                acquire(locLock);
                 if (getBoard().getParcels().isEmpty() && location.equals(getBoard().getTruckDepot())) {
                     locLock.release();
-                    getBoard().addTruckToFinished(this);
-                    //Deduct final waiting points
+                    changed();
+                    //Deduct final waiting points before finishing, since the
+                    //last truck to finish ends the game and closes its replay log
                     fixLastTravelTime();
+                    getBoard().addTruckToFinished(this);
                     alive = false;
                     return;
                 }
                 locLock.release();
 
-                Thread.sleep(game.getFrame());
-                preManagerNotification();
-                game.getManager().truckNotification(this, Manager.Notification.WAITING);
-                postManagerNotification();
+                game.awaitFrame();
+                if (plan == null) notifyManager(Manager.Notification.WAITING);
 
                 setGoingTo(null);
                 fixLastTravelTime();
-
-                while (!travel.isEmpty() && game.isRunning()) {
-                    try {
-                        Edge r = getTravel();
-                        travel(r);
-                    } catch (IllegalArgumentException e) {
-                        clearTravel(); //If traveling isn't valid, clear the queue
-                    }
-                    fixLastTravelTime();
+                travelQueue();
+                while (plan != null && game.isRunning()) {
+                    setGoingTo(null);
+                    followPlan();
+                    travelQueue();
                 }
             }
         }
@@ -177,24 +310,171 @@ public final class Truck implements BoardElement, Runnable {
         }
     }
 
+    /** Travel along the edges of the travel queue until it is empty or the game stops. */
+    private void travelQueue() throws InterruptedException {
+        while (!travel.isEmpty() && game.isRunning()) {
+            try {
+                Edge r = getTravel();
+                travel(r);
+            } catch (IllegalArgumentException e) {
+                clearTravel(); //If traveling isn't valid, clear the queue
+            }
+            fixLastTravelTime();
+        }
+    }
+
+    /** Carry out plan from its next step: do the steps that need no travel first,
+     * and queue the travel up to the next step that must wait for it. When every
+     * step is done, or one can't be, stop following plan and notify the manager
+     * (PLAN_COMPLETED or PLAN_FAILED). Call only while the travel queue is empty. */
+    private void followPlan() throws InterruptedException {
+        TruckPlan p = plan;
+        int i = p.getProgress();
+        Node at = location;
+        for (; i < p.size(); i++) {
+            Object target = p.target(i);
+            switch (p.kind(i)) {
+            case TruckPlan.TRAVEL:
+                Edge e = (Edge)target;
+                if (e == null || !e.isExit(at)) {
+                    failPlan(p, i, "can't travel " + e + " from " + at);
+                    return;
+                }
+                addToTravel(e);
+                at = e.getOther(at);
+                break;
+            case TruckPlan.GO_TO:
+                Route route = TruckPlan.route(at, (Node)target);
+                if (route == null) {
+                    failPlan(p, i, "no path from " + at + " to " + target);
+                    return;
+                }
+                queueRoute(route);
+                at = (Node)target;
+                break;
+            default:
+                if (!travel.isEmpty()) {
+                    p.setProgress(i);
+                    return;
+                }
+                String failure = doStep(p, i);
+                if (failure != null) {
+                    failPlan(p, i, failure);
+                    return;
+                }
+            }
+        }
+        p.setProgress(i);
+        if (!travel.isEmpty()) return;
+
+        if (plan == p) plan = null;
+        changed();
+        notifyManager(Manager.Notification.PLAN_COMPLETED);
+    }
+
+    /** Do step i of plan p, a pickup, dropoff or speed change, here and now.
+     * Return why it can't be done (null if it was done). */
+    private String doStep(TruckPlan p, int i) {
+        switch (p.kind(i)) {
+        case TruckPlan.PICKUP:
+            Parcel q = (Parcel)p.target(i);
+            if (load != null)
+                return "already holding " + load;
+            if (!location.getTrueParcels().contains(q))
+                return q + " is not at " + location;
+            pickupLoad(q);
+            return load == q ? null : "couldn't pick up " + q;
+        case TruckPlan.DROPOFF:
+            if (load == null)
+                return "no parcel to drop off";
+            dropoffLoad();
+            return load == null ? null : "couldn't drop off " + load;
+        default:
+            setSpeed(p.value(i));
+            return null;
+        }
+    }
+
+    /** Stop following plan p, whose step i failed because of reason: clear the
+     * travel queue and notify the manager (PLAN_FAILED). */
+    private void failPlan(TruckPlan p, int i, String reason) throws InterruptedException {
+        p.setProgress(i);
+        p.fail(reason);
+        clearTravel();
+        if (plan == p) plan = null;
+        notifyManager(Manager.Notification.PLAN_FAILED);
+    }
+
+    /** Notify the manager of message n: wait for it to handle n or, if the game
+     * has a NotificationQueue, queue n for it. */
+    private void notifyManager(Manager.Notification n) throws InterruptedException {
+        NotificationQueue q = game.getNotificationQueue();
+        if (q != null) {
+            game.getCancellation().check();
+            q.offer(this, n);
+            return;
+        }
+        preManagerNotification();
+        game.notifyManager(this, n);
+        postManagerNotification();
+    }
+
+    /** Return true iff this truck is traveling or has travel directions. */
+    boolean hasDirections() {
+        return status == Status.TRAVELING || !travel.isEmpty();
+    }
+
+    /** Acquire lock s. If another thread holds it, record in the game's metrics
+     * how long this thread waited for it. */
+    private void acquire(Semaphore s) throws InterruptedException {
+        if (s.tryAcquire()) return;
+        long start = System.nanoTime();
+        s.acquire();
+        if (game != null) game.getMetrics().lockWaited(System.nanoTime() - start);
+    }
+
     /** Set this as waiting for manager input. Must be called before any manager
      * notification. */
-    private void preManagerNotification() {
+    private void preManagerNotification() throws InterruptedException {
+        game.getCancellation().check();
+        int old = statsState();
         waitingForManager= true;
+        getBoard().truckMoved(this, old, statsState());
     }
 
     /** Set this as finishing receiving manager input. Must be called after any
      * manager notification. */
-    private void postManagerNotification() {
+    private void postManagerNotification() throws InterruptedException {
+        int old = statsState();
         waitingForManager = false;
+        getBoard().truckMoved(this, old, statsState());
+        game.getCancellation().check();
+    }
+
+    /** Return the GameStats state of this truck (one of the GameStats.TRUCK_ constants).
+     * Only this truck's thread changes that state, so it is read without locking. */
+    private int statsState() {
+        if (waitingForManager)
+            return GameStats.TRUCK_WAITING_FOR_MANAGER;
+        if (status == Status.WAITING)
+            return GameStats.TRUCK_WAITING;
+        return GameStats.TRUCK_TRAVELING;
     }
 
     /** Update the waitTime to now and deduct correct number of points for doing this. */
     private void fixLastTravelTime() {
-        long now = System.currentTimeMillis();
+        long now = game.getTime();
         long diff = now - lastTravelTime;
         getManager().getScoreObject().changeScore(getBoard().getWaitCost() * (int)(diff / game.getFrame()));
+        game.getMetrics().truckIdled(diff / game.getFrame());
         lastTravelTime = now;
+        changed();
+    }
+
+    /** Tell the game that this truck's state changed, so that its next Snapshot
+     * captures it. */
+    private void changed() {
+        if (game != null) game.stateChanged(this);
     }
 
     /** Return the manager that is managing this truck. */
@@ -240,7 +520,7 @@ public final class Truck implements BoardElement, Runnable {
 
         Node n;
         try {
-            locLock.acquire();
+            acquire(locLock);
             n = location;
             locLock.release();
         } catch (InterruptedException e) {
@@ -254,12 +534,11 @@ public final class Truck implements BoardElement, Runnable {
      * @throws InterruptedException */
     private void setLocation(Node l) throws InterruptedException{
         if (!l.equals(location)) {
-            locLock.acquire();
+            acquire(locLock);
             location = l;
             locLock.release();
-            preManagerNotification();
-            game.getManager().truckNotification(this, Manager.Notification.LOCATION_CHANGED);
-            postManagerNotification();
+            changed();
+            if (plan == null) notifyManager(Manager.Notification.LOCATION_CHANGED);
         }
     }
 
@@ -270,7 +549,7 @@ public final class Truck implements BoardElement, Runnable {
             return null;
 
         try {
-            locLock.acquire();
+            acquire(locLock);
         } catch (InterruptedException e) {
             return null;
         }
@@ -285,9 +564,10 @@ public final class Truck implements BoardElement, Runnable {
      * @throws InterruptedException */
     private void setTravelingTo(Node t) throws InterruptedException {
         if (travelingTo == null || !travelingTo.equals(t)) {
-            locLock.acquire();
+            acquire(locLock);
             travelingTo = t;
             locLock.release();
+            changed();
         }
     }
 
@@ -295,7 +575,7 @@ public final class Truck implements BoardElement, Runnable {
      * status.equals(Status.WAITING) or if the calling thread is interrupted.) */
     public Edge getTravelingAlong() {
         try {
-            locLock.acquire();
+            acquire(locLock);
         } catch (InterruptedException e1) {
             return null;
         }
@@ -304,6 +584,12 @@ public final class Truck implements BoardElement, Runnable {
         return e;
     }
 
+    /** Return the length of the edge this Truck is traveling along that it has
+     * traveled so far (0 if it is not traveling). */
+    int getTravelProgress() {
+        return status.equals(Status.WAITING) ? 0 : travelProgress;
+    }
+
     /** Return the node this truck is coming from, the rear exit of the edge it
      * is currently on. (Return null if
      * status.equals(Status.WAITING) or if the calling thread is interrupted.)
@@ -313,7 +599,7 @@ public final class Truck implements BoardElement, Runnable {
             return null;
 
         try {
-            locLock.acquire();
+            acquire(locLock);
         } catch (InterruptedException e) {
             return null;
         }
@@ -332,7 +618,7 @@ public final class Truck implements BoardElement, Runnable {
             return null;
 
         try {
-            locLock.acquire();
+            acquire(locLock);
         } catch (InterruptedException e) {
             return null;
         }
@@ -348,12 +634,13 @@ public final class Truck implements BoardElement, Runnable {
     private void setGoingTo(Node g) {
         if ((goingTo == null && g != null) || (goingTo != null && !goingTo.equals(g))) {
             try {
-                locLock.acquire();
+                acquire(locLock);
             } catch (InterruptedException e) {
                 return;
             }
             goingTo = g;
             locLock.release();
+            changed();
         }
     }
 
@@ -361,7 +648,7 @@ public final class Truck implements BoardElement, Runnable {
      * Return null if the thread is interrupted. */
     public Truck.Status getStatus() {
         try {
-            statusLock.acquire();
+            acquire(statusLock);
         } catch (InterruptedException e) {
             return null;
         }
@@ -375,9 +662,12 @@ public final class Truck implements BoardElement, Runnable {
      * @throws InterruptedException */
     private void setStatus(Truck.Status s) throws InterruptedException {
         if (!status.equals(s)){
-            statusLock.acquire();
+            int old = statsState();
+            acquire(statusLock);
             status = s;
             statusLock.release();
+            changed();
+            getBoard().truckMoved(this, old, statsState());
         }
     }
 
@@ -392,7 +682,7 @@ public final class Truck implements BoardElement, Runnable {
      * Return null if the calling thread is interrupted */
     public Parcel getLoad() {
     	try{
-    		parcelLock.acquire();
+    		acquire(parcelLock);
     	}catch(InterruptedException e){
     		return null;
     	}
@@ -430,7 +720,7 @@ public final class Truck implements BoardElement, Runnable {
      * Return -1 if the calling thread is interrupted */
     public int getSpeed() {
         try {
-            speedLock.acquire();
+            acquire(speedLock);
         } catch (InterruptedException e) {
             return -1;
         }
@@ -443,12 +733,13 @@ public final class Truck implements BoardElement, Runnable {
      * Does not change the speed if the calling thread is interrupted */
     public void setSpeed(int newSpeed) {
         try {
-            speedLock.acquire();
+            acquire(speedLock);
         } catch (InterruptedException e) {
             return;
         }
         speed = newSpeed;
         speedLock.release();
+        changed();
     }
 
     /** Return the userData stored in this Node. May be null if the user has not
@@ -482,7 +773,7 @@ public final class Truck implements BoardElement, Runnable {
 
         if (location.getTrueParcels().contains(p)) {
             try {
-                parcelLock.acquire();
+                acquire(parcelLock);
             } catch (InterruptedException e) {
                 parcelLock.release();
                 return;
@@ -499,6 +790,8 @@ public final class Truck implements BoardElement, Runnable {
                 return;
             }
             parcelLock.release();
+            changed();
+            publishRenderState(new RenderSnapshot.TruckState(this, location, p));
 
             getManager().getScoreObject().changeScore(getBoard().getPickupCost());
         }
@@ -514,7 +807,7 @@ public final class Truck implements BoardElement, Runnable {
             throw new RuntimeException("Can't Drop Off a null parcel. No Parcel to drop off.");
 
         try {
-            parcelLock.acquire();
+            acquire(parcelLock);
         } catch (InterruptedException e) {
             return;
         }
@@ -528,6 +821,8 @@ public final class Truck implements BoardElement, Runnable {
             return;
         }
         load = null;
+        changed();
+        publishRenderState(new RenderSnapshot.TruckState(this, location, null));
         getManager().getScoreObject().changeScore(getBoard().getDropoffCost());
 
     }
@@ -545,6 +840,7 @@ public final class Truck implements BoardElement, Runnable {
         else
             setGoingTo(r.getOther(goingTo));
         travel.add(r);
+        changed();
     }
 
     /** Clear the Travel queue, then 
@@ -569,18 +865,65 @@ public final class Truck implements BoardElement, Runnable {
                     " because " + this + " is currently at " + getLocation());
         clearTravel();
         Node prev = null;
+        long length = 0;
         for (Node n : path){
             if (prev != null){
-                addToTravel(prev.getConnect(n));
+                Edge e = prev.getConnect(n);
+                addToTravel(e);
+                length += e.length;
             }
             prev = n;
         }
+        game.getMetrics().pathGiven(length);
+    }
+
+    /** Clear the travel queue, then set it to travel route r, which starts at the
+     * truck's current location (or, if it is traveling, at the node it is
+     * traveling to). Costs O(r.size()), with no per-edge lookups or locking.
+     * @throws RuntimeException if r doesn't start where the truck is.
+     */
+    public void setTravelRoute(Route r) throws RuntimeException {
+        if (status == Status.WAITING && r.getStart() != getLocation()
+        	|| status == Status.TRAVELING && r.getStart() != getTravelingTo())
+            throw new RuntimeException("Can't start travel at " + r.getStart() +
+                    " because " + this + " is currently at " + getLocation());
+        clearTravel();
+        queueRoute(r);
+        game.getMetrics().pathGiven(r.getLength());
+    }
+
+    /** Append the edges of route r, which starts where the travel queue ends, to
+     * the travel queue at once. */
+    private void queueRoute(Route r) {
+        if (r.size() == 0) return;
+        travel.addAll(r.getEdges());
+        setGoingTo(r.getEnd());
+        changed();
+    }
+
+    /** Follow plan p from now on instead of waiting for instructions: clear the
+     * travel queue (a traveling truck first finishes the edge it is on) and carry
+     * out p's steps, notifying the manager only when p is completed or fails.
+     * Replaces any plan this truck was following. If p is null, just stop
+     * following the current plan, if any, and clear the travel queue.
+     * @throws IllegalStateException - if p was already given to a truck. */
+    public void setPlan(TruckPlan p) {
+        if (p != null) p.assign(this);
+        clearTravel();
+        plan = p;
+        changed();
+    }
+
+    /** Return the plan this truck is following (null if none). */
+    public TruckPlan getPlan() {
+        return plan;
     }
 
     /** Pop the front road r of this Truck's travel plans, in a fashion that
      * prevents thread collision.
      * Return null if the calling thread is interrupted. */
     private Edge getTravel(){
+        changed();
         return travel.remove(0);
     }
 
@@ -591,6 +934,7 @@ public final class Truck implements BoardElement, Runnable {
     public void clearTravel() {
         setGoingTo(travelingTo);
         travel.clear();
+        changed();
     }
 
     /** Make the Truck travel along edge r.
@@ -611,65 +955,77 @@ public final class Truck implements BoardElement, Runnable {
 
             setTravelingTo(r.getOther(location));
             travelingAlong = r;
+            travelProgress = 0;
 
             location.setTruckHere(this, false);
             travelingAlong.setTruckHere(this, true);
 
             location.getCircle().updateColor();
-            travelingAlong.getLine().updateToColorPolicy();
-
-            Circle here = location.getCircle();
-            Circle there = r.getOther(location).getCircle();
-
-            int progress = 0;
-            long startTravelTime = System.currentTimeMillis();
-            while (progress < r.length) {
-                Thread.sleep(getBoard().game.getFrame());
-
-                //Get the speed lock, begin speed and cost computations
-                speedLock.acquire();
-                //If we can go the full speed's units, do that
-                int remaining = r.length - progress;
-                if(remaining >= speed){
-                    progress += speed;
-                    getManager().getScoreObject().changeScore(Score.cost(speed));
-                }
-                //Otherwise, go the remaining fraction, only deduct a correct percent of those points.
-                else{
-                    progress += remaining;
-                    getManager().getScoreObject().changeScore(Score.cost(speed) * remaining / speed);
-                }
-                speedLock.release();
-                double percent = (double)progress / (double)r.length;
 
-                //Update Truck's location on the GUI
-                updateGUILocation( (int) (percent * there.getX1() + (1-percent) * here.getX1()), 
-                        (int) (percent * there.getY1() + (1-percent) * here.getY1()));
+            publishRenderState(new RenderSnapshot.TruckState(this, location, travelingTo, r, 0, load));
+            ReplayRecorder recorder = game.getRecorder();
+            if (recorder != null) recorder.traveling(this, r, travelingTo);
+
+            continueTravel(r, location);
+        }
+    }
+
+    /** Travel the rest of edge r, which this Truck is traveling along from node from,
+     * travelProgress of the way already traveled: move along it one frame at a time,
+     * then arrive at its other exit.
+     * @throws InterruptedException for when the Truck thread sleeps. */
+    private void continueTravel(Edge r, Node from) throws InterruptedException {
+        Parcel carried = load;
+        long startTravelTime = game.getTime();
+        while (travelProgress < r.length) {
+            game.awaitFrame();
+
+            //Get the speed lock, begin speed and cost computations
+            acquire(speedLock);
+            //If we can go the full speed's units, do that
+            int remaining = r.length - travelProgress;
+            if(remaining >= speed){
+                travelProgress += speed;
+                getManager().getScoreObject().changeScore(Score.cost(speed));
+            }
+            //Otherwise, go the remaining fraction, only deduct a correct percent of those points.
+            else{
+                travelProgress += remaining;
+                getManager().getScoreObject().changeScore(Score.cost(speed) * remaining / speed);
             }
-            long finishTravelTime = System.currentTimeMillis();
-            lastTravelTime += (finishTravelTime - startTravelTime); //Discount the time spent traveling
+            speedLock.release();
+            changed();
+            game.progressed();
+            double percent = (double)travelProgress / (double)r.length;
+
+            //Publish Truck's new position for the GUI
+            publishRenderState(new RenderSnapshot.TruckState(this, from, travelingTo, r,
+                    percent, carried));
+        }
+        long finishTravelTime = game.getTime();
+        lastTravelTime += (finishTravelTime - startTravelTime); //Discount the time spent traveling
 
-            //Done with this travel
-            setStatus(Status.WAITING);
+        //Done with this travel
+        setStatus(Status.WAITING);
+        ReplayRecorder recorder = game.getRecorder();
+        if (recorder != null) recorder.arrived(this);
 
-            setLocation(travelingTo);
+        setLocation(travelingTo);
 
-            updateGUILocation(location.getCircle().getX1(), location.getCircle().getY1());
-            travelingAlong.setTruckHere(this, false);
-            location.setTruckHere(this, true);
+        publishRenderState(new RenderSnapshot.TruckState(this, location, carried));
+        travelingAlong.setTruckHere(this, false);
+        location.setTruckHere(this, true);
 
-            location.getCircle().updateColor();
-            travelingAlong.getLine().updateToColorPolicy();
+        location.getCircle().updateColor();
 
-            if (location.getParcels().size() > 0) {
-                preManagerNotification();
-                game.getManager().truckNotification(this, Manager.Notification.PARCEL_AT_NODE);
-                postManagerNotification();
-            }
+        if (plan == null && location.getParcels().size() > 0) {
+            notifyManager(Manager.Notification.PARCEL_AT_NODE);
         }
     }
 
     /** Update the circle graphic that represents this truck on the GUI.
+     * Called on the gui's thread (e.g. while a node is dragged); the gui's board
+     * canvas positions trucks from RenderSnapshots, not from this truck's thread.
      * Do nothing if threads is null.
      * Also update the location of the load, if this truck is carrying one.
      * @param x - the new X location of this Truck in the GUI
@@ -680,7 +1036,6 @@ public final class Truck implements BoardElement, Runnable {
         if (game.getGUI() != null) {
             circle.setX1(x);
             circle.setY1(y);
-            circle.repaint();
             if (load != null) {
                 load.updateGUILocation(x, y);
             }
@@ -731,10 +1086,10 @@ public final class Truck implements BoardElement, Runnable {
         if (thread != null) thread.interrupt(); 
         alive = false;
     }
-    
-    @SuppressWarnings("deprecation")
-	protected void forceQuit(){
-    	thread.stop();
+
+    /** Return the thread this truck runs in (null if it was never started). */
+    Thread getThread() {
+        return thread;
     }
 
     /** Return a JSON String of this truck. This is just the basic truck
@@ -0,0 +1,177 @@
+package game;
+
+import java.util.*;
+
+/** A TruckPlan is a script for one truck: a sequence of steps (travel, pickups,
+ * dropoffs, speed changes) that the truck carries out by itself once given it
+ * with Truck.setPlan. Travel steps are queued as the truck gets to them and the
+ * other steps are done as soon as the travel before them is done, in the truck's
+ * own thread, so the truck never waits a frame for its manager to tell it what
+ * it could have known in advance.
+ * <br><br>
+ * While a truck follows a plan its manager gets no WAITING, LOCATION_CHANGED or
+ * PARCEL_AT_NODE notifications: only PLAN_COMPLETED when every step is done, or
+ * PLAN_FAILED when a step can't be done (the parcel to pick up isn't there, the
+ * truck already has a load, a travel step doesn't start where the truck is,
+ * ...). The plan then tells which step failed and why (getProgress, getFailure).
+ * A plan is built like a Simulator.Plan:
+ * <pre>
+ *     t.setPlan(new TruckPlan().goTo(p.start).pickup(p)
+ *             .goTo(p.destination).dropoff().goTo(depot));
+ * </pre>
+ * Steps must all be added before the plan is given to a truck, and a plan can be
+ * given to only one truck, once.
+ */
+public final class TruckPlan {
+	static final int TRAVEL = 0;
+	static final int GO_TO = 1;
+	static final int PICKUP = 2;
+	static final int DROPOFF = 3;
+	static final int SPEED = 4;
+
+	private int[] kinds = new int[8];		//Kind of step i
+	private Object[] targets = new Object[8];	//Edge traveled, node gone to or parcel picked up by step i
+	private int[] values = new int[8];		//Speed of step i
+	private int size;
+
+	private Truck truck;				//The truck given this plan (null if none yet)
+	private volatile int progress;		//Number of steps done
+	private volatile String failure;	//Why step progress failed (null if none did)
+
+	/** Constructor: an empty plan. */
+	public TruckPlan() {
+	}
+
+	/** Append a step of kind kind with target target and value value.
+	 * Return this plan. */
+	private TruckPlan add(int kind, Object target, int value) {
+		if (truck != null)
+			throw new IllegalStateException("Can't change a plan already given to " + truck);
+		if (size == kinds.length) {
+			kinds = Arrays.copyOf(kinds, size * 2);
+			targets = Arrays.copyOf(targets, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		kinds[size] = kind;
+		targets[size] = target;
+		values[size] = value;
+		size++;
+		return this;
+	}
+
+	/** Append traveling along edge e to this plan. Return this plan. */
+	public TruckPlan travel(Edge e) {
+		return add(TRAVEL, e, 0);
+	}
+
+	/** Append traveling along path (a list of adjacent nodes, the first being
+	 * where the truck will be when it starts traveling it) to this plan.
+	 * Return this plan. */
+	public TruckPlan travel(List<Node> path) {
+		Node prev = null;
+		for (Node n : path) {
+			if (prev != null) travel(prev.getConnect(n));
+			prev = n;
+		}
+		return this;
+	}
+
+	/** Append traveling to node n, along a shortest path from wherever the
+	 * truck is when it gets to this step, to this plan. Return this plan. */
+	public TruckPlan goTo(Node n) {
+		return add(GO_TO, n, 0);
+	}
+
+	/** Append picking up parcel p to this plan. Return this plan. */
+	public TruckPlan pickup(Parcel p) {
+		return add(PICKUP, p, 0);
+	}
+
+	/** Append dropping off the truck's load to this plan. Return this plan. */
+	public TruckPlan dropoff() {
+		return add(DROPOFF, null, 0);
+	}
+
+	/** Append changing the truck's speed to s to this plan. Return this plan.
+	 * @throws IllegalArgumentException - if s is not a valid truck speed. */
+	public TruckPlan speed(int s) {
+		if (s < Truck.MIN_SPEED || s > Truck.MAX_SPEED)
+			throw new IllegalArgumentException("Illegal truck speed " + s);
+		return add(SPEED, null, s);
+	}
+
+	/** Return the number of steps in this plan. */
+	public int size() {
+		return size;
+	}
+
+	/** Return the number of steps of this plan the truck has done. A travel step
+	 * counts as done once its edges are in the truck's travel queue. */
+	public int getProgress() {
+		return progress;
+	}
+
+	/** Return true iff every step of this plan has been done. */
+	public boolean isCompleted() {
+		return progress == size && failure == null;
+	}
+
+	/** Return why step getProgress() of this plan failed (null if none did). */
+	public String getFailure() {
+		return failure;
+	}
+
+	/** Return the truck this plan was given to (null if none yet). */
+	public Truck getTruck() {
+		return truck;
+	}
+
+	/** Give this plan to truck t.
+	 * @throws IllegalStateException - if it was already given to a truck. */
+	synchronized void assign(Truck t) {
+		if (truck != null)
+			throw new IllegalStateException("Plan already given to " + truck);
+		truck = t;
+	}
+
+	/** Return the kind of step i. */
+	int kind(int i) {
+		return kinds[i];
+	}
+
+	/** Return the target of step i. */
+	Object target(int i) {
+		return targets[i];
+	}
+
+	/** Return the value of step i. */
+	int value(int i) {
+		return values[i];
+	}
+
+	/** Record that the first p steps are done. */
+	void setProgress(int p) {
+		progress = p;
+	}
+
+	/** Record that step progress failed, because of reason. */
+	void fail(String reason) {
+		failure = reason;
+	}
+
+	/** Return a shortest route from node from to node to, or null if there is
+	 * none. */
+	static Route route(Node from, Node to) {
+		BoardTopology t = from.getBoard().getTopology();
+		ContractionHierarchy h = ContractionHierarchy.ifBuiltOrPrepare(t);
+		if (h != null) return h.route(from, to);
+		return LandmarkRouter.of(t).route(from, to);
+	}
+
+	/** Return a String representation of this plan. */
+	@Override
+	public String toString() {
+		return "TruckPlan of " + size + " steps, " + progress + " done" +
+				(failure == null ? "" : ", failed: " + failure);
+	}
+}
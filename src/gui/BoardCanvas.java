@@ -0,0 +1,161 @@
+package gui;
+
+import game.*;
+
+import java.awt.*;
+import java.awt.event.*;
+
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+/** The surface on which a GUI draws its board. Instead of one Swing component per
+ * Node, Edge, Truck and Parcel, the whole board is painted by this one panel in a
+ * single paintComponent pass, which a Swing Timer triggers at a fixed rate
+ * (FRAME_TIME). Game threads never touch the gui: each paint draws the game's
+ * latest RenderSnapshot, placing trucks and parcels from it on the EDT.
+ * <br><br>
+ * Elements are painted back to front as they were stacked when they were separate
+ * components: trucks, then edges (colored by Line's color policy), then parcels,
+ * then nodes on top. Nodes can be dragged with the mouse.
+ */
+public class BoardCanvas extends JPanel {
+
+	private static final long serialVersionUID = 4166046386215916371L;
+
+	/** Time between two repaints of the board, in ms (40 frames per second). */
+	public static final int FRAME_TIME = 25;
+
+	private Game game;					//The game whose board is drawn. null if none
+	private final Timer timer;			//Repaints this canvas every FRAME_TIME ms
+	private DraggableCircle dragged;	//The circle being dragged. null if none
+
+	/** Constructor: an empty canvas. Its timer is not started. */
+	public BoardCanvas() {
+		setLayout(null);
+
+		timer = new Timer(FRAME_TIME, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				repaint();
+			}
+		});
+		timer.setCoalesce(true);
+
+		MouseAdapter mouse = new MouseAdapter() {
+			/** Start dragging the node under the mouse, if any. */
+			@Override
+			public void mousePressed(MouseEvent e) {
+				dragged = nodeCircleAt(e.getPoint());
+				if (dragged != null)
+					dragged.startDrag(e.getPoint(), getWidth(), getHeight());
+			}
+
+			/** Move the node being dragged, if any. */
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				if (dragged != null) {
+					dragged.dragTo(e.getPoint());
+					repaint();
+				}
+			}
+
+			/** Stop dragging. */
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				if (dragged != null) {
+					dragged.endDrag();
+					dragged = null;
+				}
+			}
+		};
+		addMouseListener(mouse);
+		addMouseMotionListener(mouse);
+	}
+
+	/** Draw game g's board from now on (nothing if g is null). */
+	public void setGame(Game g) {
+		game = g;
+		dragged = null;
+		repaint();
+	}
+
+	/** Call l (on the EDT) every FRAME_TIME ms, just before this canvas is
+	 * repainted, while this canvas is started. */
+	public void addFrameListener(ActionListener l) {
+		timer.addActionListener(l);
+	}
+
+	/** Start repainting this canvas every FRAME_TIME ms. */
+	public void start() {
+		timer.start();
+	}
+
+	/** Stop the periodic repainting of this canvas. */
+	public void stop() {
+		timer.stop();
+	}
+
+	/** Return the draggable circle of the node at point p, or null if there is none. */
+	private DraggableCircle nodeCircleAt(Point p) {
+		if (game == null)
+			return null;
+		for (Node n : game.getBoard().getNodes()) {
+			Circle c = n.getCircle();
+			if (c instanceof DraggableCircle && c.isHit(p))
+				return (DraggableCircle)c;
+		}
+		return null;
+	}
+
+	/** Paint the whole board, back to front. */
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		Game gm = game;
+		if (gm == null)
+			return;
+
+		Board b = gm.getBoard();
+		RenderSnapshot s = gm.getRenderSnapshot();
+		Graphics2D g2d = (Graphics2D)g.create();
+		try {
+			for (RenderSnapshot.TruckState t : s.getTrucks()) {
+				Circle c = t.truck.getCircle();
+				place(c, t);
+				c.draw(g2d);
+			}
+			for (Edge e : b.getEdges()) {
+				Line l = e.getLine();
+				l.updateToColorPolicy(s.isTraveled(e));
+				l.draw(g2d);
+			}
+			for (RenderSnapshot.ParcelState p : s.getParcels()) {
+				Circle c = p.parcel.getCircle();
+				Circle at = p.holder != null ? p.holder.getCircle() : p.location.getCircle();
+				c.setX1(at.getX1());
+				c.setY1(at.getY1());
+				c.draw(g2d);
+			}
+			for (Node n : b.getNodes()) {
+				n.getCircle().draw(g2d, s.parcelsAt(n));
+			}
+		} finally {
+			g2d.dispose();
+		}
+	}
+
+	/** Move c to where truck state t puts its truck: on the node it waits at, or
+	 * the fraction of the way it has traveled between the circles of two nodes. */
+	private static void place(Circle c, RenderSnapshot.TruckState t) {
+		Circle from = t.from.getCircle();
+		if (!t.isTraveling()) {
+			c.setX1(from.getX1());
+			c.setY1(from.getY1());
+			return;
+		}
+		Circle to = t.to.getCircle();
+		double p = t.progress;
+		c.setX1((int)(p * to.getX1() + (1 - p) * from.getX1()));
+		c.setY1((int)(p * to.getY1() + (1 - p) * from.getY1()));
+	}
+}
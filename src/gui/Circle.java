@@ -44,6 +44,9 @@ public class Circle extends JPanel {
 
 	private static final int LINE_THICKNESS = 2;
 
+	/** The stroke circles are drawn with (shared, since strokes are immutable). */
+	private static final Stroke STROKE = new BasicStroke(LINE_THICKNESS);
+
 	/** Constructor: an instance at (x, y) of diameter d and colored black
 	 * that represents r and is not filled.
 	 * @param r - the Object this circle represents
@@ -215,9 +218,38 @@ public class Circle extends JPanel {
 	@Override
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
-		Graphics2D g2d = (Graphics2D)g;
+		paintLocal((Graphics2D)g, parcelCount());
+	}
+
+	/** Draw this Circle on g, a graphics for the whole drawing surface
+	 * (e.g. a BoardCanvas) rather than for this component. */
+	public void draw(Graphics2D g) {
+		draw(g, parcelCount());
+	}
 
-		g2d.setStroke(new BasicStroke(LINE_THICKNESS));
+	/** Draw this Circle on g, a graphics for the whole drawing surface
+	 * (e.g. a BoardCanvas) rather than for this component. If this Circle
+	 * represents a Node, label it with parcelCount (if it is not 0). */
+	public void draw(Graphics2D g, int parcelCount) {
+		int x = getX();
+		int y = getY();
+		g.translate(x, y);
+		paintLocal(g, parcelCount);
+		g.translate(-x, -y);
+	}
+
+	/** Return the number of parcels on the Node this Circle represents
+	 * (0 if it doesn't represent a Node). */
+	private int parcelCount() {
+		if (represents instanceof Node)
+			return ((Node)represents).getParcels().size();
+		return 0;
+	}
+
+	/** Draw this Circle on g, whose origin is the top left corner of this
+	 * Circle's bounds. If it represents a Node, label it with parcelCount. */
+	private void paintLocal(Graphics2D g2d, int parcelCount) {
+		g2d.setStroke(STROKE);
 		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
 		int heightPlus = 0;
@@ -232,18 +264,23 @@ public class Circle extends JPanel {
 		g2d.drawString(represents.getMappedName(), represents.getRelativeX() + PANEL_BUFFER,
 		        represents.getRelativeY() + PANEL_BUFFER);
 
-		if (represents instanceof Node) {
+		if (represents instanceof Node && parcelCount != 0) {
 			g2d.setColor(Color.BLACK);
-			Node n = (Node)represents;
-
-			if (! n.getParcels().isEmpty()) {
-				g2d.drawString(n.getParcels().size() + "", diameter/2 + 2,
-				        diameter/2 + PANEL_BUFFER + heightPlus);
-			}
+			g2d.drawString(parcelCount + "", diameter/2 + 2,
+			        diameter/2 + PANEL_BUFFER + heightPlus);
 		}
 
 	}
 
+	/** Return true iff p (in drawing surface coordinates) is on this circle:
+	 * within its radius, plus a few pixels of tolerance, of its center. */
+	public boolean isHit(Point p) {
+		double r = getDiameter() / 2.0 + LINE_THICKNESS;
+		double dx = p.x - x1;
+		double dy = p.y - y1;
+		return dx * dx + dy * dy <= r * r;
+	}
+
 	/** Return a bounding square (of size diameter * diameter) of the circle. */
 	@Override
 	public Dimension getPreferredSize() {
@@ -40,8 +40,16 @@ public class GUI extends JFrame{
 	public static final int UPDATE_PANEL_HEIGHT = 100;
 	public static final int SIDE_PANEL_WIDTH = 300;
 
+	/** Screen size assumed when there is no display (e.g. headless board generation). */
+	private static final int HEADLESS_SCREEN_WIDTH = 1280;
+	private static final int HEADLESS_SCREEN_HEIGHT = 1024;
+
 	static {
-		Dimension s = Toolkit.getDefaultToolkit().getScreenSize();
+		Dimension s;
+		if (GraphicsEnvironment.isHeadless())
+			s = new Dimension(HEADLESS_SCREEN_WIDTH, HEADLESS_SCREEN_HEIGHT);
+		else
+			s = Toolkit.getDefaultToolkit().getScreenSize();
 		DRAWING_BOARD_WIDTH = (int)(s.width) - SIDE_PANEL_WIDTH - 2 * X_OFFSET;
 		DRAWING_BOARD_HEIGHT = (int)(s.height * 0.8) - UPDATE_PANEL_HEIGHT - 2 * Y_OFFSET;
 	}
@@ -54,7 +62,7 @@ public class GUI extends JFrame{
 	private boolean interactable;	//True if the user can do input, false otherwise
 	private boolean initialized;	//True once the initial construction process is done, false until then
 
-	private JPanel drawingPanel; //The main panel on which the board is drawn
+	private BoardCanvas drawingPanel; //The main panel on which the board is drawn
 	private JPanel sidePanel;	 // The info panel located on the right of the board.
 
 	private JLabel lblUpdate;    //The label that shows the game update string
@@ -116,11 +124,12 @@ public class GUI extends JFrame{
 		setLocation(X_OFFSET, Y_OFFSET);
 		drawingPanelResized();
 		setVisible(true);
+		drawingPanel.start();
 	}
 
 	/** Creates and re-adds the drawingPanel to this gui. Used as part of construction */
 	private void createDrawingPanel(){
-		drawingPanel = new JPanel();
+		drawingPanel = new BoardCanvas();
 		drawingPanel.setBorder(new LineBorder(new Color(131,155,255)));
 		drawingPanel.setBackground(Color.WHITE);
 
@@ -128,7 +137,11 @@ public class GUI extends JFrame{
 		drawingBoardHeight = DRAWING_BOARD_HEIGHT;
 
 		drawingPanel.setPreferredSize(new Dimension(drawingBoardWidth, drawingBoardHeight));
-		drawingPanel.setLayout(null);
+		drawingPanel.addFrameListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (game != null) updateScore(game.getRenderSnapshot().score);
+			}
+		});
 		drawingPanel.addComponentListener(new ComponentListener() {
 			public void componentResized(ComponentEvent e) {
 				drawingPanelResized();
@@ -384,73 +397,23 @@ public class GUI extends JFrame{
 		return r;
 	}
 
-	/** Draw all elements of the game in the drawingPanel. Called as part of
-	 * GUI construction and whenever a new game is loaded. */
+	/** Put all elements of the game in place to be drawn by the drawingPanel.
+	 * Called as part of GUI construction and whenever a new game is loaded. */
 	private void drawMap() {
-		//Put nodes on map
-		for (Node n : game.getBoard().getNodes()) {
-			Circle c = n.getCircle();
-			//Remove and re-add from drawing panel
-			drawingPanel.remove(c);
-			drawingPanel.add(c);
-		}
-
-		//Draw the edges on the map
+		//Attach the edges to their nodes
 		for (Edge r : game.getBoard().getEdges()) {
 			Line l = r.getLine();
 			l.setC1(r.getExits()[0].getCircle());
 			l.setC2(r.getExits()[1].getCircle());
-			l.setBounds(drawingPanel.getBounds());
-			l.updateToColorPolicy();
-			drawingPanel.remove(l);
-			drawingPanel.add(l);
-		}
-
-		//Set Locations the parcels on the map
-		for (Parcel p : game.getBoard().getParcels()) {
-			p.getCircle().setX1(p.getLocation().getCircle().getX1());
-			p.getCircle().setY1(p.getLocation().getCircle().getY1());
-			drawingPanel.remove(p.getCircle());
-			drawingPanel.add(p.getCircle());
-		}
-
-		//Draw the trucks on the map
-		for (Truck t : game.getBoard().getTrucks()) {
-			Circle c = t.getCircle();
-			c.setBounds(drawingPanel.getBounds());
-			c.setX1(t.getLocation().getCircle().getX1());
-			c.setY1(t.getLocation().getCircle().getY1());
-			drawingPanel.remove(c);
-			drawingPanel.add(c);
 		}
 
-		//Fix the z-ordering of elements on the panel
-		//Higher z painted first -> lower z paint over higher z
-		int z = 0;
-		for (Node n : game.getBoard().getNodes()) {
-			drawingPanel.setComponentZOrder(n.getCircle(), z);
-			z++;
-		}
-		for (Parcel p : game.getBoard().getParcels()) {
-			drawingPanel.setComponentZOrder(p.getCircle(), z);
-			z++;
-		}
-		for (Edge e : game.getBoard().getEdges()) {
-			drawingPanel.setComponentZOrder(e.getLine(), z);
-			z++;
-		}
-		for (Truck t : game.getBoard().getTrucks()) {
-			drawingPanel.setComponentZOrder(t.getCircle(), z);
-			z++;
-		}
-
-		repaint();
+		//Trucks and parcels are placed by the drawingPanel, from the game's RenderSnapshots
+		drawingPanel.setGame(game);
 	}
 
 	/** Set the game to Game g and redraw the map. */
 	public void setGame(Game g) {
 		if (game != null) game.kill();
-		drawingPanel.removeAll();
 		game = g;
 		game.setGUI(this);
 		game.getBoard().updateMinMaxLength();
@@ -632,26 +595,6 @@ public class GUI extends JFrame{
 		return fixNumber(x, digits-1, s + "0");
 	}
 
-	/** Remove the given parcel from the gui - called internally by game
-	 * when a parcel is successfully delivered. Puts the event on the AWT
-	 * event thread to correctly handle multi-threaded parcel removal.
-	 * Students - Do Not Call
-	 */
-	public void removeParcel(final Parcel p){
-		try {
-			SwingUtilities.invokeAndWait(new Runnable(){
-				@Override
-				public void run(){
-					getDrawingPanel().remove(p.getCircle());
-				}
-			});
-		} catch (InterruptedException e) {
-			//Do nothing - interrupted because the game was reset, thus no handling necessary
-		} catch(Exception e){
-			e.printStackTrace(); //Other exception - print trace
-		}
-	}
-
 	/** Toggle the interactability. When this isn't uninteractable,
 	 * doesn't allow user to provide any input
 	 */
@@ -691,11 +634,12 @@ public class GUI extends JFrame{
 	/** Update the GUI to show the new parcel stats and Truck stats. */
 	public void updateParcelAndTruckStats() {
 		StatsTableModel m = (StatsTableModel)statsTable.getModel();
-		int[] parcelStats = game.parcelStats();
+		GameStats stats = game.getStats();
+		int[] parcelStats = stats.parcelStats();
 		for (int i = 0; i < parcelStats.length; i++) {
 			m.setValueAt(parcelStats[i], FIRST_PARCEL_ROW + i, 1);
 		}
-		int[] truckStats = game.truckStats();
+		int[] truckStats = stats.truckStats();
 		for (int i = 0; i < truckStats.length; i++) {
 			m.setValueAt(truckStats[i], FIRST_TRUCK_ROW + i, 1);
 		}	
@@ -736,6 +680,7 @@ public class GUI extends JFrame{
 	 * it doesn't persist. */
 	@Override
 	public void dispose() {
+		drawingPanel.stop();
 		updateThread.interrupt();
 		messageClearer.interrupt();
 		super.dispose();
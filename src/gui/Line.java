@@ -23,6 +23,9 @@ public class Line  extends JPanel{
     /** Default thickness of lines when they are drawn on the GUI */
     public static final int LINE_THICKNESS = 2;
 
+    /** The stroke lines are drawn with (shared, since strokes are immutable). */
+    private static final Stroke STROKE = new BasicStroke(LINE_THICKNESS);
+
     /** Default color of lines when they are drawn on the GUI */
     public static final Color DEFAULT_COLOR = Color.DARK_GRAY;
 
@@ -155,14 +158,23 @@ public class Line  extends JPanel{
         return color;
     }
 
-    /** Update the Color of this Line according to the currently selected color policy. */
+    /** Update the Color of this Line according to the currently selected color policy.
+     * A BoardCanvas calls this for every line each time it paints, so the color
+     * follows the policy without anyone else having to call it. */
     public void updateToColorPolicy() {
+        updateToColorPolicy(represents != null && represents.trucksHere() > 0);
+    }
+
+    /** Update the color of this line to match the current color policy,
+     * where traveled tells whether a truck is traveling along the edge
+     * this line represents (e.g. according to a RenderSnapshot). */
+    public void updateToColorPolicy(boolean traveled) {
         switch (colorPolicy) {
             case DEFAULT:
                 color = DEFAULT_COLOR;
                 break;
             case HIGHLIGHT_TRAVEL:
-                if (represents != null && represents.trucksHere() > 0)
+                if (traveled)
                     color = TRAVELING_COLOR;
                 else
                     color = DEFAULT_COLOR;
@@ -174,8 +186,6 @@ public class Line  extends JPanel{
                     color = DEFAULT_COLOR;
                 break;
         }
-
-        repaint();
     }
 
     /** Return the color for this line using the distance gradient.
@@ -293,16 +303,26 @@ public class Line  extends JPanel{
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
+        int x = getX();
+        int y = getY();
+        g2d.translate(-x, -y);
+        draw(g2d);
+        g2d.translate(x, y);
+    }
+
+    /** Draw this line in its current color on g, a graphics for the whole
+     * drawing surface (e.g. a BoardCanvas) rather than for this component. */
+    public void draw(Graphics2D g2d) {
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,  RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setStroke(new BasicStroke(LINE_THICKNESS));
-        Line2D line2d = null;
-        if (getX1() < getX2() && getY1() < getY2() || getX2() < getX1() && getY2() < getY1())
-            line2d = new Line2D.Double(1, 1, getLineWidth(), getLineHeight());
-        else
-            line2d = new Line2D.Double(1, getLineHeight(), getLineWidth(), 1);
+        g2d.setStroke(STROKE);
         g2d.setColor(getColor());
-        g2d.draw(line2d);
-        g2d.drawString(represents.getMappedName(), represents.getRelativeX(), represents.getRelativeY());
+        g2d.drawLine(getX1(), getY1(), getX2(), getY2());
+        if (represents != null) {
+            int minX = Math.min(getX1(), getX2());
+            int minY = Math.min(getY1(), getY2());
+            g2d.drawString(represents.getMappedName(), minX + represents.getRelativeX(),
+                    minY + represents.getRelativeY());
+        }
     }
 
 
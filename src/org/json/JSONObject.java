@@ -30,6 +30,8 @@ import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -41,7 +43,8 @@ import java.util.ResourceBundle;
 import java.util.Set;
 
 /**
- * A JSONObject is an unordered collection of name/value pairs. Its external
+ * A JSONObject is a collection of name/value pairs, kept (and written) in the
+ * order the names were first put. Its external
  * form is a string wrapped in curly braces with colons between the names and
  * values, and commas between the values and names. The internal form is an
  * object having <code>get</code> and <code>opt</code> methods for accessing
@@ -135,6 +138,205 @@ public class JSONObject {
         }
     }
 
+    /**
+     * An insertion-ordered map from keys to values. Keys and values are kept
+     * in two parallel arrays, in insertion order, with an open-addressing
+     * (linear probing) index of array positions over them, so a lookup is one
+     * hash and, usually, one identity or equals check. Removal compacts the
+     * arrays and rebuilds the index: JSON objects are built and read far more
+     * often than they are edited.
+     */
+    private static final class KeyStore extends AbstractMap<String, Object> {
+        private String[] keys = new String[4];
+        private Object[] values = new Object[4];
+        private int size;
+        /** Slot -> (position in keys/values) + 1; 0 marks an empty slot.
+         * Its length is a power of two, at least twice size. */
+        private int[] index = new int[8];
+
+        /** Return the slot at which a probe for a key with hash code h starts. */
+        private int firstSlot(int h) {
+            return (h ^ (h >>> 16)) & (this.index.length - 1);
+        }
+
+        /** Return the position of key in keys, or -1 if it is not there. */
+        private int find(Object key) {
+            if (key == null) {
+                return -1;
+            }
+            int mask = this.index.length - 1;
+            for (int slot = this.firstSlot(key.hashCode());; slot = (slot + 1) & mask) {
+                int p = this.index[slot];
+                if (p == 0) {
+                    return -1;
+                }
+                String k = this.keys[p - 1];
+                if (k == key || k.equals(key)) {
+                    return p - 1;
+                }
+            }
+        }
+
+        /** Add position p (whose key is not indexed yet) to the index. */
+        private void indexPosition(int p) {
+            int mask = this.index.length - 1;
+            int slot = this.firstSlot(this.keys[p].hashCode());
+            while (this.index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.index[slot] = p + 1;
+        }
+
+        /** Rebuild the index, with capacity slots, from keys[0..size-1]. */
+        private void reindex(int capacity) {
+            this.index = new int[capacity];
+            for (int p = 0; p < this.size; p += 1) {
+                this.indexPosition(p);
+            }
+        }
+
+        @Override
+        public Object get(Object key) {
+            int p = this.find(key);
+            return p < 0 ? null : this.values[p];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.find(key) >= 0;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            int p = this.find(key);
+            if (p >= 0) {
+                Object old = this.values[p];
+                this.values[p] = value;
+                return old;
+            }
+            if (this.size == this.keys.length) {
+                this.keys = java.util.Arrays.copyOf(this.keys, this.size * 2);
+                this.values = java.util.Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size += 1;
+            if (this.size * 2 > this.index.length) {
+                this.reindex(this.index.length * 2);
+            } else {
+                this.indexPosition(this.size - 1);
+            }
+            return null;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            int p = this.find(key);
+            if (p < 0) {
+                return null;
+            }
+            Object old = this.values[p];
+            System.arraycopy(this.keys, p + 1, this.keys, p, this.size - p - 1);
+            System.arraycopy(this.values, p + 1, this.values, p, this.size - p - 1);
+            this.size -= 1;
+            this.keys[this.size] = null;
+            this.values[this.size] = null;
+            this.reindex(this.index.length);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next; // Position of the next entry
+
+                        @Override
+                        public boolean hasNext() {
+                            return this.next < KeyStore.this.size;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!this.hasNext()) {
+                                throw new java.util.NoSuchElementException();
+                            }
+                            final int p = this.next;
+                            this.next += 1;
+                            return new SimpleEntry<String, Object>(
+                                    KeyStore.this.keys[p], KeyStore.this.values[p]) {
+                                private static final long serialVersionUID = 1L;
+
+                                @Override
+                                public Object setValue(Object value) {
+                                    KeyStore.this.values[p] = value;
+                                    return super.setValue(value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (this.next == 0) {
+                                throw new IllegalStateException();
+                            }
+                            this.next -= 1;
+                            KeyStore.this.remove(KeyStore.this.keys[this.next]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return KeyStore.this.size;
+                }
+            };
+        }
+    }
+
+    /**
+     * The unparsed text of a number read by the JSONTokener constructor. It is
+     * converted with stringToValue the first time its value is asked for, and
+     * getInt, getLong and getDouble parse it straight to a primitive, so numbers
+     * that are only read as primitives are never boxed. It never escapes this
+     * JSONObject: every method that returns a value resolves it first.
+     */
+    static final class RawNumber {
+        /** The number as it appeared in the source text. */
+        final String text;
+
+        RawNumber(String text) {
+            this.text = text;
+        }
+
+        /** Return the value stringToValue gives for this number's text. */
+        Object value() {
+            return JSONObject.stringToValue(this.text);
+        }
+    }
+
+    /**
+     * Keys that occur in almost every object of a serialized board. The
+     * JSONTokener constructor replaces an equal key by the instance here, which
+     * is the interned literal, so the same key string is not kept once per
+     * object and lookups with a literal key succeed on the identity check.
+     */
+    private static final Map<String, String> COMMON_KEYS = new HashMap<String, String>();
+    static {
+        String[] common = { "name", "x", "y", "location", "destination",
+                "length", "color" };
+        for (int i = 0; i < common.length; i += 1) {
+            COMMON_KEYS.put(common[i], common[i]);
+        }
+    }
+
     /**
      * The map where the JSONObject's properties are kept.
      */
@@ -152,7 +354,7 @@ public class JSONObject {
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.map = new HashMap<String, Object>();
+        this.map = new KeyStore();
     }
 
     /**
@@ -206,15 +408,19 @@ public class JSONObject {
             default:
                 x.back();
                 key = x.nextValue().toString();
+                String common = COMMON_KEYS.get(key);
+                if (common != null) {
+                    key = common;
+                }
             }
 
-// The key is followed by ':'.
+// The key is followed by ':'. Numbers are kept as text until they are read.
 
             c = x.nextClean();
             if (c != ':') {
                 throw x.syntaxError("Expected a ':' after a key");
             }
-            this.putOnce(key, x.nextValue());
+            this.putOnce(key, x.nextValue(true));
 
 // Pairs are separated by ','.
 
@@ -243,7 +449,7 @@ public class JSONObject {
      * @throws JSONException
      */
     public JSONObject(Map<String, Object> map) {
-        this.map = new HashMap<String, Object>();
+        this.map = new KeyStore();
         if (map != null) {
             Iterator<Entry<String, Object>> i = map.entrySet().iterator();
             while (i.hasNext()) {
@@ -515,6 +721,14 @@ public class JSONObject {
      *             object and cannot be converted to a number.
      */
     public double getDouble(String key) throws JSONException {
+        Object raw = key == null ? null : this.map.get(key);
+        if (raw instanceof RawNumber) {
+            try {
+                return Double.parseDouble(((RawNumber) raw).text);
+            } catch (NumberFormatException e) {
+                // Fall through to the general case
+            }
+        }
         Object object = this.get(key);
         try {
             return object instanceof Number ? ((Number) object).doubleValue()
@@ -536,6 +750,14 @@ public class JSONObject {
      *             to an integer.
      */
     public int getInt(String key) throws JSONException {
+        Object raw = key == null ? null : this.map.get(key);
+        if (raw instanceof RawNumber) {
+            try {
+                return Integer.parseInt(((RawNumber) raw).text);
+            } catch (NumberFormatException e) {
+                // Fall through to the general case
+            }
+        }
         Object object = this.get(key);
         try {
             return object instanceof Number ? ((Number) object).intValue()
@@ -593,6 +815,14 @@ public class JSONObject {
      *             to a long.
      */
     public long getLong(String key) throws JSONException {
+        Object raw = key == null ? null : this.map.get(key);
+        if (raw instanceof RawNumber) {
+            try {
+                return Long.parseLong(((RawNumber) raw).text);
+            } catch (NumberFormatException e) {
+                // Fall through to the general case
+            }
+        }
         Object object = this.get(key);
         try {
             return object instanceof Number ? ((Number) object).longValue()
@@ -798,7 +1028,15 @@ public class JSONObject {
      * @return An object which is the value, or null if there is no value.
      */
     public Object opt(String key) {
-        return key == null ? null : this.map.get(key);
+        if (key == null) {
+            return null;
+        }
+        Object object = this.map.get(key);
+        if (object instanceof RawNumber) {
+            object = ((RawNumber) object).value();
+            this.map.put(key, object);
+        }
+        return object;
     }
 
     /**
@@ -1284,7 +1522,9 @@ public class JSONObject {
      *         no value.
      */
     public Object remove(String key) {
-        return this.map.remove(key);
+        Object object = this.map.remove(key);
+        return object instanceof RawNumber ? ((RawNumber) object).value()
+                : object;
     }
 
     /**
@@ -1655,7 +1895,7 @@ public class JSONObject {
                 if (indentFactor > 0) {
                     writer.write(' ');
                 }
-                writeValue(writer, this.map.get(key), indentFactor, indent);
+                writeValue(writer, this.opt(key.toString()), indentFactor, indent);
             } else if (length != 0) {
                 final int newindent = indent + indentFactor;
                 while (keys.hasNext()) {
@@ -1672,7 +1912,7 @@ public class JSONObject {
                     if (indentFactor > 0) {
                         writer.write(' ');
                     }
-                    writeValue(writer, this.map.get(key), indentFactor, newindent);
+                    writeValue(writer, this.opt(key.toString()), indentFactor, newindent);
                     commanate = true;
                 }
                 if (indentFactor > 0) {
@@ -352,6 +352,19 @@ public class JSONTokener {
      * @return An object.
      */
     public Object nextValue() throws JSONException {
+        return this.nextValue(false);
+    }
+
+    /**
+     * Get the next value, as nextValue() does. If rawNumbers, unquoted text
+     * that starts like a number is returned as an unparsed
+     * JSONObject.RawNumber, for a JSONObject to convert when it is read.
+     * @throws JSONException If syntax error.
+     *
+     * @param rawNumbers true to leave numbers unparsed.
+     * @return An object.
+     */
+    Object nextValue(boolean rawNumbers) throws JSONException {
         char c = this.nextClean();
         String string;
 
@@ -387,6 +400,12 @@ public class JSONTokener {
         if ("".equals(string)) {
             throw this.syntaxError("Missing value");
         }
+        if (rawNumbers) {
+            char b = string.charAt(0);
+            if ((b >= '0' && b <= '9') || b == '-') {
+                return new JSONObject.RawNumber(string);
+            }
+        }
         return JSONObject.stringToValue(string);
     }
 
@@ -12,154 +12,166 @@ import game.*;
  */
 public abstract class AbstractSolution extends Manager {
 
-	/** An instance contains information about a node: the previous
-	 * node on a path from the start node to this node and the distance
-	 * of this node from the start node. */
-	private static class NodeInfo {
-		private Node previous;
-		private int distFromStart;
-
-		/** Constructor: an instance with previous node p and distance d from
-		 * the start node.*/
-		private NodeInfo(Node p, int d) {
-			previous = p;
-			distFromStart = d;
-		}
-
-		/** Constructor: an instance with a null previous node and distance 0. */
-		private NodeInfo() {}
+	/** Find the shortest route from start to end, or null
+	 *  if one does not exist. Uses a query of the board's
+	 *  ContractionHierarchy once it is built (the first call starts
+	 *  building it in the background), and until then A* search
+	 *  with landmark lower bounds (see LandmarkRouter).
+	 *  Both find a path as short as Dijkstra's algorithm does while
+	 *  exploring far fewer nodes.
+	 *
+	 * @param start The route start node.
+	 * @param end The end node.
+	 * @return The route, which can be given to Truck.setTravelRoute.
+	 * Return null if no path exists.
+	 */
+	protected static Route dijkstra(Node start, Node end) {
+		BoardTopology t = start.getBoard().getTopology();
+		ContractionHierarchy h = ContractionHierarchy.ifBuiltOrPrepare(t);
+		if (h != null) return h.route(start, end);
+		return LandmarkRouter.of(t).route(start, end);
 	}
-
-	/** Find the shortest path from start to end, or the empty list
-	 *  if one does not exist. Uses Dijkstra's algorithm for a 
-	 *  weighted, bidirectional graph. 
+	
+	/** Find the shortest route from start to every other reachable node
 	 * 	
-	 * @param start The path start node.
-	 * @param end The end node. 
-	 * @return A linked list containing every node on the shortest path,
-	 * including the start and the end. Return the empty list
-	 * if no path exists. 
+	 * @param start The route start node. 
+	 * @return A map of destination to 
+	 * the shortest route from start to it. The search is done
+	 * up front; each route is built from the search's parent
+	 * edges, in O(its number of edges), only when it is asked for.
 	 */
-	protected static LinkedList<Node> dijkstra(Node start, Node end) {
-	    PQueue<Node> frontier = new HeapSolution<Node>();
-		HashMap<Node, NodeInfo> nodeInfo = new HashMap<Node, NodeInfo>();
-
-		frontier.add(start, 0);
-		nodeInfo.put(start, new NodeInfo());
-
+	protected static Map<Node, Route> dijkstra(Node start) {
+		Board b = start.getBoard();
+		BoardTopology t = b.getTopology();
+		int[] dist = new int[t.getNodeCount()];
+		int[] parentEdge = new int[t.getNodeCount()];
+		int[] order = new int[t.getNodeCount()]; //Nodes in the order they were settled
+		int settled = 0;
+		Arrays.fill(dist, Integer.MAX_VALUE);
+
+		PQueue<Integer> frontier = new HeapSolution<Integer>();
+		int s = b.indexOf(start);
+		dist[s] = 0;
+		parentEdge[s] = -1;
+		frontier.add(s, 0);
 		while (!frontier.isEmpty()) {
-			Node current = frontier.poll();
-			if (current.equals(end)) {
-				return reconstructPath(current, nodeInfo);
-			}
-
-			NodeInfo currentInfo = nodeInfo.get(current);
-			HashMap<Node,Integer> neighbors = current.getNeighbors();
-
-			for (Map.Entry<Node, Integer> entry : neighbors.entrySet()) {
-				Node neighbor = entry.getKey();
-				int edgeWeight = entry.getValue();
-				int newDistToNeighbor = currentInfo.distFromStart + edgeWeight;
-
-				NodeInfo neighborInfo = nodeInfo.get(neighbor);
-				boolean neverSeen = neighborInfo == null;
-				boolean needToUpdate = neighborInfo != null && newDistToNeighbor < neighborInfo.distFromStart;
-
-				if (neverSeen) {
-					neighborInfo = new NodeInfo();
-					nodeInfo.put(neighbor, neighborInfo);
-					frontier.add(neighbor, newDistToNeighbor);
-				} else if (needToUpdate) {
-					frontier.updatePriority(neighbor, newDistToNeighbor);
-				}
-
-				if (neverSeen || needToUpdate) {
-					neighborInfo.previous = current;
-					neighborInfo.distFromStart = newDistToNeighbor;
+			int v = frontier.poll();
+			order[settled++] = v;
+			for (int k = 0; k < t.getDegree(v); k++) {
+				int w = t.getNeighbor(v, k);
+				int e = t.getExit(v, k);
+				int d = dist[v] + t.getLength(e);
+				if (dist[w] == Integer.MAX_VALUE) {
+					frontier.add(w, d);
+				} else if (d < dist[w]) {
+					frontier.updatePriority(w, d);
+				} else {
+					continue;
 				}
+				dist[w] = d;
+				parentEdge[w] = e;
 			}
 		}
-		return new LinkedList<Node>(); //no path was found
+		return new RouteTree(b, s, parentEdge, Arrays.copyOf(order, settled));
 	}
-	
-	/** Find the shortest path from start to every other reachable node
-	 * 	
-	 * @param start The path start node. 
-	 * @return A map of destination to 
-	 * A linked list containing every node on the shortest path,
-	 * including the start and the end
-	 */
-	protected static Map<Node, List<Node>> dijkstra(Node start) {
-		
-		HashMap<Node, List<Node>> paths = new HashMap<>();
-		
-	  PQueue<Node> frontier = new HeapSolution<Node>();
-		HashMap<Node, NodeInfo> nodeInfo = new HashMap<Node, NodeInfo>();
 
-		frontier.add(start, 0);
-		nodeInfo.put(start, new NodeInfo());
+	/** The shortest routes from one node of a board to the nodes it reaches,
+	 * given by the parent edges of a search from it. Each route is built
+	 * (and kept) the first time it is asked for, or when iteration gets to it.
+	 * Not synchronized.
+	 */
+	private static final class RouteTree extends AbstractMap<Node, Route> {
+		private final Board board;
+		private final int source;       //Index of the node the routes start at
+		private final int[] parentEdge; //parentEdge[v]: last edge of the route to v
+		private final int[] reached;    //Indices of the nodes reached, in order of distance
+		private final Route[] routes;   //routes[v]: the route to v (null until built)
+		private final boolean[] isReached;
+
+		/** Constructor: the routes on b from node source to the nodes in reached,
+		 * whose last edges are given by parentEdge. */
+		private RouteTree(Board b, int source, int[] parentEdge, int[] reached) {
+			board = b;
+			this.source = source;
+			this.parentEdge = parentEdge;
+			this.reached = reached;
+			routes = new Route[parentEdge.length];
+			isReached = new boolean[parentEdge.length];
+			for (int v : reached) {
+				isReached[v] = true;
+			}
+		}
 
-		while (!frontier.isEmpty()) {
-			Node current = frontier.poll();
-			paths.put(current, reconstructPath(current, nodeInfo));
-			
-			NodeInfo currentInfo = nodeInfo.get(current);
-			HashMap<Node,Integer> neighbors = current.getNeighbors();
-
-			for (Map.Entry<Node, Integer> entry : neighbors.entrySet()) {
-				Node neighbor = entry.getKey();
-				int edgeWeight = entry.getValue();
-				int newDistToNeighbor = currentInfo.distFromStart + edgeWeight;
-
-				NodeInfo neighborInfo = nodeInfo.get(neighbor);
-				boolean neverSeen = neighborInfo == null;
-				boolean needToUpdate = neighborInfo != null && newDistToNeighbor < neighborInfo.distFromStart;
-
-				if (neverSeen) {
-					neighborInfo = new NodeInfo();
-					nodeInfo.put(neighbor, neighborInfo);
-					frontier.add(neighbor, newDistToNeighbor);
-				} else if (needToUpdate) {
-					frontier.updatePriority(neighbor, newDistToNeighbor);
-				}
+		/** Return the index of o if it is a node of this tree's board it reaches,
+		 * otherwise -1. */
+		private int indexOf(Object o) {
+			if (!(o instanceof Node) || ((Node)o).getBoard() != board) return -1;
+			int v = board.indexOf((Node)o);
+			return isReached[v] ? v : -1;
+		}
 
-				if (neverSeen || needToUpdate) {
-					neighborInfo.previous = current;
-					neighborInfo.distFromStart = newDistToNeighbor;
-				}
+		/** Return the route to node v, which this tree reaches. */
+		private Route route(int v) {
+			Route r = routes[v];
+			if (r != null) return r;
+			BoardTopology t = board.getTopology();
+			int hops = 0;
+			for (int w = v; w != source; w = t.getOther(parentEdge[w], w)) {
+				hops++;
 			}
+			int[] edges = new int[hops];
+			for (int w = v; w != source; w = t.getOther(parentEdge[w], w)) {
+				edges[--hops] = parentEdge[w];
+			}
+			r = Route.of(board, source, edges);
+			routes[v] = r;
+			return r;
 		}
-		return paths;
-	}
 
-	/** Return the path from the start node to end.
-	 * Precondition: nodeInfo contains all the necessary information about
-	 * the path. */
-	private static LinkedList<Node> reconstructPath(Node end, HashMap<Node, NodeInfo> nodeInfo) {
-		LinkedList<Node> path = new LinkedList<Node>();
-		Node current = end;
-		while (current != null) {
-			path.addFirst(current);
-			current = nodeInfo.get(current).previous;
+		@Override
+		public int size() {
+			return reached.length;
 		}
-		return path;
-	}
 
-	/** Return the collective weight of the given path of nodes
-	 * by iterating along it and summing the weight of edges encountered. */
-	protected int pathLength(List<Node> path) {
-		synchronized(path){
-			int s = 0;
-			Iterator<Node> one = path.iterator();
-			Iterator<Node> two = path.iterator();
-			two.next(); //Advance two by one link
-
-			while (two.hasNext()) {
-				Node n1 = one.next();
-				Node n2 = two.next();
-				s += n1.getConnect(n2).length;
-			}
-			return s;
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) >= 0;
+		}
+
+		@Override
+		public Route get(Object key) {
+			int v = indexOf(key);
+			return v < 0 ? null : route(v);
+		}
+
+		@Override
+		public Set<Map.Entry<Node, Route>> entrySet() {
+			return new AbstractSet<Map.Entry<Node, Route>>() {
+				@Override
+				public int size() {
+					return reached.length;
+				}
+
+				@Override
+				public Iterator<Map.Entry<Node, Route>> iterator() {
+					return new Iterator<Map.Entry<Node, Route>>() {
+						private int i;
+
+						@Override
+						public boolean hasNext() {
+							return i < reached.length;
+						}
+
+						@Override
+						public Map.Entry<Node, Route> next() {
+							if (i >= reached.length) throw new NoSuchElementException();
+							int v = reached[i++];
+							return new AbstractMap.SimpleImmutableEntry<Node, Route>(
+									board.getNode(v), route(v));
+						}
+					};
+				}
+			};
 		}
 	}
 }
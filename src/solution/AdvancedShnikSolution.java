@@ -39,31 +39,15 @@ public class AdvancedShnikSolution extends AbstractSolution {
      * If unassignedParcels is empty, do nothing (return).
      */
     private void assignParcelTo(final Truck t) {
-        //If possible, build same color list of parcels
         synchronized(unassignedParcels) {
             if (unassignedParcels.isEmpty()) return;
 
-            HashSet<Parcel> sameColorParcels = new HashSet<Parcel>();
-            for (Parcel p : unassignedParcels) {
-                if (p.getColor().equals(t.getColor())) {
-                    sameColorParcels.add(p);
-                }
-            }
-
-            //If that wasn't possible, choose from all unassigned parcels
-            if (sameColorParcels.isEmpty()) sameColorParcels.addAll(unassignedParcels);
-
-            //Choose the closest parcel to t to assign it to
-            Parcel parcel = Collections.min(sameColorParcels, new Comparator<Parcel>() {
-                @Override
-                public int compare(Parcel o1, Parcel o2) {
-                    LinkedList<Node> p1 = dijkstra(t.getLocation(), o1.getLocation());
-                    int l1 = pathLength(p1);
-                    LinkedList<Node> p2 = dijkstra(t.getLocation(), o2.getLocation());
-                    int l2 = pathLength(p2);
-                    return l1 - l2;
-                }
-            });
+            //Choose the closest same-color parcel to t, else the closest parcel
+            Parcel parcel = new NearestParcels().among(unassignedParcels)
+                    .color(t.getColor()).findNearest(t.getLocation());
+            if (parcel == null)
+                parcel = new NearestParcels().among(unassignedParcels).findNearest(t.getLocation());
+            if (parcel == null) return;
 
             parcelsAssigned.put(t, parcel);
             unassignedParcels.remove(parcel);
@@ -90,19 +74,19 @@ public class AdvancedShnikSolution extends AbstractSolution {
                 //If so, pick one at random and assign this truck to that.
                 if (unassignedParcels.isEmpty()) {
                     parcelsAssigned.remove(t);
-                    t.setTravelPath(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
+                    t.setTravelRoute(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
                 } else {
                     assignParcelTo(t);
                 }
             }
             else if (t.getLoad() != null) {
-                t.setTravelPath(dijkstra(t.getLocation(), t.getLoad().destination));
+                t.setTravelRoute(dijkstra(t.getLocation(), t.getLoad().destination));
             } else if (parcelsAssigned.containsKey(t) && t.getLocation().isParcelHere(parcelsAssigned.get(t))) {
                 t.pickupLoad(parcelsAssigned.get(t));
             } else if (parcelsAssigned.containsKey(t) && getParcels().contains(parcelsAssigned.get(t))) {
-                t.setTravelPath(dijkstra(t.getLocation(), parcelsAssigned.get(t).getLocation()));
+                t.setTravelRoute(dijkstra(t.getLocation(), parcelsAssigned.get(t).getLocation()));
             } else if (! parcelsAssigned.containsKey(t) || getParcels().isEmpty()) {
-                t.setTravelPath(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
+                t.setTravelRoute(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
             } else if (parcelsAssigned.containsKey(t) && ! getParcels().contains(parcelsAssigned.get(t))) {
                 assignParcelTo(t);
             }
@@ -0,0 +1,271 @@
+package solution;
+
+import game.*;
+
+import java.awt.Color;
+import java.util.*;
+
+/** An AssignmentEngine decides which parcel each truck of a board should deliver
+ * next, so that together the assignments score as much as possible.
+ * <br><br>
+ * The value of truck t delivering parcel p is its score change: the cost of
+ * traveling, at Truck.EFFICIENT_SPEED, from where t is free to p.start and on to
+ * p.destination, plus the pickup and dropoff costs, plus the payoff (times
+ * Board.getOnColorMultiplier() if t and p have the same color). A parcel of the
+ * color of some truck is only ever given to a truck of its color: losing the
+ * multiplier costs far more than the frames another truck of the color takes to
+ * get to it (Board.getWaitCost() per frame). The engine keeps
+ * these values in a trucks x parcels cost matrix and finds the assignment of
+ * greatest total value with the Hungarian algorithm (shortest augmenting paths,
+ * O(n^2 m) for n trucks and m parcels). Each truck has an extra "no parcel"
+ * column, which it gets only when no parcel is left for it.
+ * <br><br>
+ * The engine is incremental. When a truck asks for its next parcel (next), only
+ * its row of the matrix is recomputed, in one Dijkstra sweep from where it is,
+ * and only the trucks whose assignments that change invalidates (usually it and
+ * at most one other) are re-assigned, starting from the dual potentials of the
+ * previous solution: O(n m) each instead of a full solve. The parcel it is
+ * given is then taken out of the matrix for good. Until a truck asks, its
+ * assignment is tentative.
+ * <br><br>
+ * Methods are synchronized, so the trucks of a game can all use one engine.
+ */
+public class AssignmentEngine {
+
+	/** Cost of the "no parcel" columns: more than any parcel costs. */
+	private static final long IDLE = 1L << 40;
+
+	/** Cost of a truck delivering a parcel of another truck's color: more than
+	 * staying idle. */
+	private static final long OFF_COLOR = 1L << 45;
+
+	/** Cost of delivering a parcel that can't be reached. */
+	private static final long UNREACHABLE = 1L << 50;
+
+	private final Board board;
+	private final BoardTopology topology;
+	private final int n; //Number of trucks (rows 1..n)
+	private final int m; //Number of columns (1..m): the parcels, then a "no parcel" column per truck
+
+	private final Truck[] trucks;   //trucks[i] is row i
+	private final Parcel[] parcels; //parcels[j] is column j (null for a "no parcel" column)
+	private final HashMap<Truck, Integer> rowOf = new HashMap<Truck, Integer>();
+	private final HashSet<Color> truckColors = new HashSet<Color>();
+	private final int[] deliveryLength; //deliveryLength[j]: from parcels[j].start to its destination (-1 if unreachable)
+
+	private final long[][] cost;    //cost[i][j]: cost of row i's truck delivering column j's parcel
+	private final boolean[] removed; //removed[j]: column j's parcel was given to a truck for good
+
+	//Solution: u and v are the dual potentials of the rows and columns, and
+	//column j is assigned to row match[j] (0: none). Column 0 is a sentinel.
+	private final long[] u;
+	private final long[] v;
+	private final int[] match;
+
+	/** Constructor: an engine for the trucks of board b and the parcels on b
+	 * that aren't held. It computes a first assignment, in O(n^2 m). */
+	public AssignmentEngine(Board b) {
+		board = b;
+		topology = b.getTopology();
+		trucks = new Truck[b.getTrucks().size() + 1];
+		n = trucks.length - 1;
+		int i = 1;
+		for (Truck t : b.getTrucks()) {
+			trucks[i] = t;
+			rowOf.put(t, i++);
+			truckColors.add(t.getColor());
+		}
+
+		List<Parcel> pool = new ArrayList<Parcel>();
+		synchronized(b.getParcels()) {
+			for (Parcel p : b.getParcels()) {
+				if (!p.isHeld()) pool.add(p);
+			}
+		}
+		m = pool.size() + n;
+		parcels = new Parcel[m + 1];
+		deliveryLength = new int[m + 1];
+		LandmarkRouter router = LandmarkRouter.of(topology);
+		for (int j = 1; j <= pool.size(); j++) {
+			Parcel p = pool.get(j - 1);
+			parcels[j] = p;
+			deliveryLength[j] = router.distance(b.indexOf(p.start), b.indexOf(p.destination));
+		}
+
+		cost = new long[n + 1][m + 1];
+		removed = new boolean[m + 1];
+		u = new long[n + 1];
+		v = new long[m + 1];
+		match = new int[m + 1];
+		for (i = 1; i <= n; i++) {
+			setRow(i, trucks[i].getLocation());
+			augment(i);
+		}
+	}
+
+	/** Return the score change of truck t delivering parcel p, column j, given
+	 * the distances dist from where t is free to every node. */
+	private long value(Truck t, Parcel p, int[] dist, int j) {
+		int toStart = dist[board.indexOf(p.start)];
+		if (toStart == Integer.MAX_VALUE || deliveryLength[j] < 0)
+			return -UNREACHABLE;
+		long travel = (long)(toStart + deliveryLength[j]) * Score.cost(Truck.EFFICIENT_SPEED)
+				/ Truck.EFFICIENT_SPEED;
+		int payoff = board.getPayoff();
+		if (p.getColor().equals(t.getColor())) payoff *= board.getOnColorMultiplier();
+		return travel + board.getPickupCost() + board.getDropoffCost() + payoff;
+	}
+
+	/** Recompute row i of the cost matrix, for its truck being free at node from. */
+	private void setRow(int i, Node from) {
+		int[] dist = topology.distancesFrom(board.indexOf(from));
+		Truck t = trucks[i];
+		for (int j = 1; j <= m; j++) {
+			Parcel p = parcels[j];
+			if (p == null)
+				cost[i][j] = IDLE;
+			else if (!p.getColor().equals(t.getColor()) && truckColors.contains(p.getColor()))
+				cost[i][j] = OFF_COLOR;
+			else
+				cost[i][j] = -value(t, p, dist, j);
+		}
+	}
+
+	/** Return the column assigned to row i (0 if none). */
+	private int columnOf(int i) {
+		for (int j = 1; j <= m; j++) {
+			if (match[j] == i) return j;
+		}
+		return 0;
+	}
+
+	/** Unassign column j, adding the rows left without a column to rows.
+	 * Augmenting finds optimal assignments only if every unassigned column has
+	 * potential 0 (assigned ones have at most 0), so j's potential is raised to 0,
+	 * and any row r that makes infeasible gets u[r] lowered to fit; r's assignment
+	 * is then no longer tight, so it is released too, and so on. Usually only a
+	 * row or two are affected. */
+	private void release(int j, List<Integer> rows) {
+		ArrayDeque<Integer> columns = new ArrayDeque<Integer>();
+		match[j] = 0;
+		columns.add(j);
+		while (!columns.isEmpty()) {
+			int c = columns.poll();
+			if (v[c] >= 0) continue;
+			v[c] = 0;
+			for (int r = 1; r <= n; r++) {
+				if (u[r] <= cost[r][c]) continue;
+				u[r] = cost[r][c];
+				int k = columnOf(r);
+				if (k != 0) {
+					match[k] = 0;
+					columns.add(k);
+					rows.add(r);
+				}
+			}
+		}
+	}
+
+	/** Assign row i, which has no column, along a shortest augmenting path from it,
+	 * keeping the potentials feasible (u[i] + v[j] <= cost[i][j], with equality on
+	 * assigned pairs). Removed columns take no part. */
+	private void augment(int i) {
+		long[] minv = new long[m + 1];
+		int[] way = new int[m + 1];
+		boolean[] used = new boolean[m + 1];
+		Arrays.fill(minv, Long.MAX_VALUE);
+		match[0] = i;
+		int j0 = 0;
+		do {
+			used[j0] = true;
+			int i0 = match[j0];
+			long delta = Long.MAX_VALUE;
+			int j1 = 0;
+			for (int j = 1; j <= m; j++) {
+				if (used[j] || removed[j]) continue;
+				long cur = cost[i0][j] - u[i0] - v[j];
+				if (cur < minv[j]) {
+					minv[j] = cur;
+					way[j] = j0;
+				}
+				if (minv[j] < delta) {
+					delta = minv[j];
+					j1 = j;
+				}
+			}
+			for (int j = 0; j <= m; j++) {
+				if (removed[j]) continue;
+				if (used[j]) {
+					u[match[j]] += delta;
+					v[j] -= delta;
+				} else {
+					minv[j] -= delta;
+				}
+			}
+			j0 = j1;
+		} while (match[j0] != 0);
+		do {
+			int j1 = way[j0];
+			match[j0] = match[j1];
+			j0 = j1;
+		} while (j0 != 0);
+	}
+
+	/** Return the parcel truck t should deliver next, if it is free at node from
+	 * (where it is, or where it will drop off the parcel it carries), and commit
+	 * to it: no other truck will be given it. Return null if no parcel is left for
+	 * t. Afterwards, t's tentative next parcel is planned from that parcel's
+	 * destination. */
+	public synchronized Parcel next(Truck t, Node from) {
+		int i = rowOf.get(t);
+		List<Integer> rows = new ArrayList<Integer>();
+		rows.add(i);
+		int j = columnOf(i);
+		if (j != 0) release(j, rows);
+		setRow(i, from);
+		for (int r : rows) {
+			augment(r);
+		}
+
+		j = columnOf(i);
+		Parcel p = parcels[j];
+		if (p == null) return null;
+
+		//Commit: take column j out, giving up the row's tentative assignment
+		match[j] = 0;
+		removed[j] = true;
+		setRow(i, p.destination);
+		augment(i);
+		return p;
+	}
+
+	/** Return the parcel truck t should deliver next if it is free where it is
+	 * now (see next(Truck, Node)). */
+	public synchronized Parcel next(Truck t) {
+		return next(t, t.getLocation());
+	}
+
+	/** Return the parcel truck t is tentatively assigned (null if none). */
+	public synchronized Parcel getAssignment(Truck t) {
+		return parcels[columnOf(rowOf.get(t))];
+	}
+
+	/** Return the number of parcels no truck has committed to yet. */
+	public synchronized int getRemaining() {
+		int c = 0;
+		for (int j = 1; j <= m; j++) {
+			if (parcels[j] != null && !removed[j]) c++;
+		}
+		return c;
+	}
+
+	/** Return the total value (score change) of the current tentative
+	 * assignment of parcels to trucks. */
+	public synchronized long getTotalValue() {
+		long total = 0;
+		for (int j = 1; j <= m; j++) {
+			if (match[j] != 0 && parcels[j] != null && !removed[j]) total -= cost[match[j]][j];
+		}
+		return total;
+	}
+}
@@ -0,0 +1,55 @@
+package solution;
+
+import game.*;
+
+/** A solution that decides which truck delivers which parcel with an
+ * AssignmentEngine: each time a truck is free, it is given the parcel that, with
+ * the parcels tentatively planned for the other trucks, makes the whole fleet's
+ * deliveries score the most, distance and color included. Trucks go home when no
+ * parcel is left for them, but set out again if one is later planned for them.
+ */
+public class AssignmentSolution extends AbstractSolution {
+
+	private AssignmentEngine engine;
+	private boolean preprocessingDone;
+
+	@Override
+	public void run() {
+		engine = new AssignmentEngine(getBoard());
+		for (Truck t : getTrucks()) {
+			t.setUserData(engine.next(t));
+		}
+		preprocessingDone = true;
+	}
+
+	@Override
+	public void truckNotification(Truck t, Notification message) {
+		if (!preprocessingDone || message != Notification.WAITING) return;
+
+		Parcel load = t.getLoad();
+		if (load != null) {
+			if (t.getLocation() != load.destination) {
+				t.setTravelRoute(dijkstra(t.getLocation(), load.destination));
+				return;
+			}
+			t.dropoffLoad();
+			t.setUserData(engine.next(t));
+		}
+
+		Parcel next = (Parcel)t.getUserData();
+		if (next == null && engine.getAssignment(t) != null) {
+			//A parcel another truck was to deliver has become this one's since
+			next = engine.next(t);
+			t.setUserData(next);
+		}
+		if (next == null) {
+			if (t.getLocation() != getBoard().getTruckDepot())
+				t.setTravelRoute(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
+		} else if (t.getLocation().isParcelHere(next)) {
+			t.pickupLoad(next);
+			t.setTravelRoute(dijkstra(t.getLocation(), next.destination));
+		} else {
+			t.setTravelRoute(dijkstra(t.getLocation(), next.getLocation()));
+		}
+	}
+}
@@ -56,7 +56,7 @@ public class BasicShnikSolution extends AbstractSolution {
 				//If so, assign this truck to a random one.
 				if (unassignedParcels.isEmpty()) {
 					parcelsAssigned.remove(t);
-					t.setTravelPath(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
+					t.setTravelRoute(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
 				} else {
 					Parcel p = Main.randomElement(unassignedParcels);
 					unassignedParcels.remove(p);
@@ -68,10 +68,10 @@ public class BasicShnikSolution extends AbstractSolution {
 		//if t is holding a load, travel to that location.
 		else if (message.equals(Notification.WAITING)) {
 			if (t.getLoad() != null) {
-				t.setTravelPath(dijkstra(t.getLocation(), t.getLoad().destination));
+				t.setTravelRoute(dijkstra(t.getLocation(), t.getLoad().destination));
 			} else if (parcelsAssigned.containsKey(t)) {
 				t.pickupLoad(parcelsAssigned.get(t));
-				t.setTravelPath(dijkstra(t.getLocation(), parcelsAssigned.get(t).getLocation()));
+				t.setTravelRoute(dijkstra(t.getLocation(), parcelsAssigned.get(t).getLocation()));
 			}
 		}
 
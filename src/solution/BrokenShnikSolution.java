@@ -56,10 +56,8 @@ public class BrokenShnikSolution extends AbstractSolution {
 		Parcel parcel = Collections.min(sameColorParcels, new Comparator<Parcel>() {
 			@Override
 			public int compare(Parcel o1, Parcel o2) {
-				LinkedList<Node> p1 = dijkstra(t.getLocation(), o1.getLocation());
-				int l1 = pathLength(p1);
-				LinkedList<Node> p2 = dijkstra(t.getLocation(), o2.getLocation());
-				int l2 = pathLength(p2);
+				int l1 = dijkstra(t.getLocation(), o1.getLocation()).getLength();
+				int l2 = dijkstra(t.getLocation(), o2.getLocation()).getLength();
 				return l1 - l2;
 			}
 		});
@@ -88,19 +86,19 @@ public class BrokenShnikSolution extends AbstractSolution {
 				//If so, pick one at random and assign this truck to that.
 				if (unassignedParcels.isEmpty()) {
 					parcelsAssigned.remove(t);
-					t.setTravelPath(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
+					t.setTravelRoute(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
 				} else {
 					assignParcelTo(t);
 				}
 			}
 			else if (t.getLoad() != null) {
-				t.setTravelPath(dijkstra(t.getLocation(), t.getLoad().destination));
+				t.setTravelRoute(dijkstra(t.getLocation(), t.getLoad().destination));
 			} else if (parcelsAssigned.containsKey(t) && t.getLocation().isParcelHere(parcelsAssigned.get(t))) {
 				t.pickupLoad(parcelsAssigned.get(t));
 			} else if (parcelsAssigned.containsKey(t) && getParcels().contains(parcelsAssigned.get(t))) {
-				t.setTravelPath(dijkstra(t.getLocation(), parcelsAssigned.get(t).getLocation()));
+				t.setTravelRoute(dijkstra(t.getLocation(), parcelsAssigned.get(t).getLocation()));
 			} else if (! parcelsAssigned.containsKey(t) || getParcels().isEmpty()) {
-				t.setTravelPath(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
+				t.setTravelRoute(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
 			} else if (parcelsAssigned.containsKey(t) && ! getParcels().contains(parcelsAssigned.get(t))) {
 				assignParcelTo(t);
 			}
@@ -157,6 +157,10 @@ public class Grader {
 		try {
 			TextIO.write(GRADING_OUTPUT_DIRECTORY + "/" + args[2] + "/"
 					+ args[2] + "_feedback.txt", finishedFeedback);
+			// Per-game metrics, to see where the manager loses time
+			String metrics = GRADING_OUTPUT_DIRECTORY + "/" + args[2] + "/" + args[2] + "_metrics";
+			GameRunner.writeMetrics(feedback.scores, new File(metrics + ".json"));
+			GameRunner.writeMetrics(feedback.scores, new File(metrics + ".csv"));
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -240,6 +244,7 @@ public class Grader {
 	private static class Feedback {
 		private String f;
 		private double grade;
+		private GameScore[] scores; //The file games' scores, then the random games'
 	}
 
 	/**
@@ -326,6 +331,9 @@ public class Grader {
 
 		// Add finishing stats.
 		Feedback f = new Feedback();
+		f.scores = new GameScore[fileScores.length + randomScores.length];
+		System.arraycopy(fileScores, 0, f.scores, 0, fileScores.length);
+		System.arraycopy(randomScores, 0, f.scores, fileScores.length, randomScores.length);
 
 		double weightedCompletenessScore = (totalCompletenesScore / totalTests)
 				* 100 * CORRECTNESS;
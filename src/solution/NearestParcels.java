@@ -0,0 +1,162 @@
+package solution;
+
+import game.*;
+
+import java.awt.Color;
+import java.util.*;
+
+/** An instance finds the parcels nearest to a node, by length of the shortest
+ * path to them, in a single Dijkstra sweep out from the node. The sweep visits
+ * nodes in order of distance and stops as soon as it has found the parcels asked
+ * for, so finding the k nearest of P parcels costs one partial search instead of
+ * a search per parcel.
+ * <br><br>
+ * Which parcels count is set with the filter methods, which can be chained:
+ * <pre>
+ *     List&lt;Tuple2&lt;Parcel, Integer&gt;&gt; l = new NearestParcels()
+ *             .among(unassigned).color(t.getColor()).held(false)
+ *             .find(t.getLocation(), 3);
+ * </pre>
+ * A held parcel is as far as the truck holding it; one whose truck is
+ * traveling along an edge is at no node, and is never found. An instance is not
+ * synchronized, but keeps no state between calls of find other than its filters,
+ * so any manager can use one per thread (or a new one per query).
+ */
+public class NearestParcels {
+
+	/** The parcels to choose from (null: every parcel on the board). */
+	private Collection<Parcel> candidates;
+
+	/** Color the parcels must have (null: any). */
+	private Color color;
+
+	/** Whether the parcels must be held (null: either). */
+	private Boolean held;
+
+	/** Destination the parcels must have (null: any). */
+	private Node destination;
+
+	/** Largest distance at which to look for parcels. */
+	private int maxDistance = Integer.MAX_VALUE;
+
+	/** Constructor: a query for the parcels on the board, with no filter. */
+	public NearestParcels() {
+	}
+
+	/** Choose only from parcels c (the board's parcels by default).
+	 * Return this query. */
+	public NearestParcels among(Collection<Parcel> c) {
+		candidates = c;
+		return this;
+	}
+
+	/** Choose only parcels of color c (e.g. Truck.getColor()).
+	 * Return this query. */
+	public NearestParcels color(Color c) {
+		color = c;
+		return this;
+	}
+
+	/** Choose only parcels that are held by a truck (h true) or that aren't
+	 * (h false). Return this query. */
+	public NearestParcels held(boolean h) {
+		held = h;
+		return this;
+	}
+
+	/** Choose only parcels whose destination is d. Return this query. */
+	public NearestParcels destination(Node d) {
+		destination = d;
+		return this;
+	}
+
+	/** Choose only parcels at most d away. Return this query. */
+	public NearestParcels within(int d) {
+		maxDistance = d;
+		return this;
+	}
+
+	/** Return true iff parcel p passes this query's filters. */
+	private boolean accepts(Parcel p) {
+		return (color == null || p.getColor().equals(color))
+				&& (held == null || p.isHeld() == held)
+				&& (destination == null || p.destination.equals(destination));
+	}
+
+	/** Return the node parcel p is at: the location of the truck holding it if
+	 * it is held (null if that truck is on an edge), otherwise its own. */
+	private static Node locationOf(Parcel p) {
+		Truck holder = p.getHolder();
+		return holder == null ? p.getLocation() : holder.getLocation();
+	}
+
+	/** Return the k parcels that pass this query's filters nearest to source,
+	 * nearest first, each with its distance from source. Return fewer if fewer
+	 * such parcels can be reached (within the distance set by within). */
+	public List<Tuple2<Parcel, Integer>> find(Node source, int k) {
+		List<Tuple2<Parcel, Integer>> found = new ArrayList<Tuple2<Parcel, Integer>>();
+		if (k <= 0) return found;
+
+		//Group the parcels that pass the filters by the node they are at
+		Board b = source.getBoard();
+		BoardTopology t = b.getTopology();
+		Map<Integer, List<Parcel>> targets = new HashMap<Integer, List<Parcel>>();
+		Collection<Parcel> c = candidates == null ? b.getParcels() : candidates;
+		synchronized(c) {
+			for (Parcel p : c) {
+				if (!accepts(p)) continue;
+				Node at = locationOf(p);
+				if (at == null) continue;
+				int n = b.indexOf(at);
+				List<Parcel> l = targets.get(n);
+				if (l == null) {
+					l = new ArrayList<Parcel>();
+					targets.put(n, l);
+				}
+				l.add(p);
+			}
+		}
+
+		//Sweep out from source until k parcels or every target node are found
+		int[] dist = new int[t.getNodeCount()];
+		Arrays.fill(dist, Integer.MAX_VALUE);
+		PQueue<Integer> frontier = new HeapSolution<Integer>();
+		int start = b.indexOf(source);
+		dist[start] = 0;
+		frontier.add(start, 0);
+		int targetsLeft = targets.size();
+		while (!frontier.isEmpty() && targetsLeft > 0) {
+			int v = frontier.poll();
+			if (dist[v] > maxDistance) break;
+
+			List<Parcel> here = targets.get(v);
+			if (here != null) {
+				targetsLeft--;
+				for (Parcel p : here) {
+					found.add(new Tuple2<Parcel, Integer>(p, dist[v]));
+					if (found.size() == k) return found;
+				}
+			}
+
+			for (int i = 0; i < t.getDegree(v); i++) {
+				int w = t.getNeighbor(v, i);
+				int d = dist[v] + t.getLength(t.getExit(v, i));
+				if (dist[w] == Integer.MAX_VALUE) {
+					dist[w] = d;
+					frontier.add(w, d);
+				} else if (d < dist[w]) {
+					dist[w] = d;
+					frontier.updatePriority(w, d);
+				}
+			}
+		}
+		return found;
+	}
+
+	/** Return the parcel that passes this query's filters nearest to source
+	 * (null if none can be reached). */
+	public Parcel findNearest(Node source) {
+		List<Tuple2<Parcel, Integer>> l = find(source, 1);
+		return l.isEmpty() ? null : l.get(0)._1;
+	}
+}
@@ -40,13 +40,13 @@ public class NoConcurrencySolution extends AbstractSolution {
 		if(message != Notification.WAITING) return;
 		
 		LinkedList<Parcel> queue = (LinkedList<Parcel>) t.getUserData();
-		if(queue.isEmpty() && t.getLoad() == null) t.setTravelPath(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
+		if(queue.isEmpty() && t.getLoad() == null) t.setTravelRoute(dijkstra(t.getLocation(), getBoard().getTruckDepot()));
 		else if(t.getLoad() != null){
 			if(t.getLoad().destination.equals(t.getLocation())){
 				t.dropoffLoad();
 				truckNotification(t, Notification.WAITING); //Re-fire to cause new load and new travel
 			} else{
-				t.setTravelPath(dijkstra(t.getLocation(), t.getLoad().destination));
+				t.setTravelRoute(dijkstra(t.getLocation(), t.getLoad().destination));
 			}
 		}else{
 		    Parcel p = queue.peek();
@@ -55,7 +55,7 @@ public class NoConcurrencySolution extends AbstractSolution {
 		    	queue.poll();
 		    	truckNotification(t, Notification.WAITING);
 		    } else{
-		    	t.setTravelPath(dijkstra(t.getLocation(), p.getLocation()));
+		    	t.setTravelRoute(dijkstra(t.getLocation(), p.getLocation()));
 		    }
 		}
 		
@@ -0,0 +1,418 @@
+package solution;
+
+import game.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+/** A RouteOptimizer plans, for every truck of a board, a full tour: the order in
+ * which it delivers its parcels, one at a time (a truck carries one parcel, see
+ * Truck.pickupLoad), before going back to the Truck Depot. It is a
+ * pickup-and-delivery vehicle routing problem; the optimizer solves it
+ * heuristically:
+ * <br> 1. Greedy insertion: parcels are inserted one by one where they lower the
+ * expected score least;
+ * <br> 2. Local search: random relocate (move a parcel to another place, in its
+ * tour or another), exchange (swap two parcels) and 2-opt (reverse part of a
+ * tour) moves are kept whenever they raise the expected score; when no move has
+ * helped for a while, a few random relocations shake the tours up.
+ * <br><br>
+ * Several searches, each from its own random insertion order, run at once on
+ * their own threads until the time budget given to optimize runs out, and the
+ * best plan found wins.
+ * <br><br>
+ * The expected score of a plan counts what the game will: each parcel's payoff
+ * (multiplied on-color) and its pickup and dropoff costs, the cost of traveling
+ * the tours at Truck.EFFICIENT_SPEED, and the cost of trucks waiting: a truck
+ * back home waits until the last parcel is delivered. Shortest-path distances
+ * between the depot, the trucks and the parcels' nodes are computed once, in
+ * parallel, when the optimizer is created.
+ * <br><br>
+ * plan turns the result into a TruckPlan per truck, which the trucks then carry
+ * out by themselves (see TourSolution).
+ */
+public class RouteOptimizer {
+
+	/** Distance used for node pairs that aren't connected. */
+	private static final long FAR = 1L << 32;
+
+	/** Number of moves without improvement after which a search shakes its tours. */
+	private static final int STALL = 2000;
+
+	/** Number of random relocations of a shake. */
+	private static final int SHAKE = 3;
+
+	private final Board board;
+	private final Truck[] trucks;
+	private final Parcel[] parcels;
+
+	//The nodes that matter, numbered 0..k-1: the depot, the trucks' locations and
+	//the parcels' starts and destinations. dist[a][b] is the distance between
+	//two of them.
+	private final long[][] dist;
+	private final int depot;
+	private final int[] truckAt;
+	private final int[] parcelStart;
+	private final int[] parcelEnd;
+
+	private final long[][] value; //value[t][p]: payoff, pickup and dropoff of truck t delivering parcel p
+	private final int travelCost; //Score change per frame traveling at EFFICIENT_SPEED
+	private final int waitCost;   //Score change per frame waiting
+
+	private long expectedScore; //Of the best plan found by the last optimize
+
+	/** Constructor: an optimizer for the trucks of board b and the parcels on b
+	 * that aren't held, which the trucks are all waiting to deliver. */
+	public RouteOptimizer(Board b) {
+		board = b;
+		trucks = b.getTrucks().toArray(new Truck[0]);
+		List<Parcel> pool = new ArrayList<Parcel>();
+		synchronized(b.getParcels()) {
+			for (Parcel p : b.getParcels()) {
+				if (!p.isHeld()) pool.add(p);
+			}
+		}
+		parcels = pool.toArray(new Parcel[0]);
+
+		//Number the nodes that matter
+		HashMap<Node, Integer> number = new HashMap<Node, Integer>();
+		List<Node> nodes = new ArrayList<Node>();
+		depot = number(b.getTruckDepot(), number, nodes);
+		truckAt = new int[trucks.length];
+		for (int t = 0; t < trucks.length; t++) {
+			truckAt[t] = number(trucks[t].getLocation(), number, nodes);
+		}
+		parcelStart = new int[parcels.length];
+		parcelEnd = new int[parcels.length];
+		for (int p = 0; p < parcels.length; p++) {
+			parcelStart[p] = number(parcels[p].start, number, nodes);
+			parcelEnd[p] = number(parcels[p].destination, number, nodes);
+		}
+
+		//One sweep from each, in parallel
+		final BoardTopology topology = b.getTopology();
+		final int[] index = new int[nodes.size()];
+		for (int a = 0; a < index.length; a++) {
+			index[a] = b.indexOf(nodes.get(a));
+		}
+		dist = new long[index.length][];
+		IntStream.range(0, index.length).parallel().forEach(a -> {
+			int[] d = topology.distancesFrom(index[a]);
+			long[] row = new long[index.length];
+			for (int c = 0; c < index.length; c++) {
+				row[c] = d[index[c]] == Integer.MAX_VALUE ? FAR : d[index[c]];
+			}
+			dist[a] = row;
+		});
+
+		value = new long[trucks.length][parcels.length];
+		for (int t = 0; t < trucks.length; t++) {
+			for (int p = 0; p < parcels.length; p++) {
+				long payoff = b.getPayoff();
+				if (parcels[p].getColor().equals(trucks[t].getColor())) payoff *= b.getOnColorMultiplier();
+				value[t][p] = payoff + b.getPickupCost() + b.getDropoffCost();
+			}
+		}
+		travelCost = Score.cost(Truck.EFFICIENT_SPEED);
+		waitCost = b.getWaitCost();
+	}
+
+	/** Return the number of node n among nodes, numbering it if it has none. */
+	private static int number(Node n, HashMap<Node, Integer> number, List<Node> nodes) {
+		Integer i = number.get(n);
+		if (i != null) return i;
+		number.put(n, nodes.size());
+		nodes.add(n);
+		return nodes.size() - 1;
+	}
+
+	/** Return the expected score change of the best plan found by the last call
+	 * of optimize (0 if there was none). */
+	public long getExpectedScore() {
+		return expectedScore;
+	}
+
+	/** Plan tours for the trucks, searching on up to threads threads for about
+	 * budget ms (but always at least long enough to build a first plan). Return
+	 * each truck's parcels, in the order it should deliver them. */
+	public Map<Truck, List<Parcel>> optimize(long budget, int threads) {
+		final long deadline = System.nanoTime() + budget * 1000000;
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread th = new Thread(r, "ROUTE-OPTIMIZER-" + count++);
+				th.setDaemon(true);
+				return th;
+			}
+		});
+		List<Future<Search>> searches = new ArrayList<Future<Search>>();
+		for (int i = 0; i < threads; i++) {
+			final long seed = i;
+			searches.add(pool.submit(new Callable<Search>() {
+				@Override
+				public Search call() {
+					Search s = new Search(new Random(seed));
+					s.run(deadline);
+					return s;
+				}
+			}));
+		}
+
+		Search best = null;
+		try {
+			for (Future<Search> f : searches) {
+				Search s = f.get();
+				if (best == null || s.bestScore > best.bestScore) best = s;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		Map<Truck, List<Parcel>> tours = new LinkedHashMap<Truck, List<Parcel>>();
+		for (int t = 0; t < trucks.length; t++) {
+			List<Parcel> l = new ArrayList<Parcel>();
+			if (best != null) {
+				for (int p : best.best[t]) {
+					l.add(parcels[p]);
+				}
+			}
+			tours.put(trucks[t], l);
+		}
+		expectedScore = best == null ? 0 : best.bestScore;
+		return tours;
+	}
+
+	/** Plan tours for the trucks (see optimize) and return each truck's plan:
+	 * for each of its parcels, go to it, pick it up, go to its destination and
+	 * drop it off; then go back to the Truck Depot. */
+	public Map<Truck, TruckPlan> plan(long budget, int threads) {
+		Map<Truck, TruckPlan> plans = new LinkedHashMap<Truck, TruckPlan>();
+		for (Map.Entry<Truck, List<Parcel>> e : optimize(budget, threads).entrySet()) {
+			TruckPlan plan = new TruckPlan();
+			for (Parcel p : e.getValue()) {
+				plan.goTo(p.start).pickup(p).goTo(p.destination).dropoff();
+			}
+			plans.put(e.getKey(), plan.goTo(board.getTruckDepot()));
+		}
+		return plans;
+	}
+
+	/** One search: a greedy insertion, then local search until a deadline. Tours
+	 * are arrays of parcel numbers; a move builds new arrays for the tours it
+	 * changes and keeps them only if they raise the expected score. */
+	private final class Search {
+		private final Random rnd;
+		private final int n = trucks.length;
+
+		private final int[][] tour = new int[n][];
+		private final long[] length = new long[n];     //Of each tour, depot included
+		private final long[] lastDrop = new long[n];   //Length of each tour up to its last dropoff
+		private final long[] tourValue = new long[n];  //Payoffs minus travel of each tour
+		private long score;
+
+		private int[][] best;
+		private long bestScore = Long.MIN_VALUE;
+
+		/** Constructor: a search drawing its random choices from r. */
+		private Search(Random r) {
+			rnd = r;
+			for (int t = 0; t < n; t++) {
+				set(t, new int[0]);
+			}
+			score = total();
+		}
+
+		/** Make tour t be parcels ps, updating its cached length and value. */
+		private void set(int t, int[] ps) {
+			tour[t] = ps;
+			long len = 0;
+			long drop = 0;
+			long val = 0;
+			int at = truckAt[t];
+			for (int p : ps) {
+				len += dist[at][parcelStart[p]] + dist[parcelStart[p]][parcelEnd[p]];
+				drop = len;
+				at = parcelEnd[p];
+				val += value[t][p];
+			}
+			len += dist[at][depot];
+			length[t] = len;
+			lastDrop[t] = drop;
+			tourValue[t] = val + len * travelCost / Truck.EFFICIENT_SPEED;
+		}
+
+		/** Return the expected score of the current tours. */
+		private long total() {
+			long s = 0;
+			long end = 0; //Frame of the last delivery
+			for (int t = 0; t < n; t++) {
+				s += tourValue[t];
+				end = Math.max(end, lastDrop[t] / Truck.EFFICIENT_SPEED);
+			}
+			for (int t = 0; t < n; t++) {
+				s += waitCost * Math.max(0, end - length[t] / Truck.EFFICIENT_SPEED);
+			}
+			return s;
+		}
+
+		/** Try replacing tour a by pa and tour b (b may be a, or -1) by pb; keep
+		 * the change iff it raises the expected score. Return true iff kept. */
+		private boolean tryMove(int a, int[] pa, int b, int[] pb) {
+			int[] oldA = tour[a];
+			int[] oldB = b < 0 ? null : tour[b];
+			set(a, pa);
+			if (b >= 0) set(b, pb);
+			long s = total();
+			if (s > score) {
+				score = s;
+				return true;
+			}
+			set(a, oldA);
+			if (b >= 0) set(b, oldB);
+			return false;
+		}
+
+		/** Return ps with p inserted at position i. */
+		private int[] insert(int[] ps, int i, int p) {
+			int[] r = new int[ps.length + 1];
+			System.arraycopy(ps, 0, r, 0, i);
+			r[i] = p;
+			System.arraycopy(ps, i, r, i + 1, ps.length - i);
+			return r;
+		}
+
+		/** Return ps without its element at position i. */
+		private int[] remove(int[] ps, int i) {
+			int[] r = new int[ps.length - 1];
+			System.arraycopy(ps, 0, r, 0, i);
+			System.arraycopy(ps, i + 1, r, i, ps.length - i - 1);
+			return r;
+		}
+
+		/** Insert every parcel, in random order, where it lowers the score least. */
+		private void insertAll() {
+			int[] order = new int[parcels.length];
+			for (int p = 0; p < order.length; p++) {
+				order[p] = p;
+			}
+			for (int i = order.length - 1; i > 0; i--) {
+				int j = rnd.nextInt(i + 1);
+				int x = order[i];
+				order[i] = order[j];
+				order[j] = x;
+			}
+			for (int p : order) {
+				long bestS = Long.MIN_VALUE;
+				int bestT = 0;
+				int bestI = 0;
+				for (int t = 0; t < n; t++) {
+					int[] old = tour[t];
+					for (int i = 0; i <= old.length; i++) {
+						set(t, insert(old, i, p));
+						long s = total();
+						if (s > bestS) {
+							bestS = s;
+							bestT = t;
+							bestI = i;
+						}
+					}
+					set(t, old);
+				}
+				set(bestT, insert(tour[bestT], bestI, p));
+			}
+			score = total();
+		}
+
+		/** Try one random move. Return true iff it was kept. */
+		private boolean randomMove() {
+			int a = rnd.nextInt(n);
+			if (tour[a].length == 0) return false;
+			int i = rnd.nextInt(tour[a].length);
+			int b = rnd.nextInt(n);
+			switch (rnd.nextInt(3)) {
+			case 0: //Relocate parcel i of a
+				int p = tour[a][i];
+				int[] pa = remove(tour[a], i);
+				if (a == b) return tryMove(a, insert(pa, rnd.nextInt(pa.length + 1), p), -1, null);
+				return tryMove(a, pa, b, insert(tour[b], rnd.nextInt(tour[b].length + 1), p));
+			case 1: //Exchange parcel i of a with parcel j of b
+				if (tour[b].length == 0) return false;
+				int j = rnd.nextInt(tour[b].length);
+				if (a == b) {
+					int[] s = tour[a].clone();
+					s[i] = tour[a][j];
+					s[j] = tour[a][i];
+					return tryMove(a, s, -1, null);
+				}
+				int[] sa = tour[a].clone();
+				int[] sb = tour[b].clone();
+				sa[i] = tour[b][j];
+				sb[j] = tour[a][i];
+				return tryMove(a, sa, b, sb);
+			default: //2-opt: reverse parcels i..k of a
+				int k = rnd.nextInt(tour[a].length);
+				int lo = Math.min(i, k);
+				int hi = Math.max(i, k);
+				if (lo == hi) return false;
+				int[] r = tour[a].clone();
+				for (int x = lo, y = hi; x < y; x++, y--) {
+					int tmp = r[x];
+					r[x] = r[y];
+					r[y] = tmp;
+				}
+				return tryMove(a, r, -1, null);
+			}
+		}
+
+		/** Relocate a few random parcels, whatever that does to the score. */
+		private void shake() {
+			for (int s = 0; s < SHAKE; s++) {
+				int a = rnd.nextInt(n);
+				if (tour[a].length == 0) continue;
+				int i = rnd.nextInt(tour[a].length);
+				int p = tour[a][i];
+				set(a, remove(tour[a], i));
+				int b = rnd.nextInt(n);
+				set(b, insert(tour[b], rnd.nextInt(tour[b].length + 1), p));
+			}
+			score = total();
+		}
+
+		/** Record the current tours if they are the best so far. */
+		private void keepIfBest() {
+			if (score <= bestScore) return;
+			bestScore = score;
+			best = new int[n][];
+			for (int t = 0; t < n; t++) {
+				best[t] = tour[t].clone();
+			}
+		}
+
+		/** Build a first plan, then improve it until time deadline
+		 * (System.nanoTime()) or until the thread is interrupted. */
+		private void run(long deadline) {
+			insertAll();
+			keepIfBest();
+			if (n == 0 || parcels.length == 0) return;
+			int stalled = 0;
+			while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+				for (int m = 0; m < 100; m++) {
+					if (randomMove()) {
+						stalled = 0;
+						keepIfBest();
+					} else if (++stalled == STALL) {
+						stalled = 0;
+						shake();
+					}
+				}
+			}
+		}
+	}
+}
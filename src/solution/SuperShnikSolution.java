@@ -3,14 +3,13 @@ package solution;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
 import game.*;
 
 public class SuperShnikSolution extends AbstractSolution {
 
-	private Map<Tuple2<Node, Node>, Tuple2<Integer,List<Node>>> paths;
+	private NodeMap<Map<Node, Route>> paths; //paths.get(n).get(m): shortest route between important nodes n and m
 	private Node truckDepot;
 	private boolean preprocessingDone;
 
@@ -28,19 +27,19 @@ public class SuperShnikSolution extends AbstractSolution {
 			importantLocations.add(p.destination);
 		}
 
-		paths = new HashMap<>();
+		paths = new NodeMap<>(getBoard());
 
 		//Calculate all paths among important nodes
 		for(Node n : importantLocations){
-			Map<Node, List<Node>> pths = dijkstra(n);
-			for(Map.Entry<Node, List<Node>> e : pths.entrySet()){
-				Node m = e.getKey();
-				List<Node> path = e.getValue();
-				if(importantLocations.contains(m)){
-					paths.put(new Tuple2<Node, Node>(n, m), 
-							new Tuple2<Integer, List<Node>>(pathLength(path), path));
+			Map<Node, Route> pths = dijkstra(n);
+			Map<Node, Route> important = new HashMap<>();
+			for(Node m : importantLocations){
+				Route r = pths.get(m);
+				if(r != null){
+					important.put(m, r);
 				}
 			}
+			paths.put(n, important);
 		}
 
 		//Assign all trucks a user data
@@ -93,11 +92,6 @@ public class SuperShnikSolution extends AbstractSolution {
 		LinkedList<Parcel> toCollect = new LinkedList<>();
 	}
 
-	/** Returns {@code n1, n2} as a tuple */
-	private static Tuple2<Node,Node> asTuple(Node n1, Node n2){
-		return new Tuple2<Node,Node>(n1,n2);
-	}
-
 	@Override
 	public void truckNotification(Truck t, Notification message) {
 		if(! preprocessingDone || message.equals(Notification.PARCEL_AT_NODE)){
@@ -110,6 +104,11 @@ public class SuperShnikSolution extends AbstractSolution {
 			td.needsInstruction = !td.done && t.getLocation() == td.destination;
 		}
 
+		//An arrival during preprocessing was ignored; waiting there is arriving
+		if(message.equals(Notification.WAITING) && !td.done && t.getLocation() == td.destination){
+			td.needsInstruction = true;
+		}
+
 		if(! td.needsInstruction){
 			return;
 		}
@@ -144,12 +143,12 @@ public class SuperShnikSolution extends AbstractSolution {
 
 	/** Searches among assigned parcels for best to pickup */
 	private void pickNextLoad(Truck t){
-		Tuple2<Integer, List<Node>> closest = new Tuple2<>(Integer.MAX_VALUE, null);
+		int closest = Integer.MAX_VALUE;
 		Parcel best = null;
 		TruckData td = (TruckData)t.getUserData();
 		for(Parcel p : td.toCollect){
-			Tuple2<Integer, List<Node>> c = paths.get(asTuple(t.getLocation(), p.start));
-			if(c._1 < closest._1){
+			int c = paths.get(t.getLocation()).get(p.start).getLength();
+			if(c < closest){
 				closest = c;
 				best = p;
 			}
@@ -164,7 +163,7 @@ public class SuperShnikSolution extends AbstractSolution {
 		TruckData td = (TruckData)t.getUserData();
 		td.destination = dest;
 		if(dest != t.getLocation()){
-			t.setTravelPath(paths.get(asTuple(t.getLocation(), dest))._2);
+			t.setTravelRoute(paths.get(t.getLocation()).get(dest));
 			td.needsInstruction = false;
 		}
 		else{
@@ -0,0 +1,37 @@
+package solution;
+
+import game.*;
+
+import java.util.Map;
+
+/** A solution that plans every truck's whole tour up front with a
+ * RouteOptimizer and gives each truck its tour as a TruckPlan, which the truck
+ * follows by itself. Planning time is kept short: while the optimizer runs,
+ * every truck pays the wait cost. A truck whose plan fails (it shouldn't: tours
+ * share no parcels) delivers its load, if any, and goes home.
+ */
+public class TourSolution extends AbstractSolution {
+
+	/** Time (ms) given to the optimizer. */
+	private static final long BUDGET = 50;
+
+	@Override
+	public void run() {
+		RouteOptimizer optimizer = new RouteOptimizer(getBoard());
+		Map<Truck, TruckPlan> plans =
+				optimizer.plan(BUDGET, Runtime.getRuntime().availableProcessors());
+		for (Map.Entry<Truck, TruckPlan> e : plans.entrySet()) {
+			e.getKey().setPlan(e.getValue());
+		}
+	}
+
+	@Override
+	public void truckNotification(Truck t, Notification message) {
+		if (message != Notification.PLAN_FAILED) return;
+
+		TruckPlan plan = new TruckPlan();
+		Parcel load = t.getLoad();
+		if (load != null) plan.goTo(load.destination).dropoff();
+		t.setPlan(plan.goTo(getBoard().getTruckDepot()));
+	}
+}